@@ -0,0 +1,75 @@
+package com.revolut.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written with {@code resultFormat = 'JSON'}, e.g. of the previous and the current
+ * release, benchmark by benchmark (with its parameters and mode). A change worse than the threshold (10% by default)
+ * is reported as a regression and makes the comparison exit with status 1.
+ * <p>
+ * Arguments: baseline results, current results, optional threshold in percent.
+ */
+public class BenchmarkComparison {
+
+    public static void main(String... args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparison <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            JsonNode metric = entry.getValue().get("primaryMetric");
+            if (before == null) {
+                System.out.printf("%-100s %14s %14.3f %s (new)%n", entry.getKey(), "-", metric.get("score").asDouble(), metric.get("scoreUnit").asText());
+                continue;
+            }
+            double beforeScore = before.get("primaryMetric").get("score").asDouble();
+            double score = metric.get("score").asDouble();
+            double change = (score - beforeScore) / beforeScore * 100;
+            // throughput is better when higher, times are better when lower
+            double improvement = "thrpt".equals(entry.getValue().get("mode").asText()) ? change : -change;
+            boolean regression = improvement < -threshold;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-100s %14.3f %14.3f %s %+7.1f%%%s%n", entry.getKey(), beforeScore, score,
+                    metric.get("scoreUnit").asText(), change, regression ? " REGRESSION" : "");
+        }
+        System.out.printf("%d regressions beyond %.1f%%%n", regressions, threshold);
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            results.put(key(result), result);
+        }
+        return results;
+    }
+
+    private static String key(JsonNode result) {
+        StringBuilder key = new StringBuilder(result.get("benchmark").asText());
+        JsonNode params = result.get("params");
+        if (params != null) {
+            Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> param = fields.next();
+                key.append(':').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+        }
+        return key.append(" [").append(result.get("mode").asText()).append(']').toString();
+    }
+}
@@ -0,0 +1,79 @@
+package com.revolut.backend.domain;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Balance updates of a transfer (withdraw from one account, deposit to another) with minor units kept in a long,
+ * compared to the former {@code AtomicReference<BigDecimal>} balance.
+ * Run with the GC profiler (enabled in build.gradle) to compare allocation rates, see {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class AccountBenchmark {
+
+    private final Account sender = new Account(Long.MAX_VALUE / 2);
+    private final Account recipient = new Account(0);
+
+    private final DecimalAccount decimalSender = new DecimalAccount(BigDecimal.valueOf(Long.MAX_VALUE / 2, 2));
+    private final DecimalAccount decimalRecipient = new DecimalAccount(BigDecimal.ZERO);
+    private final BigDecimal decimalAmount = new BigDecimal("12.34");
+
+    @Benchmark
+    @Threads(1)
+    public long transferMinorUnits() {
+        sender.withdraw(1234);
+        recipient.deposit(1234);
+        return recipient.getBalance();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public BigDecimal transferDecimal() {
+        decimalSender.withdraw(decimalAmount);
+        decimalRecipient.deposit(decimalAmount);
+        return decimalRecipient.getBalance();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long contendedTransferMinorUnits() {
+        return transferMinorUnits();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public BigDecimal contendedTransferDecimal() {
+        return transferDecimal();
+    }
+
+    /**
+     * The balance representation used before minor units.
+     */
+    private static class DecimalAccount {
+        private final AtomicReference<BigDecimal> balance;
+
+        private DecimalAccount(BigDecimal initialBalance) {
+            this.balance = new AtomicReference<>(initialBalance);
+        }
+
+        private BigDecimal getBalance() {
+            return balance.get();
+        }
+
+        private void deposit(BigDecimal amount) {
+            balance.accumulateAndGet(amount, BigDecimal::add);
+        }
+
+        private void withdraw(BigDecimal amount) {
+            balance.accumulateAndGet(amount, BigDecimal::subtract);
+        }
+    }
+}
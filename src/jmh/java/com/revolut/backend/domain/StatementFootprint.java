@@ -0,0 +1,67 @@
+package com.revolut.backend.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Reports heap taken by a million statement entries in {@link Statement} columns and as they were kept before:
+ * objects holding an {@link Instant} and a {@link BigDecimal} in a {@link ConcurrentLinkedQueue}.
+ * Entries are spread over as many accounts as the first argument tells (1000 by default).
+ */
+public class StatementFootprint {
+
+    private static final int ENTRIES = 1_000_000;
+
+    public static void main(String... args) {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long before = usedHeap();
+        List<Statement> statements = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            statements.add(new Statement());
+        }
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < ENTRIES; i++) {
+            statements.get(i % accounts).append(timestamp + i, i, 12_345L + i);
+        }
+        long columnar = usedHeap() - before;
+        System.out.printf("columnar statements: %d bytes per million entries (%d accounts)%n", columnar, statements.size());
+
+        statements = null;
+        before = usedHeap();
+        List<ConcurrentLinkedQueue<LegacyTransfer>> queues = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            queues.add(new ConcurrentLinkedQueue<>());
+        }
+        for (int i = 0; i < ENTRIES; i++) {
+            queues.get(i % accounts).add(new LegacyTransfer(Instant.ofEpochMilli(timestamp + i), i, BigDecimal.valueOf(12_345L + i, 2)));
+        }
+        long legacy = usedHeap() - before;
+        System.out.printf("queues of transfer objects: %d bytes per million entries (%d accounts)%n", legacy, queues.size());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The statement entry used before the columnar store.
+     */
+    private static class LegacyTransfer {
+        private final Instant timestamp;
+        private final long party;
+        private final BigDecimal balance;
+
+        private LegacyTransfer(Instant timestamp, long party, BigDecimal balance) {
+            this.timestamp = timestamp;
+            this.party = party;
+            this.balance = balance;
+        }
+    }
+}
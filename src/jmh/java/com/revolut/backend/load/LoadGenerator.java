@@ -0,0 +1,314 @@
+package com.revolut.backend.load;
+
+import com.revolut.backend.persistence.PersistenceProxyService;
+import com.revolut.backend.persistence.inmemory.TempFolderPersistenceProvider;
+import com.revolut.backend.server.EngineServer;
+import com.revolut.backend.server.VirtualThreads;
+import com.revolut.backend.server.WebServer;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.revolut.backend.ConfigurationProperties.configuration;
+
+/**
+ * Drives a mix of requests through a {@link WebServer}, or another {@link EngineServer}, started in-process on a free port, journaling into a fresh
+ * temporary folder, and writes latency percentiles of each operation to a report file, next to HdrHistogram
+ * percentile distributions ({@code .hgrm}) for plotting.
+ * <p>
+ * In the open-loop mode requests are due at a constant rate and latency is measured from the time a request was due,
+ * not from when a connection got to send it, so a stalled server is charged for all the requests it held back
+ * (coordinated omission). In the closed-loop mode each connection sends its next request when the previous one is
+ * answered; its latencies are corrected afterwards, taking the mean latency as the interval requests were expected at.
+ * <p>
+ * In the closed-loop mode connections run on virtual threads when the JVM has them, so that tens of thousands of them
+ * can be kept busy.
+ * <p>
+ * Several servers, e.g. {@code server=ratpack,virtual}, are driven one after another with the same load, each with
+ * a fresh engine and a report of its own, and their overall throughput and latencies are compared side by side.
+ * <p>
+ * Arguments, all optional: {@code server=ratpack|virtual} (see {@link EngineServer#create}), {@code mode=open|closed}, {@code rate} (requests per second in the open-loop mode),
+ * {@code connections}, {@code accounts} (created up front), {@code skew} (Zipf exponent of account popularity, 0 is
+ * uniform), {@code warmupSeconds}, {@code durationSeconds}, {@code mix} (weights of operations, e.g.
+ * {@code create=1,transfer=60,balance=30,statement=9}) and {@code report} (path of the report file).
+ */
+public class LoadGenerator {
+
+    enum Operation {
+        CREATE, TRANSFER, BALANCE, STATEMENT
+    }
+
+    private static final long INITIAL_BALANCE = 1_000_000_000_000L;
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toNanos(10);
+
+    private final LoadOptions options;
+    private final String baseUrl;
+    private final SkewedAccounts accounts;
+    private final Operation[] operationByWeight;
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+
+    LoadGenerator(LoadOptions options, String baseUrl) {
+        this.options = options;
+        this.baseUrl = baseUrl;
+        this.accounts = new SkewedAccounts(options.accounts, options.skew);
+        this.operationByWeight = options.mix.entrySet().stream()
+                .flatMap(weight -> Collections.nCopies(weight.getValue(), weight.getKey()).stream())
+                .toArray(Operation[]::new);
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(HIGHEST_LATENCY, 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String... args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        // keeps a connection alive per load connection instead of the default 5
+        System.setProperty("http.maxConnections", String.valueOf(options.connections));
+        Map<String, LoadGenerator> runs = new LinkedHashMap<>();
+        for (String server : options.servers) {
+            runs.put(server, run(options, server));
+        }
+        if (runs.size() > 1) {
+            printComparison(runs);
+        }
+        // the servers' writers are not daemon threads
+        System.exit(0);
+    }
+
+    private static LoadGenerator run(LoadOptions options, String serverMode) throws Exception {
+        TempFolderPersistenceProvider provider = new TempFolderPersistenceProvider(configuration().getPersistenceDurability());
+        PersistenceProxyService setUp = new PersistenceProxyService(provider);
+        for (int i = 0; i < options.accounts; i++) {
+            setUp.createAccount(INITIAL_BALANCE);
+        }
+        EngineServer server = EngineServer.create(serverMode, provider, 0, -1);
+        server.start();
+        try {
+            LoadGenerator generator = new LoadGenerator(options, "http://localhost:" + server.getPort() + "/");
+            generator.run(serverMode);
+            generator.writeReport(options.servers.size() > 1 ? reportOf(options.report, serverMode) : options.report);
+            return generator;
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static Path reportOf(Path report, String server) {
+        String fileName = report.getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        return report.resolveSibling(extension < 0
+                ? fileName + "-" + server
+                : fileName.substring(0, extension) + "-" + server + fileName.substring(extension));
+    }
+
+    private static void printComparison(Map<String, LoadGenerator> runs) {
+        System.out.printf("%-10s %12s %8s %10s %10s %10s %10s %10s (micros)%n", "server", "requests/s", "errors", "p50", "p99", "p99.9", "p99.99", "max");
+        runs.forEach((server, run) -> {
+            Histogram all = run.total();
+            System.out.printf("%-10s %12.0f %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n", server,
+                    (double) all.getTotalCount() / run.options.durationSeconds, run.totalErrors(),
+                    micros(all.getValueAtPercentile(50)), micros(all.getValueAtPercentile(99)), micros(all.getValueAtPercentile(99.9)),
+                    micros(all.getValueAtPercentile(99.99)), micros(all.getMaxValue()));
+        });
+    }
+
+    void run(String server) throws InterruptedException {
+        long start = System.nanoTime();
+        long recordFrom = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long end = recordFrom + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        System.out.printf("Running %s against %s%n", options, server);
+        if (options.mode == LoadOptions.Mode.OPEN) {
+            runOpenLoop(start, recordFrom, end);
+        } else {
+            runClosedLoop(recordFrom, end);
+        }
+    }
+
+    private void runOpenLoop(long start, long recordFrom, long end) throws InterruptedException {
+        ExecutorService connections = Executors.newFixedThreadPool(options.connections);
+        for (long request = 0; ; request++) {
+            long due = start + request * TimeUnit.SECONDS.toNanos(1) / options.rate;
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = pickOperation();
+            connections.execute(() -> {
+                boolean succeeded = call(operation);
+                if (due >= recordFrom) {
+                    record(operation, System.nanoTime() - due, succeeded);
+                }
+            });
+        }
+        connections.shutdown();
+        if (!connections.awaitTermination(1, TimeUnit.MINUTES)) {
+            connections.shutdownNow();
+            System.out.println("Requests still queued a minute after the last one was due were dropped");
+        }
+    }
+
+    private void runClosedLoop(long recordFrom, long end) throws InterruptedException {
+        ExecutorService connections = VirtualThreads.isAvailable()
+                ? VirtualThreads.newThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(options.connections);
+        for (int i = 0; i < options.connections; i++) {
+            connections.execute(() -> {
+                long sent;
+                while ((sent = System.nanoTime()) < end) {
+                    Operation operation = pickOperation();
+                    boolean succeeded = call(operation);
+                    if (sent >= recordFrom) {
+                        record(operation, System.nanoTime() - sent, succeeded);
+                    }
+                }
+            });
+        }
+        connections.shutdown();
+        connections.awaitTermination(end - System.nanoTime() + TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS);
+        for (Operation operation : Operation.values()) {
+            Histogram measured = latencies.get(operation);
+            if (measured.getTotalCount() > 0) {
+                latencies.put(operation, measured.copyCorrectedForCoordinatedOmission((long) measured.getMean()));
+            }
+        }
+    }
+
+    private Operation pickOperation() {
+        return operationByWeight[ThreadLocalRandom.current().nextInt(operationByWeight.length)];
+    }
+
+    private void record(Operation operation, long latencyNanos, boolean succeeded) {
+        latencies.get(operation).recordValue(Math.min(latencyNanos, HIGHEST_LATENCY));
+        if (!succeeded) {
+            errors.get(operation).increment();
+        }
+    }
+
+    /**
+     * @return false if the request failed or wasn't answered with success
+     */
+    private boolean call(Operation operation) {
+        try {
+            switch (operation) {
+                case CREATE:
+                    return post("services/account/create", "{\"initialBalance\":100}");
+                case TRANSFER:
+                    long senderId = accounts.pick();
+                    return post("services/transfer/make", String.format("{\"senderId\":%d,\"recipientId\":%d,\"amount\":0.01}",
+                            senderId, accounts.pickOtherThan(senderId)));
+                case BALANCE:
+                    return get("services/account/balance/" + accounts.pick());
+                default:
+                    return get("services/transfer/statement/" + accounts.pick() + "?limit=20&order=desc");
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean post(String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return readResponse(connection);
+    }
+
+    private boolean get(String path) throws IOException {
+        return readResponse((HttpURLConnection) new URL(baseUrl + path).openConnection());
+    }
+
+    /**
+     * Reads the whole response, so that the connection can be kept alive for the next request.
+     */
+    private static boolean readResponse(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (body != null) {
+            try (InputStream in = body) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) >= 0) {
+                    // drained
+                }
+            }
+        }
+        return status < 300;
+    }
+
+    void writeReport(Path reportPath) throws IOException {
+        Path report = reportPath.toAbsolutePath();
+        Files.createDirectories(report.getParent());
+        try (PrintStream out = new PrintStream(Files.newOutputStream(report), false, "UTF-8")) {
+            out.println(options);
+            out.printf("%-10s %10s %8s %10s %10s %10s %10s %10s %10s %10s (micros)%n",
+                    "operation", "requests", "errors", "p50", "p90", "p99", "p99.9", "p99.99", "max", "mean");
+            for (Operation operation : Operation.values()) {
+                Histogram histogram = latencies.get(operation);
+                if (histogram.getTotalCount() == 0) {
+                    continue;
+                }
+                printLine(out, operation.name().toLowerCase(), histogram, errors.get(operation).sum());
+                writeDistribution(report, operation.name().toLowerCase(), histogram);
+            }
+            Histogram all = total();
+            printLine(out, "all", all, totalErrors());
+            writeDistribution(report, "all", all);
+        }
+        System.out.printf("Report written to %s%n", report);
+        System.out.print(new String(Files.readAllBytes(report), StandardCharsets.UTF_8));
+    }
+
+    private Histogram total() {
+        Histogram all = new Histogram(HIGHEST_LATENCY, 3);
+        latencies.values().forEach(all::add);
+        return all;
+    }
+
+    private long totalErrors() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private static void printLine(PrintStream out, String name, Histogram histogram, long errors) {
+        out.printf("%-10s %10d %8d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n", name, histogram.getTotalCount(), errors,
+                micros(histogram.getValueAtPercentile(50)), micros(histogram.getValueAtPercentile(90)),
+                micros(histogram.getValueAtPercentile(99)), micros(histogram.getValueAtPercentile(99.9)),
+                micros(histogram.getValueAtPercentile(99.99)), micros(histogram.getMaxValue()), histogram.getMean() / 1000);
+    }
+
+    private static void writeDistribution(Path report, String name, Histogram histogram) throws IOException {
+        String fileName = report.getFileName().toString().replaceFirst("\\.[^.]*$", "") + "-" + name + ".hgrm";
+        try (PrintStream out = new PrintStream(Files.newOutputStream(report.resolveSibling(fileName)), false, "UTF-8")) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
@@ -0,0 +1,83 @@
+package com.revolut.backend.load;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of a load test, given as {@code key=value} arguments; see {@link LoadGenerator} for the keys.
+ */
+class LoadOptions {
+
+    enum Mode {
+        /**
+         * Requests are due at a constant rate, whether or not earlier ones were answered.
+         */
+        OPEN,
+        /**
+         * Every connection sends its next request as soon as the previous one is answered.
+         */
+        CLOSED
+    }
+
+    final List<String> servers;
+    final Mode mode;
+    final int rate;
+    final int connections;
+    final int accounts;
+    final double skew;
+    final int warmupSeconds;
+    final int durationSeconds;
+    final Map<LoadGenerator.Operation, Integer> mix;
+    final Path report;
+
+    private LoadOptions(Map<String, String> values) {
+        this.servers = Arrays.asList(values.getOrDefault("server", "ratpack").split(","));
+        this.mode = Mode.valueOf(values.getOrDefault("mode", "open").toUpperCase());
+        this.rate = Integer.parseInt(values.getOrDefault("rate", "5000"));
+        this.connections = Integer.parseInt(values.getOrDefault("connections", "64"));
+        this.accounts = Integer.parseInt(values.getOrDefault("accounts", "10000"));
+        this.skew = Double.parseDouble(values.getOrDefault("skew", "0"));
+        this.warmupSeconds = Integer.parseInt(values.getOrDefault("warmupSeconds", "10"));
+        this.durationSeconds = Integer.parseInt(values.getOrDefault("durationSeconds", "30"));
+        this.mix = parseMix(values.getOrDefault("mix", "create=1,transfer=60,balance=30,statement=9"));
+        this.report = Paths.get(values.getOrDefault("report", "build/reports/load/report.txt"));
+        if (rate < 1 || connections < 1 || accounts < 2 || skew < 0 || durationSeconds < 1) {
+            throw new IllegalArgumentException("rate and connections must be positive, accounts at least 2, skew not negative, duration at least a second");
+        }
+    }
+
+    static LoadOptions parse(String... args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            values.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return new LoadOptions(values);
+    }
+
+    private static Map<LoadGenerator.Operation, Integer> parseMix(String mix) {
+        Map<LoadGenerator.Operation, Integer> weights = new EnumMap<>(LoadGenerator.Operation.class);
+        for (String part : mix.split(",")) {
+            String[] weight = part.trim().split("=");
+            weights.put(LoadGenerator.Operation.valueOf(weight[0].toUpperCase()), Integer.parseInt(weight[1]));
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() < 1) {
+            throw new IllegalArgumentException("The mix of operations is empty: " + mix);
+        }
+        return weights;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("server=%s mode=%s rate=%d/s connections=%d accounts=%d skew=%.2f warmup=%ds duration=%ds mix=%s",
+                String.join(",", servers), mode.name().toLowerCase(), rate, connections, accounts, skew, warmupSeconds, durationSeconds, mix);
+    }
+}
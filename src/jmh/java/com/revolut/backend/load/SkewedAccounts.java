@@ -0,0 +1,40 @@
+package com.revolut.backend.load;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks account ids from {@code 0} to {@code accounts - 1} with Zipf distributed popularity: account {@code k}
+ * is picked in proportion to {@code 1 / (k + 1)^skew}, so skew 0 is uniform and skew around 1 sends a large share
+ * of requests to the first few accounts.
+ */
+class SkewedAccounts {
+
+    private final double[] cumulativeWeights;
+
+    SkewedAccounts(int accounts, double skew) {
+        this.cumulativeWeights = new double[accounts];
+        double total = 0;
+        for (int k = 0; k < accounts; k++) {
+            total += 1 / Math.pow(k + 1, skew);
+            cumulativeWeights[k] = total;
+        }
+    }
+
+    long pick() {
+        double point = ThreadLocalRandom.current().nextDouble(cumulativeWeights[cumulativeWeights.length - 1]);
+        int index = Arrays.binarySearch(cumulativeWeights, point);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * @return an account other than the given one
+     */
+    long pickOtherThan(long accountId) {
+        long other = pick();
+        while (other == accountId) {
+            other = pick();
+        }
+        return other;
+    }
+}
@@ -0,0 +1,27 @@
+package com.revolut.backend.persistence;
+
+import com.revolut.backend.api.MoneyTransferService;
+import com.revolut.backend.service.CoreService;
+
+/**
+ * Runs commands straight against a {@link CoreService}, without any journal.
+ */
+public class DirectPersistenceProvider implements PersistenceProvider {
+
+    private final MoneyTransferService service = new CoreService();
+
+    @Override
+    public <R> R executeAndQuery(ServiceCommand<R> command) {
+        return command.apply(service);
+    }
+
+    @Override
+    public <R> R query(ServiceCommand<R> query) {
+        return query.apply(service);
+    }
+
+    @Override
+    public MoneyTransferService liveService() {
+        return service;
+    }
+}
@@ -0,0 +1,45 @@
+package com.revolut.backend.persistence.inmemory;
+
+import com.revolut.backend.persistence.DurabilityLevel;
+import com.revolut.backend.persistence.PersistenceProxyService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency (sample mode percentiles) of journaled transfers for each durability level Airomem supports.
+ * Many threads submit concurrently, so that group commit has something to batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(32)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class InMemoryPersistenceProviderBenchmark {
+
+    private static final int ACCOUNTS = 1024;
+
+    @Param({"SYNC", "GROUP"})
+    private DurabilityLevel durability;
+
+    private PersistenceProxyService service;
+
+    @Setup
+    public void setUp() {
+        service = new PersistenceProxyService(new TempFolderPersistenceProvider(durability));
+        for (int i = 0; i < ACCOUNTS; i++) {
+            service.createAccount(1_000_000_000L);
+        }
+    }
+
+    @Benchmark
+    public Object makeTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long senderId = random.nextInt(ACCOUNTS);
+        long recipientId = (senderId + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        return service.submitMakeTransfer(senderId, recipientId, 1).toCompletableFuture().join();
+    }
+}
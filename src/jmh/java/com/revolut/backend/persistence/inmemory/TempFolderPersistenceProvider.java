@@ -0,0 +1,34 @@
+package com.revolut.backend.persistence.inmemory;
+
+import com.revolut.backend.api.MoneyTransferService;
+import com.revolut.backend.persistence.DurabilityLevel;
+import com.revolut.backend.service.CoreService;
+import pl.setblack.airomem.core.PersistenceController;
+import pl.setblack.airomem.core.builders.PrevaylerBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+/**
+ * Airomem provider journaling into a fresh temporary folder, so benchmarks start from an empty state.
+ */
+public class TempFolderPersistenceProvider extends InMemoryPersistenceProvider {
+
+    public TempFolderPersistenceProvider(DurabilityLevel durabilityLevel) {
+        super(durabilityLevel);
+    }
+
+    @Override
+    protected PersistenceController<MoneyTransferService> createNewPersistenceController() {
+        try {
+            return PrevaylerBuilder.<MoneyTransferService>newBuilder()
+                    .withFolder(Files.createTempDirectory("bench_mte_"))
+                    .useSupplier(CoreService::new)
+                    .disableRoyalFoodTester()
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.revolut.backend.persistence.journal;
+
+import com.revolut.backend.persistence.DurabilityLevel;
+import com.revolut.backend.persistence.PersistenceProvider;
+import com.revolut.backend.persistence.PersistenceProxyService;
+import com.revolut.backend.persistence.inmemory.TempFolderPersistenceProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journaled transfers on the memory-mapped binary journal side by side with Airomem, for each durability level they support.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(32)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class MappedJournalPersistenceProviderBenchmark {
+
+    private static final int ACCOUNTS = 1024;
+    private static final int SEGMENT_SIZE = 64 << 20;
+
+    /**
+     * Provider and durability level, Airomem has no {@code ASYNC}.
+     */
+    @Param({"journal:SYNC", "journal:GROUP", "journal:ASYNC", "airomem:SYNC", "airomem:GROUP"})
+    private String setup;
+
+    private PersistenceProvider persistenceProvider;
+    private PersistenceProxyService service;
+
+    @Setup
+    public void setUp() throws IOException {
+        String provider = setup.substring(0, setup.indexOf(':'));
+        DurabilityLevel durability = DurabilityLevel.valueOf(setup.substring(setup.indexOf(':') + 1));
+        persistenceProvider = "journal".equals(provider)
+                ? new MappedJournalPersistenceProvider(Files.createTempDirectory("bench_mte_journal_"), SEGMENT_SIZE, durability, 0)
+                : new TempFolderPersistenceProvider(durability);
+        service = new PersistenceProxyService(persistenceProvider);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            service.createAccount(1_000_000_000L);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (persistenceProvider instanceof MappedJournalPersistenceProvider) {
+            ((MappedJournalPersistenceProvider) persistenceProvider).close();
+        }
+    }
+
+    @Benchmark
+    public Object makeTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long senderId = random.nextInt(ACCOUNTS);
+        long recipientId = (senderId + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        return service.submitMakeTransfer(senderId, recipientId, 1).toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,63 @@
+package com.revolut.backend.server;
+
+import com.revolut.backend.persistence.DurabilityLevel;
+import com.revolut.backend.persistence.PersistenceProxyService;
+import com.revolut.backend.persistence.journal.MappedJournalPersistenceProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers/sec journaled through the writer, side by side with the callers submitting them to the journal themselves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class NonBlockingServiceBenchmark {
+
+    private static final int ACCOUNTS = 4096;
+    private static final int SEGMENT_SIZE = 64 << 20;
+
+    @Param({"writer", "direct"})
+    private String path;
+
+    @Param({"SYNC", "GROUP", "ASYNC"})
+    private DurabilityLevel durability;
+
+    private MappedJournalPersistenceProvider provider;
+    private PersistenceProxyService targetService;
+    private NonBlockingService service;
+
+    @Setup
+    public void setUp() throws IOException {
+        provider = new MappedJournalPersistenceProvider(Files.createTempDirectory("bench_mte_writer_"), SEGMENT_SIZE, durability, 0);
+        targetService = new PersistenceProxyService(provider);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            targetService.createAccount(1_000_000_000L);
+        }
+        service = new NonBlockingService(targetService);
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+        provider.close();
+    }
+
+    @Benchmark
+    public Object makeTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long senderId = random.nextInt(ACCOUNTS);
+        long recipientId = (senderId + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        return ("writer".equals(path)
+                ? service.makeTransfer(senderId, recipientId, 1)
+                : targetService.submitMakeTransfer(senderId, recipientId, 1)).toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,73 @@
+package com.revolut.backend.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferStatus;
+import com.revolut.backend.server.dto.MakeTransfer;
+import com.revolut.backend.server.dto.MinorUnits;
+import com.revolut.backend.server.dto.TransferMade;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import ratpack.jackson.Jackson;
+import ratpack.jackson.JsonRender;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a transfer request and encoding its receipt, and encoding a balance, by Jackson as the web server did before
+ * and by the {@link PrimitiveJsonCodec}. Run with the gc profiler, which {@code gradlew jmh} enables, to compare the
+ * bytes allocated per request ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class PrimitiveJsonCodecBenchmark {
+
+    private static final long BALANCE = 12_345_678_9012L;
+    private static final long TRANSFER_ID = 1_234_567L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MinorUnits minorUnits = new MinorUnits(4);
+    private final PrimitiveJsonCodec codec = new PrimitiveJsonCodec(4);
+    private final long[] fields = new long[3];
+    private final byte[] makeTransferJson = "{\"senderId\":12345,\"recipientId\":67890,\"amount\":1234.5678}".getBytes(StandardCharsets.UTF_8);
+    private final ByteBuf makeTransferBuffer = Unpooled.wrappedBuffer(makeTransferJson);
+
+    @Benchmark
+    public Object makeTransferWithJackson() throws IOException {
+        MakeTransfer request = objectMapper.readValue(makeTransferJson, MakeTransfer.class);
+        long amount = minorUnits.toTransferAmount(request.getAmount());
+        CompletionStage<JsonRender> response = CompletableFuture.completedFuture(receipt(request.getSenderId(), request.getRecipientId(), amount))
+                .thenApply(TransferMade::fromReceipt)
+                .thenApply(Jackson::json);
+        return objectMapper.writeValueAsBytes(response.toCompletableFuture().join().getObject());
+    }
+
+    @Benchmark
+    public byte[] makeTransferWithCodec() {
+        codec.readTransfer(makeTransferBuffer, fields);
+        return codec.writeReceipt(receipt(fields[PrimitiveJsonCodec.SENDER_ID], fields[PrimitiveJsonCodec.RECIPIENT_ID], fields[PrimitiveJsonCodec.AMOUNT]));
+    }
+
+    @Benchmark
+    public byte[] balanceWithBigDecimal() {
+        return minorUnits.toDecimal(BALANCE).toPlainString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] balanceWithCodec() {
+        return codec.writeDecimal(BALANCE);
+    }
+
+    private static TransferReceipt receipt(long senderId, long recipientId, long amount) {
+        return senderId != recipientId && amount > 0 ? TransferReceipt.transferred(TRANSFER_ID) : TransferReceipt.withoutId(TransferStatus.INVALID_AMOUNT);
+    }
+}
@@ -0,0 +1,96 @@
+package com.revolut.backend.server;
+
+import com.revolut.backend.persistence.DirectPersistenceProvider;
+import com.revolut.backend.persistence.PersistenceProxyService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers/sec through an in-process {@link WebServer}, over its REST endpoint and over the {@link BinaryProtocol},
+ * one request at a time per benchmark thread and with many in flight on the shared binary connection.
+ * Commands aren't journaled, so the numbers show the cost of the protocols, not of the journal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ProtocolBenchmark {
+
+    private static final int ACCOUNTS = 4096;
+    private static final int IN_FLIGHT = 64;
+
+    private WebServer server;
+    private BinaryClient client;
+    private String transferUrl;
+
+    @Setup
+    public void setUp() throws Exception {
+        System.setProperty("http.maxConnections", "16");
+        DirectPersistenceProvider provider = new DirectPersistenceProvider();
+        PersistenceProxyService setUp = new PersistenceProxyService(provider);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            setUp.createAccount(1_000_000_000_000L);
+        }
+        server = new WebServer(provider, 0, 0);
+        server.start();
+        client = new BinaryClient("localhost", server.getBinaryPort());
+        transferUrl = "http://localhost:" + server.getPort() + "/services/transfer/make";
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public int makeTransferOverRest() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long senderId = random.nextInt(ACCOUNTS);
+        long recipientId = (senderId + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        HttpURLConnection connection = (HttpURLConnection) new URL(transferUrl).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(String.format("{\"senderId\":%d,\"recipientId\":%d,\"amount\":0.0001}", senderId, recipientId)
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return in.read();
+        }
+    }
+
+    @Benchmark
+    public Object makeTransferOverBinary() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long senderId = random.nextInt(ACCOUNTS);
+        long recipientId = (senderId + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        return client.makeTransfer(senderId, recipientId, 1).join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IN_FLIGHT)
+    public Object makeTransfersInFlightOverBinary() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        CompletableFuture<?>[] transfers = new CompletableFuture<?>[IN_FLIGHT];
+        for (int i = 0; i < IN_FLIGHT; i++) {
+            long senderId = random.nextInt(ACCOUNTS);
+            long recipientId = (senderId + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+            transfers[i] = client.makeTransfer(senderId, recipientId, 1);
+        }
+        return CompletableFuture.allOf(transfers).join();
+    }
+}
@@ -0,0 +1,67 @@
+package com.revolut.backend.server.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of a transfer request and of a page of statement entries, the bodies
+ * the web server parses and renders most often.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class JsonBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MakeTransfer makeTransfer = new MakeTransfer(12_345L, 67_890L, new BigDecimal("1234.5678"), "order-4711");
+    private final List<StatementEntry> statementPage = new ArrayList<>();
+    private String makeTransferJson;
+    private String statementPageJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            statementPage.add(new StatementEntry(timestamp + i, i, BigDecimal.valueOf(i % 2 == 0 ? i : -i, 2)));
+        }
+        makeTransferJson = objectMapper.writeValueAsString(makeTransfer);
+        statementPageJson = objectMapper.writeValueAsString(new PagedStatement(statementPage, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public MakeTransfer readMakeTransfer() throws IOException {
+        return objectMapper.readValue(makeTransferJson, MakeTransfer.class);
+    }
+
+    @Benchmark
+    public String writeMakeTransfer() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(makeTransfer);
+    }
+
+    @Benchmark
+    public String writeStatementEntry() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(statementPage.get(0));
+    }
+
+    @Benchmark
+    public String writeStatementPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(new PagedStatement(statementPage, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public PagedStatement readStatementPage() throws IOException {
+        return objectMapper.readValue(statementPageJson, PagedStatement.class);
+    }
+}
@@ -0,0 +1,49 @@
+package com.revolut.backend.service;
+
+import com.revolut.backend.domain.Account;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Account lookups in the dense table compared to the former {@code ConcurrentHashMap<Long, Account>}
+ * (with its {@code containsKey} followed by {@code get}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class AccountLocatorBenchmark {
+
+    @Param({"1000", "1000000", "10000000"})
+    private int accounts;
+
+    private AccountLocator locator;
+    private ConcurrentHashMap<Long, Account> accountById;
+
+    @Setup
+    public void setUp() {
+        AccountRepository repository = new AccountRepository();
+        accountById = new ConcurrentHashMap<>();
+        for (int i = 0; i < accounts; i++) {
+            long id = repository.createAccount(i);
+            accountById.put(id, new Account(i));
+        }
+        locator = repository;
+    }
+
+    @Benchmark
+    public Account denseTable() {
+        return locator.findAccount(ThreadLocalRandom.current().nextInt(accounts));
+    }
+
+    @Benchmark
+    public Account concurrentHashMap() {
+        long id = ThreadLocalRandom.current().nextInt(accounts);
+        return accountById.containsKey(id) ? accountById.get(id) : null;
+    }
+}
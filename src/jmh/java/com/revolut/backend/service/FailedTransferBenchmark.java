@@ -0,0 +1,94 @@
+package com.revolut.backend.service;
+
+import com.revolut.backend.api.AccountService;
+import com.revolut.backend.domain.TransferStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Failure-heavy workloads: transfers without funds or between unknown accounts and lookups of unknown accounts,
+ * as in an insufficient-funds storm or a scan by a misbehaving client. Failures are returned as statuses;
+ * {@link #makeTransferThrowing()} and {@link #checkBalanceThrowing()} add the cost of the exception each failure used
+ * to create, for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class FailedTransferBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({"noFunds", "unknownSender", "unknownRecipient"})
+    private String workload;
+
+    private CoreService service;
+
+    @Setup
+    public void setUp() {
+        service = new CoreService();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            service.createAccount(0);
+        }
+    }
+
+    @Benchmark
+    public TransferStatus makeTransfer() {
+        return transfer();
+    }
+
+    @Benchmark
+    public TransferStatus makeTransferThrowing() {
+        try {
+            TransferStatus status = transfer();
+            throw new FailedTransferException(status);
+        } catch (FailedTransferException e) {
+            return e.status;
+        }
+    }
+
+    @Benchmark
+    public long findBalance() {
+        return service.findBalance(unknownAccount());
+    }
+
+    @Benchmark
+    public long checkBalanceThrowing() {
+        try {
+            return service.checkBalance(unknownAccount());
+        } catch (IllegalArgumentException e) {
+            return AccountService.NO_ACCOUNT;
+        }
+    }
+
+    private TransferStatus transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long account = random.nextInt(ACCOUNTS);
+        long other = (account + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        switch (workload) {
+            case "unknownSender":
+                return service.makeTransfer(unknownAccount(), account, 1);
+            case "unknownRecipient":
+                return service.makeTransfer(account, unknownAccount(), 1);
+            default:
+                return service.makeTransfer(account, other, 1);
+        }
+    }
+
+    private static long unknownAccount() {
+        return ACCOUNTS + ThreadLocalRandom.current().nextInt(ACCOUNTS);
+    }
+
+    private static class FailedTransferException extends Exception {
+        private final TransferStatus status;
+
+        private FailedTransferException(TransferStatus status) {
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.revolut.backend.service;
+
+import com.revolut.backend.domain.TransferStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers with 90% of them going to a single recipient, which is either a regular account,
+ * hot from the start, or made hot once credits to it get contended.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class HotAccountBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final long MERCHANT = 0;
+
+    @Param({"regular", "hot", "detected"})
+    private String merchant;
+
+    private CoreService service;
+
+    @Setup
+    public void setUp() {
+        service = new CoreService(
+                "hot".equals(merchant) ? Collections.singleton(MERCHANT) : Collections.emptySet(),
+                "detected".equals(merchant) ? 1000 : 0, 1000, 1024, TimeUnit.DAYS.toMillis(1), Long.MAX_VALUE);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            service.createAccount(Long.MAX_VALUE / (2 * ACCOUNTS));
+        }
+    }
+
+    @Benchmark
+    public TransferStatus makeTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long senderId = 1 + random.nextInt(ACCOUNTS - 1);
+        long recipientId = random.nextInt(10) < 9 ? MERCHANT : 1 + random.nextInt(ACCOUNTS - 1);
+        return service.makeTransfer(senderId, recipientId, 1);
+    }
+}
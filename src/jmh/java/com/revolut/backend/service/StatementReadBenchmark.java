@@ -0,0 +1,55 @@
+package com.revolut.backend.service;
+
+import com.revolut.backend.domain.StatementOrder;
+import com.revolut.backend.domain.StatementPage;
+import com.revolut.backend.domain.Transfer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a statement of an account with a short, medium and long history: a page of the newest entries,
+ * the whole statement, and the balance of the same account for reference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class StatementReadBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"10", "1000", "100000"})
+    private int historyLength;
+
+    private CoreService service;
+    private long accountId;
+
+    @Setup
+    public void setUp() {
+        service = new CoreService();
+        accountId = service.createAccount(historyLength);
+        long otherAccountId = service.createAccount(0);
+        for (int i = 0; i < historyLength; i++) {
+            service.makeTransfer(accountId, otherAccountId, 1);
+        }
+    }
+
+    @Benchmark
+    public StatementPage newestPage() {
+        return service.findStatementPage(accountId, -1, PAGE_SIZE, StatementOrder.NEWEST_FIRST);
+    }
+
+    @Benchmark
+    public List<Transfer> wholeStatement() {
+        return service.getStatement(accountId);
+    }
+
+    @Benchmark
+    public long balance() {
+        return service.findBalance(accountId);
+    }
+}
@@ -0,0 +1,59 @@
+package com.revolut.backend.service;
+
+import com.revolut.backend.domain.TransferStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers made concurrently from many threads, with one account on the sending or receiving side of every transfer,
+ * compared to transfers spread evenly over all accounts; {@link #makeTransferAlone()} makes the same transfers
+ * from a single thread, without any contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class TransferContentionBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final long HOT_ACCOUNT = 0;
+
+    @Param({"uniform", "hotSender", "hotRecipient"})
+    private String workload;
+
+    private CoreService service;
+
+    @Setup
+    public void setUp() {
+        service = new CoreService();
+        service.createAccount(Long.MAX_VALUE / 2);
+        for (int i = 1; i < ACCOUNTS; i++) {
+            service.createAccount(Long.MAX_VALUE / (2 * ACCOUNTS));
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TransferStatus makeTransferAlone() {
+        return makeTransfer();
+    }
+
+    @Benchmark
+    public TransferStatus makeTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long other = 1 + random.nextInt(ACCOUNTS - 1);
+        switch (workload) {
+            case "hotSender":
+                return service.makeTransfer(HOT_ACCOUNT, other, 1);
+            case "hotRecipient":
+                return service.makeTransfer(other, HOT_ACCOUNT, 1);
+            default:
+                return service.makeTransfer(other, 1 + random.nextInt(ACCOUNTS - 1), 1);
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.revolut.backend;
 
+import com.revolut.backend.persistence.DurabilityLevel;
 import lombok.Getter;
 
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Getter
 public class ConfigurationProperties {
@@ -17,7 +21,31 @@ public class ConfigurationProperties {
     private URI webServerPublicAddress;
     private int webServerPort;
     private int webServerThreads;
+    private String webServerMode;
+    private int binaryPort;
+    private int binaryMaxInFlight;
     private String prevalayerUserFolder;
+    private String persistenceProvider;
+    private String journalUserFolder;
+    private int journalSegmentSize;
+    private long journalFlushIntervalMillis;
+    private long snapshotIntervalSeconds;
+    private int readThreads;
+    private int writeQueueCapacity;
+    private long writeMaxQueueWaitMillis;
+    private int writeRetryAfterSeconds;
+    private DurabilityLevel persistenceDurability;
+    private int groupCommitMaxBatchSize;
+    private long groupCommitMaxDelayMicros;
+    private int amountScale;
+    private Set<Long> hotAccountIds;
+    private int hotAccountContendedCredits;
+    private long hotAccountWindowMillis;
+    private int idempotencyFifoCapacity;
+    private long idempotencyWindowSeconds;
+    private long transfersRetained;
+    private int statementDefaultPageSize;
+    private int statementMaxPageSize;
 
     private ConfigurationProperties() {
         Properties properties = new java.util.Properties();
@@ -33,6 +61,34 @@ public class ConfigurationProperties {
         webServerPublicAddress = new URI(properties.getProperty("webServer.publicAddress"));
         webServerPort = Integer.parseInt(properties.getProperty("webServer.port"));
         webServerThreads = Integer.parseInt(properties.getProperty("webServer.threads"));
+        webServerMode = properties.getProperty("webServer.mode");
+        binaryPort = Integer.parseInt(properties.getProperty("binary.port"));
+        binaryMaxInFlight = Integer.parseInt(properties.getProperty("binary.maxInFlight"));
         prevalayerUserFolder = properties.getProperty("prevalayer.userFolder");
+        persistenceProvider = properties.getProperty("persistence.provider");
+        journalUserFolder = properties.getProperty("journal.userFolder");
+        journalSegmentSize = Integer.parseInt(properties.getProperty("journal.segmentSize"));
+        journalFlushIntervalMillis = Long.parseLong(properties.getProperty("journal.flushIntervalMillis"));
+        snapshotIntervalSeconds = Long.parseLong(properties.getProperty("snapshot.intervalSeconds"));
+        readThreads = Integer.parseInt(properties.getProperty("reads.threads"));
+        writeQueueCapacity = Integer.parseInt(properties.getProperty("writes.queueCapacity"));
+        writeMaxQueueWaitMillis = Long.parseLong(properties.getProperty("writes.maxQueueWaitMillis"));
+        writeRetryAfterSeconds = Integer.parseInt(properties.getProperty("writes.retryAfterSeconds"));
+        persistenceDurability = DurabilityLevel.valueOf(properties.getProperty("persistence.durability"));
+        groupCommitMaxBatchSize = Integer.parseInt(properties.getProperty("persistence.groupCommit.maxBatchSize"));
+        groupCommitMaxDelayMicros = Long.parseLong(properties.getProperty("persistence.groupCommit.maxDelayMicros"));
+        amountScale = Integer.parseInt(properties.getProperty("amounts.scale"));
+        hotAccountIds = Arrays.stream(properties.getProperty("accounts.hot.ids").split(","))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .map(Long::parseLong)
+                .collect(Collectors.toSet());
+        hotAccountContendedCredits = Integer.parseInt(properties.getProperty("accounts.hot.afterContendedCredits"));
+        hotAccountWindowMillis = Long.parseLong(properties.getProperty("accounts.hot.windowMillis"));
+        idempotencyFifoCapacity = Integer.parseInt(properties.getProperty("idempotency.fifoCapacity"));
+        idempotencyWindowSeconds = Long.parseLong(properties.getProperty("idempotency.windowSeconds"));
+        transfersRetained = Long.parseLong(properties.getProperty("transfers.retained"));
+        statementDefaultPageSize = Integer.parseInt(properties.getProperty("statement.defaultPageSize"));
+        statementMaxPageSize = Integer.parseInt(properties.getProperty("statement.maxPageSize"));
     }
 }
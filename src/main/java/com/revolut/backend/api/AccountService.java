@@ -1,14 +1,27 @@
 package com.revolut.backend.api;
 
-import java.math.BigDecimal;
-
 public interface AccountService {
 
+    /**
+     * Returned by {@link #findBalance(long)} for an unknown account; no balance can be that low.
+     */
+    long NO_ACCOUNT = Long.MIN_VALUE;
+
     default long createAccount() {
-        return createAccount(BigDecimal.ZERO);
+        return createAccount(0);
     }
 
-    long createAccount(BigDecimal initialBalance);
+    /**
+     * Amounts and balances are expressed in minor units of the currency.
+     */
+    long createAccount(long initialBalance);
+
+    long checkBalance(long accountId);
 
-    BigDecimal checkBalance(long accountId);
+    /**
+     * Like {@link #checkBalance(long)}, but tells about an unknown account without throwing.
+     *
+     * @return the balance, or {@link #NO_ACCOUNT} if there's no such account
+     */
+    long findBalance(long accountId);
 }
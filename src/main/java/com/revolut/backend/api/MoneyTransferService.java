@@ -1,6 +1,25 @@
 package com.revolut.backend.api;
 
+import com.revolut.backend.domain.AccountsView;
+
 import java.io.Serializable;
 
 public interface MoneyTransferService extends AccountService, TransferService, Serializable {
+
+    /**
+     * Reads balances, and statements if asked for, of the accounts as of the same version, without holding writers
+     * back.
+     *
+     * @param version version to read at, negative for the latest committed one; versions count writes since the engine
+     *                started and aren't persisted
+     * @throws IllegalArgumentException if the version is not committed yet
+     */
+    AccountsView readAccounts(long[] accountIds, long version, boolean withStatements);
+
+    long getAccountCount();
+
+    /**
+     * Counts entries of all statements, two per transfer.
+     */
+    long getStatementEntryCount();
 }
@@ -1,13 +1,97 @@
 package com.revolut.backend.api;
 
+import com.revolut.backend.domain.IdempotencyKey;
+import com.revolut.backend.domain.StatementOrder;
+import com.revolut.backend.domain.StatementPage;
 import com.revolut.backend.domain.Transfer;
+import com.revolut.backend.domain.TransferOrder;
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferRecord;
 import com.revolut.backend.domain.TransferStatus;
 
-import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
 
 public interface TransferService {
-    TransferStatus makeTransfer(long senderId, long recipientId, BigDecimal amount);
+    TransferStatus makeTransfer(long senderId, long recipientId, long amount);
+
+    /**
+     * Like {@link #makeTransfer(long, long, long)}, but also tells the id the transfer was committed with.
+     */
+    TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount);
+
+    /**
+     * Like {@link #makeTransferWithReceipt(long, long, long)}, but with the id taken when the transfer was journaled,
+     * which it's replayed with.
+     *
+     * @param transferId id no other transfer has, or {@link TransferReceipt#NO_TRANSFER_ID} to take the next one
+     */
+    TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount, long transferId);
+
+    /**
+     * @return the committed transfer, or null if there's none with the id among the retained ones
+     */
+    TransferRecord findTransfer(long transferId);
+
+    /**
+     * Makes the transfer unless one was made with the same key within the idempotency window, whose status is returned
+     * instead, or {@link TransferStatus#IDEMPOTENCY_CONFLICT} if it had another recipient or amount.
+     *
+     * @param key       scoped by the sender, see {@link IdempotencyKey#of(long, String)}
+     * @param timestamp time of the request in millis
+     */
+    TransferStatus makeTransfer(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp);
+
+    /**
+     * Like {@link #makeTransfer(long, long, long, IdempotencyKey, long)}, but also tells the id the transfer was
+     * committed with; a retry tells the id of the transfer it repeats.
+     */
+    TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp);
+
+    /**
+     * Like {@link #makeTransferWithReceipt(long, long, long, IdempotencyKey, long)}, but with an id taken when the
+     * transfer was journaled, see {@link #makeTransferWithReceipt(long, long, long, long)}.
+     */
+    TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp, long transferId);
+
+    /**
+     * @return receipt {@link #makeTransferWithReceipt(long, long, long, IdempotencyKey, long)} would answer a retry
+     * with, empty if it would make the transfer
+     */
+    Optional<TransferReceipt> findTransferReceipt(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp);
+
+    /**
+     * Makes the transfers one by one, in the given order.
+     *
+     * @return status of each transfer, at the same position as the transfer
+     */
+    List<TransferStatus> makeTransfers(List<TransferOrder> transfers);
+
+    /**
+     * @return receipt of each transfer, at the same position as the transfer
+     */
+    List<TransferReceipt> makeTransfersWithReceipts(List<TransferOrder> transfers);
+
+    /**
+     * Like {@link #makeTransfersWithReceipts(List)}, but with consecutive ids taken when the transfers were journaled,
+     * one for each position, see {@link #makeTransferWithReceipt(long, long, long, long)}.
+     */
+    List<TransferReceipt> makeTransfersWithReceipts(List<TransferOrder> transfers, long firstTransferId);
 
     List<Transfer> getStatement(long accountId);
+
+    /**
+     * Reads at most {@code limit} entries of the statement, starting at {@code cursor}.
+     * Entries are never removed, so a cursor stays valid while the statement grows.
+     *
+     * @param cursor position to start at, as returned with the previous page; negative for the first page
+     */
+    StatementPage getStatement(long accountId, int cursor, int limit, StatementOrder order);
+
+    /**
+     * Like {@link #getStatement(long, int, int, StatementOrder)}, but tells about an unknown account without throwing.
+     *
+     * @return the page, or null if there's no such account
+     */
+    StatementPage findStatementPage(long accountId, int cursor, int limit, StatementOrder order);
 }
@@ -1,26 +1,151 @@
 package com.revolut.backend.domain;
 
 import java.io.Serializable;
-import java.math.BigDecimal;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
+/**
+ * Balance is kept in minor units of the currency (e.g. cents), see {@code amounts.scale}.
+ * <p>
+ * A hot account takes credits in striped cells, summed on read like {@link java.util.concurrent.atomic.LongAdder}.
+ * Debits still take the balance, which may go negative while the cells hold the rest; {@link #getBalance()} returns
+ * the total.
+ */
 public class Account implements Serializable {
 
-    private AtomicReference<BigDecimal> balance = new AtomicReference<>();
+    private static final AtomicLongFieldUpdater<Account> BALANCE = AtomicLongFieldUpdater.newUpdater(Account.class, "balance");
+    private static final AtomicIntegerFieldUpdater<Account> CONTENDED_CREDITS = AtomicIntegerFieldUpdater.newUpdater(Account.class, "contendedCredits");
+    private static final AtomicLongFieldUpdater<Account> CONTENDED_SINCE = AtomicLongFieldUpdater.newUpdater(Account.class, "contendedSince");
+    private static final int CELLS = 16;
+    // cells are spread 64 bytes apart, so that threads crediting different cells don't share a cache line
+    private static final int CELL_STRIDE = 8;
 
-    public Account(BigDecimal initialBalance) {
-        this.balance.set(initialBalance);
+    private volatile long balance;
+    private volatile AtomicLongArray cells;
+    private volatile int contendedCredits;
+    private volatile long contendedSince;
+    private final long openingBalance;
+    private final long createdVersion;
+
+    public Account(long initialBalance) {
+        this(initialBalance, initialBalance, 0);
+    }
+
+    /**
+     * @param openingBalance balance before the first entry of the statement
+     * @param createdVersion version of the write that created the account
+     */
+    public Account(long balance, long openingBalance, long createdVersion) {
+        this.balance = balance;
+        this.openingBalance = openingBalance;
+        this.createdVersion = createdVersion;
+    }
+
+    public long getBalance() {
+        AtomicLongArray currentCells = cells;
+        long total = balance;
+        if (currentCells != null) {
+            for (int cell = 0; cell < CELLS; cell++) {
+                total += currentCells.get(cell * CELL_STRIDE);
+            }
+        }
+        return total;
+    }
+
+    public long getOpeningBalance() {
+        return openingBalance;
+    }
+
+    public long getCreatedVersion() {
+        return createdVersion;
+    }
+
+    public boolean isHot() {
+        return cells != null;
+    }
+
+    /**
+     * Switches credits over to striped cells; credits in progress are not lost.
+     */
+    public synchronized void makeHot() {
+        if (cells == null) {
+            cells = new AtomicLongArray(CELLS * CELL_STRIDE);
+        }
+    }
+
+    /**
+     * @return number of credits that had to wait for the account within the current window, a window starting anew
+     * once {@code windowMillis} are over
+     */
+    public int recordContendedCredit(long now, long windowMillis) {
+        long since = contendedSince;
+        if (now - since > windowMillis && CONTENDED_SINCE.compareAndSet(this, since, now)) {
+            // a credit counted by another thread in between is lost, which only delays making the account hot
+            contendedCredits = 0;
+        }
+        return CONTENDED_CREDITS.incrementAndGet(this);
+    }
+
+    /**
+     * @throws ArithmeticException if the balance would overflow, the balance is left unchanged then, see {@link #tryDeposit(long)}
+     */
+    public void deposit(long amount) {
+        if (!tryDeposit(amount)) {
+            throw new ArithmeticException("long overflow");
+        }
+    }
+
+    /**
+     * Like {@link #deposit(long)}, but tells about an overflow without throwing.
+     *
+     * @return false if the balance would overflow, the balance is left unchanged then;
+     * on a hot account only the credited cell is checked, reading all of them would
+     * bring back the contention the cells are there to avoid
+     */
+    public boolean tryDeposit(long amount) {
+        AtomicLongArray currentCells = cells;
+        long current;
+        long updated;
+        if (currentCells != null) {
+            int cell = cellOf(Thread.currentThread());
+            do {
+                current = currentCells.get(cell);
+                updated = current + amount;
+                if (overflows(current, amount, updated)) {
+                    return false;
+                }
+            } while (!currentCells.compareAndSet(cell, current, updated));
+            return true;
+        }
+        do {
+            current = balance;
+            updated = current + amount;
+            if (overflows(current, amount, updated)) {
+                return false;
+            }
+        } while (!BALANCE.compareAndSet(this, current, updated));
+        return true;
     }
 
-    public BigDecimal getBalance() {
-        return balance.get();
+    /**
+     * @throws ArithmeticException if the balance would overflow, the balance is left unchanged then
+     */
+    public void withdraw(long amount) {
+        long current;
+        do {
+            current = balance;
+        } while (!BALANCE.compareAndSet(this, current, Math.subtractExact(current, amount)));
     }
 
-    public void deposit(BigDecimal amount) {
-        balance.accumulateAndGet(amount, BigDecimal::add);
+    /**
+     * Same check as {@link Math#addExact(long, long)}: both operands have the sign the sum lacks.
+     */
+    private static boolean overflows(long current, long amount, long sum) {
+        return ((current ^ sum) & (amount ^ sum)) < 0;
     }
 
-    public void withdraw(BigDecimal amount) {
-        balance.accumulateAndGet(amount, BigDecimal::subtract);
+    private static int cellOf(Thread thread) {
+        return (int) (thread.getId() & (CELLS - 1)) * CELL_STRIDE;
     }
 }
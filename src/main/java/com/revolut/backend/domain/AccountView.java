@@ -0,0 +1,26 @@
+package com.revolut.backend.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.util.List;
+
+@AllArgsConstructor
+@Getter
+public class AccountView implements Serializable {
+    private final long accountId;
+    /**
+     * False if the account didn't exist as of the version read, balance and statement are not set then.
+     */
+    private final boolean found;
+    private final long balance;
+    /**
+     * Entries up to the version read, or null if not asked for.
+     */
+    private final List<Transfer> statement;
+
+    public static AccountView notFound(long accountId) {
+        return new AccountView(accountId, false, 0, null);
+    }
+}
@@ -0,0 +1,17 @@
+package com.revolut.backend.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Accounts as they were after all the writes up to {@link #getVersion()}, and none of the later ones.
+ */
+@AllArgsConstructor
+@Getter
+public class AccountsView implements Serializable {
+    private final long version;
+    private final List<AccountView> accounts;
+}
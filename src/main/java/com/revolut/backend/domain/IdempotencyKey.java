@@ -0,0 +1,40 @@
+package com.revolut.backend.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * Client-chosen key of a transfer across retries, scoped by the sender, kept as a 128-bit hash of the sender id and
+ * the key string.
+ */
+@AllArgsConstructor
+@Getter
+public class IdempotencyKey implements Serializable {
+
+    public static final int MAX_LENGTH = 255;
+
+    private final long high;
+    private final long low;
+
+    public static IdempotencyKey of(long senderId, String key) {
+        if (key.isEmpty() || key.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException(String.format("Idempotency key must have 1 to %d characters, got %d", MAX_LENGTH, key.length()));
+        }
+        return new IdempotencyKey(hash(senderId, key, 0xcbf29ce484222325L), hash(senderId, key, 0x84222325cbf29ce4L));
+    }
+
+    private static long hash(long senderId, String key, long seed) {
+        long hash = (seed ^ senderId) * 0x100000001b3L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        // spread every character over all bits, FNV alone leaves the high bits weak for short keys
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
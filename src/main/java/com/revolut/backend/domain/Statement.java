@@ -0,0 +1,179 @@
+package com.revolut.backend.domain;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only history of an account in primitive columns: timestamp, counterparty, signed amount, version and the
+ * running net amount. Columns are chunked, chunks doubling in size up to a limit, so no history is ever copied.
+ * Appends are serialized; readers don't lock, the size is published after the entry is written.
+ */
+public class Statement implements Serializable {
+
+    private static final int FIRST_CHUNK_BITS = 2;
+    private static final int LAST_CHUNK_BITS = 12;
+    private static final int LAST_CHUNK_SIZE = 1 << LAST_CHUNK_BITS;
+    private static final int GROWING_CHUNKS = LAST_CHUNK_BITS - FIRST_CHUNK_BITS;
+    private static final int GROWING_CHUNKS_CAPACITY = ((1 << GROWING_CHUNKS) - 1) << FIRST_CHUNK_BITS;
+
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile int size;
+    private long netAmount;
+
+    public void append(long timestamp, long party, long amount) {
+        append(timestamp, party, amount, 0);
+    }
+
+    /**
+     * Holding the statement's monitor keeps others from appending.
+     *
+     * @param version must not be lower than the version of any entry before
+     */
+    public synchronized void append(long timestamp, long party, long amount, long version) {
+        int index = size;
+        Chunk chunk = chunkForAppend(index);
+        int offset = offset(index);
+        netAmount += amount;
+        chunk.timestamps[offset] = timestamp;
+        chunk.parties[offset] = party;
+        chunk.amounts[offset] = amount;
+        chunk.versions[offset] = version;
+        chunk.netAmounts[offset] = netAmount;
+        size = index + 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of entries made by writes up to the given version; entries restored from a snapshot
+     * have version 0
+     */
+    public int sizeAt(long version) {
+        int high = size;
+        Chunk[] currentChunks = chunks;
+        int low = 0;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (currentChunks[chunkIndex(middle)].versions[offset(middle)] <= version) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return sum of amounts of the first {@code count} entries, {@code count} within {@link #size()}
+     */
+    public long netAmount(int count) {
+        if (count == 0) {
+            return 0;
+        }
+        int index = count - 1;
+        return chunks[chunkIndex(index)].netAmounts[offset(index)];
+    }
+
+    /**
+     * @return entries from {@code from} to {@code to}, exclusive, both within {@link #size()}
+     */
+    public List<Transfer> getTransfers(int from, int to) {
+        Chunk[] currentChunks = chunks;
+        List<Transfer> transfers = new ArrayList<>(Math.max(0, to - from));
+        for (int index = from; index < to; index++) {
+            transfers.add(getTransfer(currentChunks, index));
+        }
+        return transfers;
+    }
+
+    public List<Transfer> getTransfers() {
+        return getTransfers(0, size);
+    }
+
+    /**
+     * Writes the first {@code count} entries, {@code count} within {@link #size()}.
+     */
+    public void writeEntries(DataOutput out, int count) throws IOException {
+        Chunk[] currentChunks = chunks;
+        for (int index = 0; index < count; index++) {
+            Chunk chunk = currentChunks[chunkIndex(index)];
+            int offset = offset(index);
+            out.writeLong(chunk.timestamps[offset]);
+            out.writeLong(chunk.parties[offset]);
+            out.writeLong(chunk.amounts[offset]);
+        }
+    }
+
+    /**
+     * Appends {@code count} entries written by {@link #writeEntries(DataOutput, int)}.
+     */
+    public void readEntries(DataInput in, int count) throws IOException {
+        for (int index = 0; index < count; index++) {
+            append(in.readLong(), in.readLong(), in.readLong());
+        }
+    }
+
+    private static Transfer getTransfer(Chunk[] chunks, int index) {
+        Chunk chunk = chunks[chunkIndex(index)];
+        int offset = offset(index);
+        return Transfer.builder()
+                .timestamp(Instant.ofEpochMilli(chunk.timestamps[offset]))
+                .party(chunk.parties[offset])
+                .balance(chunk.amounts[offset])
+                .build();
+    }
+
+    private Chunk chunkForAppend(int index) {
+        int chunkIndex = chunkIndex(index);
+        Chunk[] currentChunks = chunks;
+        if (chunkIndex < currentChunks.length) {
+            return currentChunks[chunkIndex];
+        }
+        Chunk[] grown = new Chunk[chunkIndex + 1];
+        System.arraycopy(currentChunks, 0, grown, 0, currentChunks.length);
+        grown[chunkIndex] = new Chunk(chunkSize(chunkIndex));
+        chunks = grown;
+        return grown[chunkIndex];
+    }
+
+    private static int chunkIndex(int index) {
+        if (index < GROWING_CHUNKS_CAPACITY) {
+            return 31 - Integer.numberOfLeadingZeros((index >>> FIRST_CHUNK_BITS) + 1);
+        }
+        return GROWING_CHUNKS + ((index - GROWING_CHUNKS_CAPACITY) >>> LAST_CHUNK_BITS);
+    }
+
+    private static int offset(int index) {
+        if (index < GROWING_CHUNKS_CAPACITY) {
+            return index - (((1 << chunkIndex(index)) - 1) << FIRST_CHUNK_BITS);
+        }
+        return (index - GROWING_CHUNKS_CAPACITY) & (LAST_CHUNK_SIZE - 1);
+    }
+
+    private static int chunkSize(int chunkIndex) {
+        return chunkIndex < GROWING_CHUNKS ? 1 << (FIRST_CHUNK_BITS + chunkIndex) : LAST_CHUNK_SIZE;
+    }
+
+    private static class Chunk implements Serializable {
+        private final long[] timestamps;
+        private final long[] parties;
+        private final long[] amounts;
+        private final long[] versions;
+        private final long[] netAmounts;
+
+        private Chunk(int size) {
+            this.timestamps = new long[size];
+            this.parties = new long[size];
+            this.amounts = new long[size];
+            this.versions = new long[size];
+            this.netAmounts = new long[size];
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.revolut.backend.domain;
+
+public enum StatementOrder {
+    OLDEST_FIRST,
+    NEWEST_FIRST
+}
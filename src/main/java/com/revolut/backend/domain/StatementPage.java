@@ -0,0 +1,23 @@
+package com.revolut.backend.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.util.List;
+
+@AllArgsConstructor
+@Getter
+public class StatementPage implements Serializable {
+    public static final int NO_MORE_ENTRIES = -1;
+
+    private final List<Transfer> transfers;
+    /**
+     * Position of the next page in the statement, or {@link #NO_MORE_ENTRIES} if this is the last page so far.
+     */
+    private final int nextCursor;
+
+    public boolean hasNext() {
+        return nextCursor != NO_MORE_ENTRIES;
+    }
+}
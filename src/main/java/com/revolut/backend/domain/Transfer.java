@@ -4,7 +4,6 @@ import lombok.Builder;
 import lombok.Getter;
 
 import java.io.Serializable;
-import java.math.BigDecimal;
 import java.time.Instant;
 
 @Builder
@@ -12,13 +11,13 @@ import java.time.Instant;
 public class Transfer implements Serializable {
     private Instant timestamp;
     private long party;
-    private BigDecimal balance;
+    private long balance;
 
-    public static Transfer outgoing(Instant timestamp, long recipientId, BigDecimal amount) {
-        return Transfer.builder().timestamp(timestamp).party(recipientId).balance(amount.negate()).build();
+    public static Transfer outgoing(Instant timestamp, long recipientId, long amount) {
+        return Transfer.builder().timestamp(timestamp).party(recipientId).balance(-amount).build();
     }
 
-    public static Transfer incoming(Instant timestamp, long senderId, BigDecimal amount) {
+    public static Transfer incoming(Instant timestamp, long senderId, long amount) {
         return Transfer.builder().timestamp(timestamp).party(senderId).balance(amount).build();
     }
 }
@@ -0,0 +1,14 @@
+package com.revolut.backend.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Serializable;
+
+@AllArgsConstructor
+@Getter
+public class TransferOrder implements Serializable {
+    private final long senderId;
+    private final long recipientId;
+    private final long amount;
+}
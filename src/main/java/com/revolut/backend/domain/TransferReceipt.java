@@ -0,0 +1,45 @@
+package com.revolut.backend.domain;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * Outcome of a transfer along with the id it was committed with, see
+ * {@link com.revolut.backend.api.TransferService#findTransfer(long)}.
+ */
+@Getter
+public class TransferReceipt implements Serializable {
+
+    /**
+     * Id of a transfer which wasn't made.
+     */
+    public static final long NO_TRANSFER_ID = -1;
+
+    private static final TransferReceipt[] WITHOUT_ID = new TransferReceipt[TransferStatus.values().length];
+
+    static {
+        for (TransferStatus status : TransferStatus.values()) {
+            WITHOUT_ID[status.ordinal()] = new TransferReceipt(status, NO_TRANSFER_ID);
+        }
+    }
+
+    private final TransferStatus status;
+    private final long transferId;
+
+    private TransferReceipt(TransferStatus status, long transferId) {
+        this.status = status;
+        this.transferId = transferId;
+    }
+
+    public static TransferReceipt transferred(long transferId) {
+        return new TransferReceipt(TransferStatus.TRANSFERRED, transferId);
+    }
+
+    /**
+     * @return a shared receipt with {@link #NO_TRANSFER_ID}
+     */
+    public static TransferReceipt withoutId(TransferStatus status) {
+        return WITHOUT_ID[status.ordinal()];
+    }
+}
@@ -0,0 +1,25 @@
+package com.revolut.backend.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * A committed transfer, as found by its id.
+ */
+@AllArgsConstructor
+@Getter
+public class TransferRecord implements Serializable {
+    private final long transferId;
+    private final long senderId;
+    private final long recipientId;
+    /**
+     * In minor units, always positive.
+     */
+    private final long amount;
+    /**
+     * Millis since the epoch.
+     */
+    private final long timestamp;
+}
@@ -11,7 +11,11 @@ public enum TransferStatus {
     INVALID_SENDER(2),
     INVALID_RECIPIENT(3),
     INVALID_AMOUNT(4),
-    NO_FUNDS(5);
+    NO_FUNDS(5),
+    /**
+     * The idempotency key was used before for a transfer from the same sender with another recipient or amount.
+     */
+    IDEMPOTENCY_CONFLICT(6);
 
     private final int code;
 
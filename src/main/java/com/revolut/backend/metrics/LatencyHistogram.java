@@ -0,0 +1,59 @@
+package com.revolut.backend.metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durations counted in buckets doubling in width, with upper bounds from a microsecond to about 17 seconds.
+ * Recording only adds to {@link LongAdder}s, so it neither allocates nor contends.
+ */
+public class LatencyHistogram {
+
+    static final int BOUNDED_BUCKETS = 25;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final String[] BOUNDS = new String[BOUNDED_BUCKETS + 1];
+
+    static {
+        for (int bucket = 0; bucket < BOUNDED_BUCKETS; bucket++) {
+            BOUNDS[bucket] = BigDecimal.valueOf(1L << bucket, 6).stripTrailingZeros().toPlainString();
+        }
+        BOUNDS[BOUNDED_BUCKETS] = "+Inf";
+    }
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDED_BUCKETS + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    LatencyHistogram() {
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            buckets[bucket] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        buckets[bucketOf(nanos)].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * @return index of the bucket with the lowest upper bound (2^index micros) not below the duration
+     */
+    static int bucketOf(long nanos) {
+        long micros = (Math.max(0, nanos) - 1) / 1000 + 1;
+        if (micros <= 1) {
+            return 0;
+        }
+        return Math.min(BOUNDED_BUCKETS, 64 - Long.numberOfLeadingZeros(micros - 1));
+    }
+
+    void writeTo(StringBuilder out, String name, String labels) {
+        String separator = labels.isEmpty() ? "" : ",";
+        long cumulative = 0;
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            cumulative += buckets[bucket].sum();
+            out.append(name).append("_bucket{").append(labels).append(separator).append("le=\"").append(BOUNDS[bucket]).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        out.append(name).append("_sum").append(Metrics.braces(labels)).append(' ').append(sumNanos.sum() / NANOS_PER_SECOND).append('\n');
+        out.append(name).append("_count").append(Metrics.braces(labels)).append(' ').append(cumulative).append('\n');
+    }
+}
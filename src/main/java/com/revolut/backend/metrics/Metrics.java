@@ -0,0 +1,100 @@
+package com.revolut.backend.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the engine's metrics, scraped in the Prometheus text format. A series is identified by its name and
+ * labels, given as {@code name, value} pairs; registering it again returns the same counter or histogram, while
+ * a gauge is replaced.
+ */
+public class Metrics {
+
+    private static final Metrics METRICS = new Metrics();
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    Metrics() {
+    }
+
+    public static Metrics metrics() {
+        return METRICS;
+    }
+
+    public synchronized LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, "histogram").series.computeIfAbsent(labels(labels), key -> new LatencyHistogram());
+    }
+
+    /**
+     * @param name should end with {@code _total}
+     */
+    public synchronized LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, "counter").series.computeIfAbsent(labels(labels), key -> new LongAdder());
+    }
+
+    /**
+     * @param value read when scraped, so it must be cheap and thread-safe
+     */
+    public synchronized void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, "gauge").series.put(labels(labels), value);
+    }
+
+    public synchronized String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                Object value = series.getValue();
+                if (value instanceof LatencyHistogram) {
+                    ((LatencyHistogram) value).writeTo(out, family.name, series.getKey());
+                } else {
+                    long current = value instanceof LongAdder ? ((LongAdder) value).sum() : ((LongSupplier) value).getAsLong();
+                    out.append(family.name).append(braces(series.getKey())).append(' ').append(current).append('\n');
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException(String.format("Metric %s is a %s, not a %s", name, family.type, type));
+        }
+        return family;
+    }
+
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name, value pairs");
+        }
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(labels[i]).append("=\"").append(labels[i + 1]).append('"');
+        }
+        return out.toString();
+    }
+
+    static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final Map<String, Object> series = new LinkedHashMap<>();
+
+        private Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
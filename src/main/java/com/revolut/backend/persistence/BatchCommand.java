@@ -0,0 +1,55 @@
+package com.revolut.backend.persistence;
+
+import com.revolut.backend.api.MoneyTransferService;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Applies a group of commands in order as a single journal entry.
+ * A failing command doesn't affect the others - its exception is returned in place of the result.
+ */
+public class BatchCommand implements ServiceCommand<List<Object>> {
+
+    private final List<ServiceCommand<?>> commands;
+
+    public BatchCommand(List<ServiceCommand<?>> commands) {
+        this.commands = new ArrayList<>(commands);
+    }
+
+    public List<ServiceCommand<?>> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    @Override
+    public BatchCommand stampedAt(long timestamp) {
+        List<ServiceCommand<?>> stamped = new ArrayList<>(commands.size());
+        for (ServiceCommand<?> command : commands) {
+            stamped.add(command.stampedAt(timestamp));
+        }
+        return new BatchCommand(stamped);
+    }
+
+    @Override
+    public List<Object> apply(MoneyTransferService service) {
+        List<Object> results = new ArrayList<>(commands.size());
+        for (ServiceCommand<?> command : commands) {
+            try {
+                results.add(command.apply(service));
+            } catch (RuntimeException e) {
+                results.add(new Failure(e));
+            }
+        }
+        return results;
+    }
+
+    @AllArgsConstructor
+    @Getter
+    public static class Failure implements Serializable {
+        private final RuntimeException cause;
+    }
+}
@@ -0,0 +1,16 @@
+package com.revolut.backend.persistence;
+
+import com.revolut.backend.api.MoneyTransferService;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class CreateAccountCommand implements ServiceCommand<Long> {
+    private final long initialBalance;
+
+    @Override
+    public Long apply(MoneyTransferService service) {
+        return service.createAccount(initialBalance);
+    }
+}
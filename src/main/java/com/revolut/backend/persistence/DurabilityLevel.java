@@ -0,0 +1,19 @@
+package com.revolut.backend.persistence;
+
+public enum DurabilityLevel {
+    /**
+     * Every command is journaled on its own before its result is returned.
+     */
+    SYNC,
+    /**
+     * Commands waiting in the write pipeline are journaled together, in one append and one flush.
+     * A batch is held open until it reaches the max batch size or the max delay passes.
+     */
+    GROUP,
+    /**
+     * Commands are journaled in the background and their results are returned before the journal is flushed to the
+     * disk, so writes acknowledged within the last flush interval can be lost on a crash. Only the {@code journal}
+     * provider supports it.
+     */
+    ASYNC
+}
@@ -0,0 +1,119 @@
+package com.revolut.backend.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects submitted commands into batches and hands each batch to the journal at once.
+ * A batch is closed when it reaches {@code maxBatchSize} or {@code maxDelayNanos} passed since its first command;
+ * with zero delay a batch takes whatever is waiting at the moment. All futures of a batch complete together.
+ */
+public class GroupCommitter {
+
+    private final Function<BatchCommand, List<Object>> journal;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingCommand<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread committer;
+
+    public GroupCommitter(String name, Function<BatchCommand, List<Object>> journal, int maxBatchSize, long maxDelayNanos) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be positive, got " + maxBatchSize);
+        }
+        this.journal = journal;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelayNanos;
+        this.committer = new Thread(this::run, name);
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    public <R> CompletableFuture<R> submit(ServiceCommand<R> command) {
+        PendingCommand<R> pending = new PendingCommand<>(command);
+        queue.add(pending);
+        return pending.result;
+    }
+
+    public void close() {
+        committer.interrupt();
+    }
+
+    private void run() {
+        List<PendingCommand<?>> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                fill(batch);
+                commit(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            failPending(batch);
+        }
+    }
+
+    private void fill(List<PendingCommand<?>> batch) throws InterruptedException {
+        queue.drainTo(batch, maxBatchSize - batch.size());
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingCommand<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatchSize - batch.size());
+        }
+    }
+
+    private void commit(List<PendingCommand<?>> batch) {
+        List<ServiceCommand<?>> commands = new ArrayList<>(batch.size());
+        for (PendingCommand<?> pending : batch) {
+            commands.add(pending.command);
+        }
+        List<Object> results;
+        try {
+            results = journal.apply(new BatchCommand(commands));
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).complete(results.get(i));
+        }
+    }
+
+    private void failPending(List<PendingCommand<?>> batch) {
+        queue.drainTo(batch);
+        IllegalStateException closed = new IllegalStateException("Group committer has been closed");
+        batch.forEach(pending -> pending.result.completeExceptionally(closed));
+    }
+
+    private static class PendingCommand<R> {
+        private final ServiceCommand<R> command;
+        private final CompletableFuture<R> result = new CompletableFuture<>();
+
+        private PendingCommand(ServiceCommand<R> command) {
+            this.command = command;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(Object value) {
+            if (value instanceof BatchCommand.Failure) {
+                result.completeExceptionally(((BatchCommand.Failure) value).getCause());
+            } else {
+                result.complete((R) value);
+            }
+        }
+    }
+}
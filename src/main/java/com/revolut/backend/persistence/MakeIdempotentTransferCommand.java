@@ -0,0 +1,58 @@
+package com.revolut.backend.persistence;
+
+import com.revolut.backend.api.MoneyTransferService;
+import com.revolut.backend.domain.IdempotencyKey;
+import com.revolut.backend.domain.TransferReceipt;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Carries the time it was journaled at, for replay to decide on the idempotency window the same way. Run without
+ * being journaled, it takes the time it runs at.
+ */
+@AllArgsConstructor
+@Getter
+public class MakeIdempotentTransferCommand implements ServiceCommand<TransferReceipt> {
+
+    static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final long senderId;
+    private final long recipientId;
+    private final long amount;
+    private final IdempotencyKey key;
+    private final long timestamp;
+    /**
+     * {@link TransferReceipt#NO_TRANSFER_ID} until it's given one to be journaled with.
+     */
+    private final long transferId;
+
+    public MakeIdempotentTransferCommand(long senderId, long recipientId, long amount, IdempotencyKey key) {
+        this(senderId, recipientId, amount, key, NO_TIMESTAMP);
+    }
+
+    public MakeIdempotentTransferCommand(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp) {
+        this(senderId, recipientId, amount, key, timestamp, TransferReceipt.NO_TRANSFER_ID);
+    }
+
+    @Override
+    public int transferIdCount() {
+        return 1;
+    }
+
+    @Override
+    public MakeIdempotentTransferCommand withTransferIds(long firstTransferId) {
+        return new MakeIdempotentTransferCommand(senderId, recipientId, amount, key, timestamp, firstTransferId);
+    }
+
+    @Override
+    public MakeIdempotentTransferCommand stampedAt(long timestamp) {
+        return this.timestamp != NO_TIMESTAMP ? this
+                : new MakeIdempotentTransferCommand(senderId, recipientId, amount, key, timestamp, transferId);
+    }
+
+    @Override
+    public TransferReceipt apply(MoneyTransferService service) {
+        return service.makeTransferWithReceipt(senderId, recipientId, amount, key,
+                timestamp == NO_TIMESTAMP ? System.currentTimeMillis() : timestamp, transferId);
+    }
+}
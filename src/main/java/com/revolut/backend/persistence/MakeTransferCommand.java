@@ -0,0 +1,37 @@
+package com.revolut.backend.persistence;
+
+import com.revolut.backend.api.MoneyTransferService;
+import com.revolut.backend.domain.TransferReceipt;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class MakeTransferCommand implements ServiceCommand<TransferReceipt> {
+    private final long senderId;
+    private final long recipientId;
+    private final long amount;
+    /**
+     * {@link TransferReceipt#NO_TRANSFER_ID} until it's given one to be journaled with.
+     */
+    private final long transferId;
+
+    public MakeTransferCommand(long senderId, long recipientId, long amount) {
+        this(senderId, recipientId, amount, TransferReceipt.NO_TRANSFER_ID);
+    }
+
+    @Override
+    public int transferIdCount() {
+        return 1;
+    }
+
+    @Override
+    public MakeTransferCommand withTransferIds(long firstTransferId) {
+        return new MakeTransferCommand(senderId, recipientId, amount, firstTransferId);
+    }
+
+    @Override
+    public TransferReceipt apply(MoneyTransferService service) {
+        return service.makeTransferWithReceipt(senderId, recipientId, amount, transferId);
+    }
+}
@@ -0,0 +1,50 @@
+package com.revolut.backend.persistence;
+
+import com.revolut.backend.api.MoneyTransferService;
+import com.revolut.backend.domain.TransferOrder;
+import com.revolut.backend.domain.TransferReceipt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class MakeTransfersCommand implements ServiceCommand<List<TransferReceipt>> {
+    private final ArrayList<TransferOrder> transfers;
+    private final long firstTransferId;
+
+    public MakeTransfersCommand(List<TransferOrder> transfers) {
+        this(transfers, TransferReceipt.NO_TRANSFER_ID);
+    }
+
+    /**
+     * @param firstTransferId id of the first transfer, the others following it, or
+     *                        {@link TransferReceipt#NO_TRANSFER_ID} until they're given ids to be journaled with
+     */
+    public MakeTransfersCommand(List<TransferOrder> transfers, long firstTransferId) {
+        this.transfers = new ArrayList<>(transfers);
+        this.firstTransferId = firstTransferId;
+    }
+
+    public List<TransferOrder> getTransfers() {
+        return Collections.unmodifiableList(transfers);
+    }
+
+    public long getFirstTransferId() {
+        return firstTransferId;
+    }
+
+    @Override
+    public int transferIdCount() {
+        return transfers.size();
+    }
+
+    @Override
+    public MakeTransfersCommand withTransferIds(long firstTransferId) {
+        return new MakeTransfersCommand(transfers, firstTransferId);
+    }
+
+    @Override
+    public List<TransferReceipt> apply(MoneyTransferService service) {
+        return service.makeTransfersWithReceipts(transfers, firstTransferId);
+    }
+}
@@ -1,8 +1,33 @@
 package com.revolut.backend.persistence;
 
+import com.revolut.backend.api.MoneyTransferService;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 public interface PersistenceProvider {
 
     <R> R executeAndQuery(ServiceCommand<R> command);
 
+    /**
+     * Journals and executes the command without making the caller wait for it to be written.
+     * Providers that can batch commands waiting in the write pipeline should override it.
+     */
+    default <R> CompletionStage<R> submit(ServiceCommand<R> command) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        try {
+            result.complete(executeAndQuery(command));
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
     <R> R query(ServiceCommand<R> query);
+
+    /**
+     * @return the service commands are executed on, for reads of its in-memory state that don't need to go
+     * through the provider; it must not be written to
+     */
+    MoneyTransferService liveService();
 }
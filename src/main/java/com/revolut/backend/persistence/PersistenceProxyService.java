@@ -1,11 +1,20 @@
 package com.revolut.backend.persistence;
 
 import com.revolut.backend.api.MoneyTransferService;
+import com.revolut.backend.domain.AccountsView;
+import com.revolut.backend.domain.IdempotencyKey;
+import com.revolut.backend.domain.StatementOrder;
+import com.revolut.backend.domain.StatementPage;
 import com.revolut.backend.domain.Transfer;
+import com.revolut.backend.domain.TransferOrder;
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferRecord;
 import com.revolut.backend.domain.TransferStatus;
 
-import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Collectors;
 
 public class PersistenceProxyService implements MoneyTransferService {
 
@@ -16,22 +25,143 @@ public class PersistenceProxyService implements MoneyTransferService {
     }
 
     @Override
-    public long createAccount(BigDecimal initialBalance) {
-        return persistenceProvider.executeAndQuery(service -> service.createAccount(initialBalance));
+    public long createAccount(long initialBalance) {
+        return persistenceProvider.executeAndQuery(createAccountCommand(initialBalance));
+    }
+
+    public CompletionStage<Long> submitCreateAccount(long initialBalance) {
+        return persistenceProvider.submit(createAccountCommand(initialBalance));
     }
 
     @Override
-    public BigDecimal checkBalance(long accountId) {
+    public long checkBalance(long accountId) {
         return persistenceProvider.query(service -> service.checkBalance(accountId));
     }
 
     @Override
-    public TransferStatus makeTransfer(long senderId, long recipientId, BigDecimal amount) {
-        return persistenceProvider.executeAndQuery(service -> service.makeTransfer(senderId, recipientId, amount));
+    public TransferStatus makeTransfer(long senderId, long recipientId, long amount) {
+        return makeTransferWithReceipt(senderId, recipientId, amount).getStatus();
+    }
+
+    @Override
+    public TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount) {
+        return persistenceProvider.executeAndQuery(makeTransferCommand(senderId, recipientId, amount));
+    }
+
+    @Override
+    public TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount, long transferId) {
+        return persistenceProvider.executeAndQuery(new MakeTransferCommand(senderId, recipientId, amount, transferId));
+    }
+
+    public CompletionStage<TransferReceipt> submitMakeTransfer(long senderId, long recipientId, long amount) {
+        return persistenceProvider.submit(makeTransferCommand(senderId, recipientId, amount));
+    }
+
+    @Override
+    public TransferRecord findTransfer(long transferId) {
+        return persistenceProvider.query(service -> service.findTransfer(transferId));
+    }
+
+    @Override
+    public TransferStatus makeTransfer(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp) {
+        return makeTransferWithReceipt(senderId, recipientId, amount, key, timestamp).getStatus();
+    }
+
+    @Override
+    public TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp) {
+        return persistenceProvider.executeAndQuery(new MakeIdempotentTransferCommand(senderId, recipientId, amount, key, timestamp));
+    }
+
+    @Override
+    public TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp, long transferId) {
+        return persistenceProvider.executeAndQuery(new MakeIdempotentTransferCommand(senderId, recipientId, amount, key, timestamp, transferId));
+    }
+
+    /**
+     * The transfer is timed as it's journaled, not by the caller.
+     */
+    public TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount, IdempotencyKey key) {
+        return persistenceProvider.executeAndQuery(new MakeIdempotentTransferCommand(senderId, recipientId, amount, key));
+    }
+
+    /**
+     * The transfer is timed as it's journaled, not by the caller.
+     */
+    public CompletionStage<TransferReceipt> submitMakeTransfer(long senderId, long recipientId, long amount, IdempotencyKey key) {
+        return persistenceProvider.submit(new MakeIdempotentTransferCommand(senderId, recipientId, amount, key));
+    }
+
+    @Override
+    public Optional<TransferReceipt> findTransferReceipt(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp) {
+        return persistenceProvider.query(service -> service.findTransferReceipt(senderId, recipientId, amount, key, timestamp));
+    }
+
+    @Override
+    public List<TransferStatus> makeTransfers(List<TransferOrder> transfers) {
+        return makeTransfersWithReceipts(transfers).stream().map(TransferReceipt::getStatus).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<TransferReceipt> makeTransfersWithReceipts(List<TransferOrder> transfers) {
+        return persistenceProvider.executeAndQuery(makeTransfersCommand(transfers));
+    }
+
+    @Override
+    public List<TransferReceipt> makeTransfersWithReceipts(List<TransferOrder> transfers, long firstTransferId) {
+        return persistenceProvider.executeAndQuery(new MakeTransfersCommand(transfers, firstTransferId));
+    }
+
+    public CompletionStage<List<TransferReceipt>> submitMakeTransfers(List<TransferOrder> transfers) {
+        return persistenceProvider.submit(makeTransfersCommand(transfers));
+    }
+
+    /**
+     * This and other lock-free reads go to the service's in-memory state straight away, not through the provider.
+     */
+    @Override
+    public long findBalance(long accountId) {
+        return persistenceProvider.liveService().findBalance(accountId);
+    }
+
+    @Override
+    public StatementPage findStatementPage(long accountId, int cursor, int limit, StatementOrder order) {
+        return persistenceProvider.liveService().findStatementPage(accountId, cursor, limit, order);
+    }
+
+    @Override
+    public AccountsView readAccounts(long[] accountIds, long version, boolean withStatements) {
+        return persistenceProvider.liveService().readAccounts(accountIds, version, withStatements);
+    }
+
+    @Override
+    public long getAccountCount() {
+        return persistenceProvider.liveService().getAccountCount();
+    }
+
+    @Override
+    public long getStatementEntryCount() {
+        return persistenceProvider.liveService().getStatementEntryCount();
     }
 
     @Override
     public List<Transfer> getStatement(long accountId) {
         return persistenceProvider.query(service -> service.getStatement(accountId));
     }
+
+    @Override
+    public StatementPage getStatement(long accountId, int cursor, int limit, StatementOrder order) {
+        return persistenceProvider.query(service -> service.getStatement(accountId, cursor, limit, order));
+    }
+
+    private static ServiceCommand<Long> createAccountCommand(long initialBalance) {
+        return new CreateAccountCommand(initialBalance);
+    }
+
+    private static ServiceCommand<TransferReceipt> makeTransferCommand(long senderId, long recipientId, long amount) {
+        return new MakeTransferCommand(senderId, recipientId, amount);
+    }
+
+    private static ServiceCommand<List<TransferReceipt>> makeTransfersCommand(List<TransferOrder> transfers) {
+        return new MakeTransfersCommand(transfers);
+    }
 }
@@ -6,4 +6,26 @@ import java.io.Serializable;
 import java.util.function.Function;
 
 public interface ServiceCommand<R> extends Function<MoneyTransferService, R>, Serializable {
+
+    /**
+     * @return number of transfer ids the command takes, one for each transfer it makes, made or not
+     */
+    default int transferIdCount() {
+        return 0;
+    }
+
+    /**
+     * @return the command with its transfers given consecutive ids, from {@code firstTransferId},
+     * see {@link com.revolut.backend.api.TransferService#makeTransferWithReceipt(long, long, long, long)}
+     */
+    default ServiceCommand<R> withTransferIds(long firstTransferId) {
+        return this;
+    }
+
+    /**
+     * @return the command with the time it's journaled at, if it takes one and wasn't given it
+     */
+    default ServiceCommand<R> stampedAt(long timestamp) {
+        return this;
+    }
 }
@@ -1,20 +1,47 @@
 package com.revolut.backend.persistence.inmemory;
 
 import com.revolut.backend.api.MoneyTransferService;
+import com.revolut.backend.metrics.LatencyHistogram;
+import com.revolut.backend.persistence.DurabilityLevel;
+import com.revolut.backend.persistence.GroupCommitter;
 import com.revolut.backend.persistence.PersistenceProvider;
 import com.revolut.backend.persistence.ServiceCommand;
 import com.revolut.backend.service.CoreService;
 import pl.setblack.airomem.core.PersistenceController;
 import pl.setblack.airomem.core.builders.PrevaylerBuilder;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
 import static com.revolut.backend.ConfigurationProperties.configuration;
+import static com.revolut.backend.metrics.Metrics.metrics;
 
 public class InMemoryPersistenceProvider implements PersistenceProvider {
 
+    private static final LatencyHistogram EXECUTE_TIME = metrics().histogram("mte_persistence_execute_seconds",
+            "Time spent journaling and executing a command or a batch of commands", "provider", "airomem");
+
     protected PersistenceController<MoneyTransferService> persistenceController;
+    private volatile MoneyTransferService liveService;
+    private final GroupCommitter groupCommitter;
 
     public InMemoryPersistenceProvider() {
-        this.persistenceController = createNewPersistenceController();
+        this(configuration().getPersistenceDurability());
+    }
+
+    /**
+     * Airomem journals a command before executing it, so a result can't be returned ahead of its journal entry:
+     * {@link DurabilityLevel#ASYNC} is refused rather than run as another level.
+     */
+    protected InMemoryPersistenceProvider(DurabilityLevel durabilityLevel) {
+        if (durabilityLevel == DurabilityLevel.ASYNC) {
+            throw new IllegalArgumentException("Airomem can't acknowledge a command before journaling it, "
+                    + "use SYNC or GROUP durability, or the journal provider for ASYNC");
+        }
+        usePersistenceController(createNewPersistenceController());
+        this.groupCommitter = createGroupCommitter(durabilityLevel);
     }
 
     protected PersistenceController<MoneyTransferService> createNewPersistenceController() {
@@ -25,13 +52,64 @@ public class InMemoryPersistenceProvider implements PersistenceProvider {
                 .build();
     }
 
+    /**
+     * Airomem keeps the same service object as long as it runs, so it's taken once - each query through it
+     * takes Prevayler's lock.
+     */
+    protected void usePersistenceController(PersistenceController<MoneyTransferService> persistenceController) {
+        this.persistenceController = persistenceController;
+        this.liveService = persistenceController.query(service -> service);
+    }
+
+    private GroupCommitter createGroupCommitter(DurabilityLevel durabilityLevel) {
+        return durabilityLevel == DurabilityLevel.GROUP
+                ? new GroupCommitter("airomem-group-commit", this::execute,
+                configuration().getGroupCommitMaxBatchSize(), TimeUnit.MICROSECONDS.toNanos(configuration().getGroupCommitMaxDelayMicros()))
+                : null;
+    }
+
     @Override
     public <R> R executeAndQuery(ServiceCommand<R> command) {
-        return persistenceController.executeAndQuery(command::apply);
+        if (groupCommitter != null) {
+            return join(groupCommitter.submit(command));
+        }
+        return execute(command);
+    }
+
+    private <R> R execute(ServiceCommand<R> command) {
+        long start = System.nanoTime();
+        try {
+            // timed before Airomem journals it
+            ServiceCommand<R> stamped = command.stampedAt(System.currentTimeMillis());
+            return persistenceController.executeAndQuery(stamped::apply);
+        } finally {
+            EXECUTE_TIME.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <R> CompletionStage<R> submit(ServiceCommand<R> command) {
+        if (groupCommitter != null) {
+            return groupCommitter.submit(command);
+        }
+        return PersistenceProvider.super.submit(command);
+    }
+
+    private static <R> R join(CompletableFuture<R> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
     }
 
     @Override
     public <R> R query(ServiceCommand<R> query) {
         return persistenceController.query(query::apply);
     }
+
+    @Override
+    public MoneyTransferService liveService() {
+        return liveService;
+    }
 }
@@ -0,0 +1,108 @@
+package com.revolut.backend.persistence.journal;
+
+import com.revolut.backend.domain.IdempotencyKey;
+import com.revolut.backend.domain.TransferOrder;
+import com.revolut.backend.persistence.CreateAccountCommand;
+import com.revolut.backend.persistence.MakeIdempotentTransferCommand;
+import com.revolut.backend.persistence.MakeTransferCommand;
+import com.revolut.backend.persistence.MakeTransfersCommand;
+import com.revolut.backend.persistence.ServiceCommand;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary form of journaled commands: an opcode byte, then the command's fields, transfer ids included.
+ */
+final class JournalCodec {
+
+    static final byte CREATE_ACCOUNT = 1;
+    static final byte MAKE_TRANSFER = 2;
+    static final byte MAKE_TRANSFERS = 3;
+    static final byte MAKE_IDEMPOTENT_TRANSFER = 4;
+
+    private static final int TRANSFER_ORDER_SIZE = 1 + 3 * Long.BYTES;
+
+    private JournalCodec() {
+    }
+
+    static int encodedSize(ServiceCommand<?> command) {
+        if (command instanceof CreateAccountCommand) {
+            return 1 + Long.BYTES;
+        }
+        if (command instanceof MakeTransferCommand) {
+            return 1 + 4 * Long.BYTES;
+        }
+        if (command instanceof MakeIdempotentTransferCommand) {
+            return 1 + 7 * Long.BYTES;
+        }
+        if (command instanceof MakeTransfersCommand) {
+            return 1 + Integer.BYTES + Long.BYTES + ((MakeTransfersCommand) command).getTransfers().size() * TRANSFER_ORDER_SIZE;
+        }
+        throw new IllegalArgumentException("Command can't be journaled: " + command.getClass().getName());
+    }
+
+    static void encode(ServiceCommand<?> command, ByteBuffer buffer) {
+        if (command instanceof CreateAccountCommand) {
+            buffer.put(CREATE_ACCOUNT);
+            buffer.putLong(((CreateAccountCommand) command).getInitialBalance());
+        } else if (command instanceof MakeTransferCommand) {
+            MakeTransferCommand transfer = (MakeTransferCommand) command;
+            buffer.put(MAKE_TRANSFER);
+            buffer.putLong(transfer.getSenderId());
+            buffer.putLong(transfer.getRecipientId());
+            buffer.putLong(transfer.getAmount());
+            buffer.putLong(transfer.getTransferId());
+        } else if (command instanceof MakeIdempotentTransferCommand) {
+            MakeIdempotentTransferCommand transfer = (MakeIdempotentTransferCommand) command;
+            buffer.put(MAKE_IDEMPOTENT_TRANSFER);
+            buffer.putLong(transfer.getSenderId());
+            buffer.putLong(transfer.getRecipientId());
+            buffer.putLong(transfer.getAmount());
+            buffer.putLong(transfer.getKey().getHigh());
+            buffer.putLong(transfer.getKey().getLow());
+            buffer.putLong(transfer.getTimestamp());
+            buffer.putLong(transfer.getTransferId());
+        } else if (command instanceof MakeTransfersCommand) {
+            List<TransferOrder> transfers = ((MakeTransfersCommand) command).getTransfers();
+            buffer.put(MAKE_TRANSFERS);
+            buffer.putInt(transfers.size());
+            buffer.putLong(((MakeTransfersCommand) command).getFirstTransferId());
+            for (TransferOrder transfer : transfers) {
+                // a null order is kept, it's answered with its own status
+                buffer.put((byte) (transfer == null ? 0 : 1));
+                buffer.putLong(transfer == null ? 0 : transfer.getSenderId());
+                buffer.putLong(transfer == null ? 0 : transfer.getRecipientId());
+                buffer.putLong(transfer == null ? 0 : transfer.getAmount());
+            }
+        } else {
+            throw new IllegalArgumentException("Command can't be journaled: " + command.getClass().getName());
+        }
+    }
+
+    static ServiceCommand<?> decode(ByteBuffer buffer) {
+        byte opcode = buffer.get();
+        switch (opcode) {
+            case CREATE_ACCOUNT:
+                return new CreateAccountCommand(buffer.getLong());
+            case MAKE_TRANSFER:
+                return new MakeTransferCommand(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+            case MAKE_TRANSFERS:
+                int count = buffer.getInt();
+                long firstTransferId = buffer.getLong();
+                List<TransferOrder> transfers = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    boolean present = buffer.get() != 0;
+                    TransferOrder transfer = new TransferOrder(buffer.getLong(), buffer.getLong(), buffer.getLong());
+                    transfers.add(present ? transfer : null);
+                }
+                return new MakeTransfersCommand(transfers, firstTransferId);
+            case MAKE_IDEMPOTENT_TRANSFER:
+                return new MakeIdempotentTransferCommand(buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                        new IdempotencyKey(buffer.getLong(), buffer.getLong()), buffer.getLong(), buffer.getLong());
+            default:
+                throw new IllegalStateException("Unknown journal opcode " + opcode);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.revolut.backend.persistence.journal;
+
+import com.revolut.backend.domain.TransferOrder;
+import com.revolut.backend.persistence.MakeIdempotentTransferCommand;
+import com.revolut.backend.persistence.MakeTransferCommand;
+import com.revolut.backend.persistence.MakeTransfersCommand;
+import com.revolut.backend.persistence.ServiceCommand;
+import com.revolut.backend.service.CoreService;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs journaled commands outside the journal lock with the outcome of running them in journal order. Accounts are
+ * split into stripes; a command takes a turn in the stripes of its accounts as it's appended and runs once the
+ * commands before it in those stripes have run. Account creations take a turn in every stripe.
+ * Keyed transfers of different senders may reach the idempotency cache out of journal order, which only changes
+ * the key a full cache evicts first.
+ */
+class JournalOrder {
+
+    private static final int YIELDS = 8;
+
+    private final int mask;
+    private final long[] issued;
+    private final AtomicLongArray served;
+    private final AtomicIntegerArray waiting;
+    private final ReentrantLock[] locks;
+    private final Condition[] turns;
+    private final int[] allStripes;
+
+    /**
+     * @param stripes number of stripes, a power of two
+     */
+    JournalOrder(int stripes) {
+        if (stripes < 1 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Number of journal order stripes must be a power of two, got " + stripes);
+        }
+        this.mask = stripes - 1;
+        this.issued = new long[stripes];
+        this.served = new AtomicLongArray(stripes);
+        this.waiting = new AtomicIntegerArray(stripes);
+        this.locks = new ReentrantLock[stripes];
+        this.turns = new Condition[stripes];
+        this.allStripes = new int[stripes];
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            locks[stripe] = new ReentrantLock();
+            turns[stripe] = locks[stripe].newCondition();
+            allStripes[stripe] = stripe;
+        }
+    }
+
+    /**
+     * Called under the journal lock, right after the command is appended.
+     */
+    Turn issue(ServiceCommand<?> command) {
+        int[] stripes = stripesOf(command);
+        long[] tickets = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            tickets[i] = issued[stripes[i]]++;
+        }
+        return new Turn(stripes, tickets);
+    }
+
+    /**
+     * Waits until every command before the turn in its stripes has run, then runs the command.
+     */
+    <R> R run(Turn turn, ServiceCommand<R> command, CoreService service) {
+        for (int i = 0; i < turn.stripes.length; i++) {
+            await(turn.stripes[i], turn.tickets[i]);
+        }
+        try {
+            return command.apply(service);
+        } finally {
+            for (int stripe : turn.stripes) {
+                pass(stripe);
+            }
+        }
+    }
+
+    /**
+     * Called under the journal lock, waits until every command issued a turn has run.
+     */
+    void awaitIssued() {
+        for (int stripe = 0; stripe < issued.length; stripe++) {
+            await(stripe, issued[stripe]);
+        }
+    }
+
+    private void await(int stripe, long ticket) {
+        for (int i = 0; i < YIELDS; i++) {
+            if (served.get(stripe) == ticket) {
+                return;
+            }
+            Thread.yield();
+        }
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        waiting.incrementAndGet(stripe);
+        try {
+            while (served.get(stripe) != ticket) {
+                turns[stripe].awaitUninterruptibly();
+            }
+        } finally {
+            waiting.decrementAndGet(stripe);
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The lock is only taken when a command waits for its turn in the stripe.
+     */
+    private void pass(int stripe) {
+        served.incrementAndGet(stripe);
+        if (waiting.get(stripe) > 0) {
+            ReentrantLock lock = locks[stripe];
+            lock.lock();
+            try {
+                turns[stripe].signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private int[] stripesOf(ServiceCommand<?> command) {
+        if (command instanceof MakeTransferCommand) {
+            MakeTransferCommand transfer = (MakeTransferCommand) command;
+            return stripesOf(transfer.getSenderId(), transfer.getRecipientId());
+        }
+        if (command instanceof MakeIdempotentTransferCommand) {
+            MakeIdempotentTransferCommand transfer = (MakeIdempotentTransferCommand) command;
+            return stripesOf(transfer.getSenderId(), transfer.getRecipientId());
+        }
+        if (command instanceof MakeTransfersCommand) {
+            BitSet touched = new BitSet(allStripes.length);
+            for (TransferOrder transfer : ((MakeTransfersCommand) command).getTransfers()) {
+                if (transfer != null) {
+                    touched.set(stripeOf(transfer.getSenderId()));
+                    touched.set(stripeOf(transfer.getRecipientId()));
+                }
+            }
+            return touched.isEmpty() ? new int[]{0} : touched.stream().toArray();
+        }
+        return allStripes;
+    }
+
+    private int[] stripesOf(long accountId, long otherAccountId) {
+        int stripe = stripeOf(accountId);
+        int otherStripe = stripeOf(otherAccountId);
+        return stripe == otherStripe ? new int[]{stripe} : new int[]{stripe, otherStripe};
+    }
+
+    private int stripeOf(long accountId) {
+        return (int) (accountId ^ (accountId >>> 32)) & mask;
+    }
+
+    static class Turn {
+        private final int[] stripes;
+        private final long[] tickets;
+
+        private Turn(int[] stripes, long[] tickets) {
+            this.stripes = stripes;
+            this.tickets = tickets;
+        }
+    }
+}
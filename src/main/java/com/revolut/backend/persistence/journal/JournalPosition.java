@@ -0,0 +1,22 @@
+package com.revolut.backend.persistence.journal;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Offset of a record within a numbered segment of a {@link MappedJournal}.
+ */
+@AllArgsConstructor
+@Getter
+class JournalPosition {
+
+    static final JournalPosition START = new JournalPosition(1, 0);
+
+    private final long segment;
+    private final int offset;
+
+    @Override
+    public String toString() {
+        return segment + ":" + offset;
+    }
+}
@@ -0,0 +1,224 @@
+package com.revolut.backend.persistence.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of records in fixed-size, memory-mapped segment files. A record is its payload length, a CRC32 of
+ * the payload and the payload; the length is written last, and a zero length ends the written part of a segment.
+ * Appends are serialized by the caller; {@link #force()} may be called from any thread.
+ */
+class MappedJournal implements AutoCloseable {
+
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d{20})\\.log");
+
+    private final Path folder;
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+    private volatile MappedByteBuffer current;
+    private long currentSegment;
+
+    MappedJournal(Path folder, int segmentSize) {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Journal segment size must exceed " + HEADER_SIZE + " bytes, got " + segmentSize);
+        }
+        this.folder = folder;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Passes the payload of every intact record from the position on to the consumer, then opens the journal for
+     * appends. A torn record at the end of the last segment is cut off with everything after it; a damaged record in
+     * an earlier segment fails the recovery.
+     */
+    void recover(JournalPosition from, Consumer<ByteBuffer> consumer) {
+        List<Long> segments = listSegments().stream()
+                .filter(segment -> segment >= from.getSegment())
+                .collect(Collectors.toList());
+        if (segments.isEmpty()) {
+            open(from.getSegment());
+            return;
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            boolean last = i == segments.size() - 1;
+            MappedByteBuffer segment = map(segments.get(i), false);
+            int start = segments.get(i) == from.getSegment() ? from.getOffset() : 0;
+            int end = replay(segment, start, consumer, last, segments.get(i));
+            if (last) {
+                zeroFrom(segment, end);
+                segment.position(end);
+                current = segment;
+                currentSegment = segments.get(i);
+            }
+        }
+    }
+
+    void append(ByteBuffer payload) {
+        int length = payload.remaining();
+        if (HEADER_SIZE + length > segmentSize) {
+            throw new IllegalArgumentException(String.format("Journal record of %d bytes exceeds segment size %d", length, segmentSize));
+        }
+        MappedByteBuffer segment = current;
+        if (segment.remaining() < HEADER_SIZE + length) {
+            segment.force();
+            segment = open(currentSegment + 1);
+        }
+        int position = segment.position();
+        crc.reset();
+        crc.update(payload.array(), payload.arrayOffset() + payload.position(), length);
+        segment.putInt(position + Integer.BYTES, (int) crc.getValue());
+        segment.position(position + HEADER_SIZE);
+        segment.put(payload);
+        segment.putInt(position, length);
+    }
+
+    void force() {
+        current.force();
+    }
+
+    /**
+     * @return position the next record will be appended at, unless it has to start a new segment
+     */
+    JournalPosition position() {
+        return new JournalPosition(currentSegment, current.position());
+    }
+
+    /**
+     * Drops the records appended from the given position on, which must be in the current or an earlier segment.
+     */
+    void truncate(JournalPosition position) {
+        for (long segment = currentSegment; segment > position.getSegment(); segment--) {
+            try {
+                Files.deleteIfExists(segmentPath(segment));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to delete journal segment " + segment, e);
+            }
+        }
+        if (currentSegment != position.getSegment()) {
+            current = map(position.getSegment(), false);
+            currentSegment = position.getSegment();
+        }
+        zeroFrom(current, position.getOffset());
+        current.position(position.getOffset());
+    }
+
+    /**
+     * Removes the segments before the given one.
+     */
+    void deleteSegmentsBefore(long segment) {
+        for (long old : listSegments()) {
+            if (old >= segment) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(segmentPath(old));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to delete journal segment " + old, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+    }
+
+    private int replay(MappedByteBuffer segment, int start, Consumer<ByteBuffer> consumer, boolean last, long segmentNumber) {
+        int position = start;
+        while (position + HEADER_SIZE <= segment.capacity()) {
+            int length = segment.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (!isIntact(segment, position, length)) {
+                if (!last) {
+                    throw new IllegalStateException(String.format("Journal segment %d is damaged at offset %d", segmentNumber, position));
+                }
+                break;
+            }
+            ByteBuffer payload = segment.duplicate();
+            payload.position(position + HEADER_SIZE).limit(position + HEADER_SIZE + length);
+            consumer.accept(payload.slice());
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private boolean isIntact(MappedByteBuffer segment, int position, int length) {
+        if (length < 0 || length > segment.capacity() - position - HEADER_SIZE) {
+            return false;
+        }
+        crc.reset();
+        for (int i = position + HEADER_SIZE; i < position + HEADER_SIZE + length; i++) {
+            crc.update(segment.get(i));
+        }
+        return (int) crc.getValue() == segment.getInt(position + Integer.BYTES);
+    }
+
+    private static void zeroFrom(MappedByteBuffer segment, int position) {
+        boolean dirty = false;
+        for (int i = position; i < segment.capacity(); i++) {
+            if (segment.get(i) != 0) {
+                segment.put(i, (byte) 0);
+                dirty = true;
+            }
+        }
+        if (dirty) {
+            segment.force();
+        }
+    }
+
+    private MappedByteBuffer open(long segmentNumber) {
+        MappedByteBuffer segment = map(segmentNumber, true);
+        currentSegment = segmentNumber;
+        current = segment;
+        return segment;
+    }
+
+    private MappedByteBuffer map(long segmentNumber, boolean create) {
+        Path path = segmentPath(segmentNumber);
+        StandardOpenOption[] options = create
+                ? new StandardOpenOption[]{StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE};
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, create ? segmentSize : channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map journal segment " + path, e);
+        }
+    }
+
+    private Path segmentPath(long segmentNumber) {
+        return folder.resolve(String.format("journal-%020d.log", segmentNumber));
+    }
+
+    private List<Long> listSegments() {
+        try {
+            Files.createDirectories(folder);
+            try (Stream<Path> files = Files.list(folder)) {
+                return files
+                        .map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+                        .filter(Matcher::matches)
+                        .map(matcher -> Long.parseLong(matcher.group(1)))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list journal segments in " + folder, e);
+        }
+    }
+}
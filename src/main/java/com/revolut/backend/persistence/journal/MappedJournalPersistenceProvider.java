@@ -0,0 +1,311 @@
+package com.revolut.backend.persistence.journal;
+
+import com.revolut.backend.api.MoneyTransferService;
+import com.revolut.backend.metrics.LatencyHistogram;
+import com.revolut.backend.persistence.BatchCommand;
+import com.revolut.backend.persistence.DurabilityLevel;
+import com.revolut.backend.persistence.GroupCommitter;
+import com.revolut.backend.persistence.PersistenceProvider;
+import com.revolut.backend.persistence.ServiceCommand;
+import com.revolut.backend.service.CoreService;
+import com.revolut.backend.service.ServiceState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.revolut.backend.ConfigurationProperties.configuration;
+import static com.revolut.backend.metrics.Metrics.metrics;
+
+/**
+ * Keeps the engine in memory and journals its commands as binary records in a {@link MappedJournal}. Only the append
+ * takes the journal lock; the command then runs outside it, ordered by {@link JournalOrder}. Transfers take their ids
+ * as they're appended and are journaled with them, so a replayed transfer keeps its id. The locks are
+ * {@link ReentrantLock}s, as a virtual thread forcing the journal inside a monitor would pin its carrier thread.
+ * <p>
+ * {@link DurabilityLevel#SYNC} forces every command before running it, {@link DurabilityLevel#GROUP} once per batch
+ * and {@link DurabilityLevel#ASYNC} leaves it to a background flush.
+ * <p>
+ * A snapshot is taken every {@code snapshot.intervalSeconds}; on start the latest one is loaded and only the journal
+ * after it is replayed.
+ */
+public class MappedJournalPersistenceProvider implements PersistenceProvider, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedJournalPersistenceProvider.class);
+    private static final LatencyHistogram EXECUTE_TIME = metrics().histogram("mte_persistence_execute_seconds",
+            "Time spent journaling and executing a command or a batch of commands", "provider", "journal");
+
+    private static final int ORDER_STRIPES = 64;
+
+    private final CoreService service;
+    private final MappedJournal journal;
+    private final SnapshotStore snapshots;
+    private final DurabilityLevel durabilityLevel;
+    private final GroupCommitter groupCommitter;
+    private final ScheduledExecutorService flusher;
+    private final ScheduledExecutorService snapshotter;
+    private final ReentrantLock journalLock = new ReentrantLock();
+    private final JournalOrder order = new JournalOrder(ORDER_STRIPES);
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final long replayedRecords;
+    private ByteBuffer record = ByteBuffer.allocate(1024);
+
+    public MappedJournalPersistenceProvider() {
+        this(Paths.get(System.getProperty("user.home"), configuration().getJournalUserFolder()),
+                configuration().getJournalSegmentSize(), configuration().getPersistenceDurability(), configuration().getSnapshotIntervalSeconds());
+    }
+
+    /**
+     * @param snapshotIntervalSeconds 0 to take snapshots only on {@link #takeSnapshot()}
+     */
+    public MappedJournalPersistenceProvider(Path folder, int segmentSize, DurabilityLevel durabilityLevel, long snapshotIntervalSeconds) {
+        long start = System.nanoTime();
+        this.journal = new MappedJournal(folder, segmentSize);
+        this.snapshots = new SnapshotStore(folder);
+        this.durabilityLevel = durabilityLevel;
+        Optional<JournalPosition> snapshot = snapshots.latest();
+        this.service = snapshot.map(snapshots::read).orElseGet(CoreService::new);
+        this.replayedRecords = replay(snapshot.orElse(JournalPosition.START));
+        LOGGER.info("Ready in {} ms: snapshot {}, {} journal records replayed",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), snapshot.map(JournalPosition::toString).orElse("none"), replayedRecords);
+        this.groupCommitter = durabilityLevel == DurabilityLevel.GROUP
+                ? new GroupCommitter("journal-group-commit", this::commit,
+                configuration().getGroupCommitMaxBatchSize(), TimeUnit.MICROSECONDS.toNanos(configuration().getGroupCommitMaxDelayMicros()))
+                : null;
+        this.flusher = durabilityLevel == DurabilityLevel.ASYNC ? startFlusher() : null;
+        this.snapshotter = snapshotIntervalSeconds > 0 ? startSnapshotter(snapshotIntervalSeconds) : null;
+    }
+
+    /**
+     * Writes a snapshot of the current state. Commands are held back only while the journal position and the committed
+     * version are noted.
+     */
+    public void takeSnapshot() {
+        snapshotLock.lock();
+        try {
+            long start = System.nanoTime();
+            JournalPosition position;
+            ServiceState.Mark mark;
+            journalLock.lock();
+            try {
+                order.awaitIssued();
+                position = journal.position();
+                mark = service.markState();
+            } finally {
+                journalLock.unlock();
+            }
+            journal.force();
+            ServiceState state = mark.read();
+            long captured = System.nanoTime();
+            snapshots.write(position, state);
+            journal.deleteSegmentsBefore(position.getSegment());
+            LOGGER.info("Snapshot of {} accounts at {} captured in {} us, written in {} ms", state.getAccounts(), position,
+                    TimeUnit.NANOSECONDS.toMicros(captured - start), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - captured));
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    long getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    @Override
+    public <R> R executeAndQuery(ServiceCommand<R> command) {
+        if (groupCommitter != null) {
+            return join(groupCommitter.submit(command));
+        }
+        long start = System.nanoTime();
+        ServiceCommand<R> journaled;
+        JournalOrder.Turn turn;
+        journalLock.lock();
+        try {
+            JournalPosition position = journal.position();
+            try {
+                journaled = append(command);
+                if (durabilityLevel == DurabilityLevel.SYNC) {
+                    journal.force();
+                }
+            } catch (RuntimeException e) {
+                journal.truncate(position);
+                throw e;
+            }
+            turn = order.issue(journaled);
+        } finally {
+            journalLock.unlock();
+        }
+        try {
+            return order.run(turn, journaled, service);
+        } finally {
+            EXECUTE_TIME.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <R> CompletionStage<R> submit(ServiceCommand<R> command) {
+        if (groupCommitter != null) {
+            return groupCommitter.submit(command);
+        }
+        return PersistenceProvider.super.submit(command);
+    }
+
+    @Override
+    public <R> R query(ServiceCommand<R> query) {
+        return query.apply(service);
+    }
+
+    @Override
+    public MoneyTransferService liveService() {
+        return service;
+    }
+
+    @Override
+    public void close() {
+        if (groupCommitter != null) {
+            groupCommitter.close();
+        }
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        journalLock.lock();
+        try {
+            journal.close();
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    /**
+     * A batch is journaled whole or not at all: if a record can't be appended, the records of the batch appended
+     * before it are dropped and every command of the batch fails.
+     */
+    List<Object> commit(BatchCommand batch) {
+        long start = System.nanoTime();
+        List<ServiceCommand<?>> journaled = new ArrayList<>(batch.getCommands().size());
+        List<JournalOrder.Turn> turns = new ArrayList<>(batch.getCommands().size());
+        journalLock.lock();
+        try {
+            JournalPosition position = journal.position();
+            try {
+                for (ServiceCommand<?> command : batch.getCommands()) {
+                    journaled.add(append(command));
+                }
+                journal.force();
+            } catch (RuntimeException e) {
+                journal.truncate(position);
+                throw e;
+            }
+            for (ServiceCommand<?> command : journaled) {
+                turns.add(order.issue(command));
+            }
+        } finally {
+            journalLock.unlock();
+        }
+        try {
+            List<Object> results = new ArrayList<>(journaled.size());
+            for (int i = 0; i < journaled.size(); i++) {
+                try {
+                    results.add(order.run(turns.get(i), journaled.get(i), service));
+                } catch (RuntimeException e) {
+                    results.add(new BatchCommand.Failure(e));
+                }
+            }
+            return results;
+        } finally {
+            EXECUTE_TIME.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return the command as journaled, timed and with ids given to its transfers
+     */
+    private <R> ServiceCommand<R> append(ServiceCommand<R> command) {
+        ServiceCommand<R> stamped = command.stampedAt(System.currentTimeMillis());
+        int transfers = stamped.transferIdCount();
+        ServiceCommand<R> journaled = transfers == 0 ? stamped : stamped.withTransferIds(service.reserveTransferIds(transfers));
+        int size = JournalCodec.encodedSize(journaled);
+        if (record.capacity() < size) {
+            record = ByteBuffer.allocate(Math.max(size, 2 * record.capacity()));
+        }
+        record.clear();
+        JournalCodec.encode(journaled, record);
+        record.flip();
+        journal.append(record);
+        return journaled;
+    }
+
+    /**
+     * @return number of records replayed
+     */
+    private long replay(JournalPosition from) {
+        long[] records = new long[1];
+        journal.recover(from, payload -> {
+            ServiceCommand<?> command = JournalCodec.decode(payload);
+            replay(() -> command.apply(service));
+            records[0]++;
+        });
+        return records[0];
+    }
+
+    /**
+     * Runs a journaled command again. A balance overflow, which the command threw when first run as well, is skipped;
+     * any other failure is rethrown, the engine mustn't start on a corrupted state.
+     */
+    static void replay(Runnable command) {
+        try {
+            command.run();
+        } catch (ArithmeticException e) {
+            // the command failed the same way when it was first executed
+        }
+    }
+
+    private ScheduledExecutorService startFlusher() {
+        ScheduledExecutorService executor = createDaemonExecutor("journal-flush");
+        long interval = configuration().getJournalFlushIntervalMillis();
+        executor.scheduleWithFixedDelay(journal::force, interval, interval, TimeUnit.MILLISECONDS);
+        return executor;
+    }
+
+    private ScheduledExecutorService startSnapshotter(long intervalSeconds) {
+        ScheduledExecutorService executor = createDaemonExecutor("journal-snapshot");
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                takeSnapshot();
+            } catch (RuntimeException e) {
+                LOGGER.error("Snapshot failed, the journal is kept", e);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        return executor;
+    }
+
+    private static ScheduledExecutorService createDaemonExecutor(String name) {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static <R> R join(CompletableFuture<R> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+}
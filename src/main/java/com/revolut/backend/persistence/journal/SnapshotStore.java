@@ -0,0 +1,103 @@
+package com.revolut.backend.persistence.journal;
+
+import com.revolut.backend.service.CoreService;
+import com.revolut.backend.service.ServiceState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Snapshot files next to the journal, named after the journal position they were taken at. A snapshot is written
+ * to a temporary file and renamed once it's on disk, so a partial one is never found.
+ */
+class SnapshotStore {
+
+    private static final int MAGIC = 0x4d544553;
+    private static final int VERSION = 5;
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d{20})-(\\d{10})\\.bin");
+
+    private final Path folder;
+
+    SnapshotStore(Path folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Writes the state and removes older snapshots.
+     */
+    void write(JournalPosition position, ServiceState state) {
+        Path snapshot = snapshotPath(position);
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try {
+            try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                state.writeTo(out);
+                out.flush();
+                file.getFD().sync();
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+            for (JournalPosition older : listSnapshots()) {
+                if (!older.toString().equals(position.toString())) {
+                    Files.deleteIfExists(snapshotPath(older));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write snapshot " + snapshot, e);
+        }
+    }
+
+    Optional<JournalPosition> latest() {
+        List<JournalPosition> snapshots = listSnapshots();
+        return snapshots.isEmpty() ? Optional.empty() : Optional.of(snapshots.get(snapshots.size() - 1));
+    }
+
+    CoreService read(JournalPosition position) {
+        Path snapshot = snapshotPath(position);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IllegalStateException("Not a snapshot of a supported version: " + snapshot);
+            }
+            return CoreService.restoreState(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read snapshot " + snapshot, e);
+        }
+    }
+
+    private Path snapshotPath(JournalPosition position) {
+        return folder.resolve(String.format("snapshot-%020d-%010d.bin", position.getSegment(), position.getOffset()));
+    }
+
+    private List<JournalPosition> listSnapshots() {
+        try {
+            Files.createDirectories(folder);
+            try (Stream<Path> files = Files.list(folder)) {
+                return files
+                        .map(file -> SNAPSHOT_NAME.matcher(file.getFileName().toString()))
+                        .filter(Matcher::matches)
+                        .map(matcher -> new JournalPosition(Long.parseLong(matcher.group(1)), Integer.parseInt(matcher.group(2))))
+                        .sorted((a, b) -> a.getSegment() != b.getSegment()
+                                ? Long.compare(a.getSegment(), b.getSegment())
+                                : Integer.compare(a.getOffset(), b.getOffset()))
+                        .collect(Collectors.toList());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list snapshots in " + folder, e);
+        }
+    }
+}
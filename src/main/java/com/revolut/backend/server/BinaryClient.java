@@ -0,0 +1,163 @@
+package com.revolut.backend.server;
+
+import com.revolut.backend.api.AccountService;
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferStatus;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client of the {@link BinaryProtocol}, sending requests over one connection without waiting for earlier ones
+ * to be answered. Thread-safe; results complete on the client's reader thread, so callbacks on them should be quick.
+ * A write shed by the engine completes with a {@link RejectedExecutionException} and may be retried later.
+ */
+public class BinaryClient implements AutoCloseable {
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(BinaryProtocol.LENGTH_SIZE + BinaryProtocol.MAX_REQUEST_SIZE);
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final Map<Long, CompletableFuture<Long>> pending = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<TransferReceipt>> pendingTransfers = new ConcurrentHashMap<>();
+
+    public BinaryClient(String host, int port) throws IOException {
+        this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+        Thread reader = new Thread(this::read, "binary-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * @param initialBalance in minor units
+     * @return id of the account
+     */
+    public CompletableFuture<Long> createAccount(long initialBalance) {
+        return send(pending, BinaryProtocol.CREATE_ACCOUNT, initialBalance, 0, 0);
+    }
+
+    /**
+     * @return the balance in minor units, or {@link AccountService#NO_ACCOUNT} if there's no such account
+     */
+    public CompletableFuture<Long> findBalance(long accountId) {
+        return send(pending, BinaryProtocol.BALANCE, accountId, 0, 0);
+    }
+
+    /**
+     * @param amount in minor units
+     */
+    public CompletableFuture<TransferStatus> makeTransfer(long senderId, long recipientId, long amount) {
+        return makeTransferWithReceipt(senderId, recipientId, amount).thenApply(TransferReceipt::getStatus);
+    }
+
+    /**
+     * @param amount in minor units
+     * @return status of the transfer with its id, if it was made
+     */
+    public CompletableFuture<TransferReceipt> makeTransferWithReceipt(long senderId, long recipientId, long amount) {
+        return send(pendingTransfers, BinaryProtocol.TRANSFER, senderId, recipientId, amount);
+    }
+
+    private <T> CompletableFuture<T> send(Map<Long, CompletableFuture<T>> pending, byte type, long first, long second, long third) {
+        long requestId = nextRequestId.getAndIncrement();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        pending.put(requestId, result);
+        try {
+            synchronized (out) {
+                out.clear();
+                if (type == BinaryProtocol.TRANSFER) {
+                    BinaryProtocol.putTransfer(out, requestId, first, second, third);
+                } else {
+                    BinaryProtocol.putRequest(out, type, requestId, first);
+                }
+                out.flip();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+        } catch (IOException e) {
+            pending.remove(requestId);
+            result.completeExceptionally(new UncheckedIOException(e));
+        }
+        return result;
+    }
+
+    private void read() {
+        ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+        IOException failure = null;
+        try {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                while (in.remaining() >= BinaryProtocol.LENGTH_SIZE
+                        && in.remaining() >= BinaryProtocol.LENGTH_SIZE + in.getInt(in.position())) {
+                    in.getInt();
+                    byte type = in.get();
+                    long requestId = in.getLong();
+                    byte status = in.get();
+                    long value = in.getLong();
+                    if (type == BinaryProtocol.TRANSFER) {
+                        completeTransfer(pendingTransfers.remove(requestId), status, value, in.getLong());
+                    } else {
+                        complete(pending.remove(requestId), type, status, value);
+                    }
+                }
+                in.compact();
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        IOException closed = failure != null ? failure : new IOException("Connection closed by the server");
+        pending.values().forEach(result -> result.completeExceptionally(new UncheckedIOException(closed)));
+        pending.clear();
+        pendingTransfers.values().forEach(result -> result.completeExceptionally(new UncheckedIOException(closed)));
+        pendingTransfers.clear();
+    }
+
+    private static void complete(CompletableFuture<Long> result, byte type, byte status, long value) {
+        if (result == null) {
+            return;
+        }
+        if (status == BinaryProtocol.OK) {
+            result.complete(value);
+        } else if (status == BinaryProtocol.NOT_FOUND) {
+            result.complete(AccountService.NO_ACCOUNT);
+        } else {
+            fail(result, type, status);
+        }
+    }
+
+    private static void completeTransfer(CompletableFuture<TransferReceipt> result, byte status, long code, long transferId) {
+        if (result == null) {
+            return;
+        }
+        if (status != BinaryProtocol.OK) {
+            fail(result, BinaryProtocol.TRANSFER, status);
+            return;
+        }
+        TransferStatus transferStatus = TransferStatus.ofCode((int) code);
+        result.complete(transferStatus == TransferStatus.TRANSFERRED ? TransferReceipt.transferred(transferId) : TransferReceipt.withoutId(transferStatus));
+    }
+
+    private static void fail(CompletableFuture<?> result, byte type, byte status) {
+        switch (status) {
+            case BinaryProtocol.REJECTED:
+                result.completeExceptionally(new RejectedExecutionException("Too many writes waiting, try again later"));
+                break;
+            default:
+                result.completeExceptionally(new IllegalStateException("Request of type " + type + " failed"));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
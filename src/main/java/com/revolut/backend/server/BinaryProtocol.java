@@ -0,0 +1,86 @@
+package com.revolut.backend.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Frames of the binary protocol served by {@link BinaryServer}, all big-endian and of a fixed layout per type.
+ * A frame starts with its length (an {@code int}, not counting itself), followed by the type (a {@code byte})
+ * and a request id (a {@code long}) chosen by the client, which the response repeats: requests on a connection
+ * are answered in any order. Amounts and balances are minor units, see {@code amounts.scale}.
+ * <pre>
+ * CREATE_ACCOUNT request: initialBalance (long)
+ * BALANCE request:        accountId (long)
+ * TRANSFER request:       senderId (long), recipientId (long), amount (long)
+ * response to any:        status (byte), value (long) - id of the account created, balance or transfer status code
+ * response to TRANSFER:   followed by transferId (long) - id of the transfer made, -1 if it wasn't made
+ * </pre>
+ */
+final class BinaryProtocol {
+
+    static final byte CREATE_ACCOUNT = 1;
+    static final byte BALANCE = 2;
+    static final byte TRANSFER = 3;
+
+    /**
+     * The request was executed, its result is the value.
+     */
+    static final byte OK = 0;
+    /**
+     * The account asked for doesn't exist.
+     */
+    static final byte NOT_FOUND = 1;
+    /**
+     * The write was shed, see {@link NonBlockingService}, and can be retried later.
+     */
+    static final byte REJECTED = 2;
+    static final byte FAILED = 3;
+
+    static final int LENGTH_SIZE = Integer.BYTES;
+    static final int HEADER_SIZE = Byte.BYTES + Long.BYTES;
+    static final int RESPONSE_SIZE = HEADER_SIZE + Byte.BYTES + Long.BYTES;
+    static final int TRANSFER_RESPONSE_SIZE = RESPONSE_SIZE + Long.BYTES;
+    static final int MAX_REQUEST_SIZE = HEADER_SIZE + 3 * Long.BYTES;
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * @return size of a request of the type, not counting its length, or -1 for an unknown type
+     */
+    static int requestSize(byte type) {
+        switch (type) {
+            case CREATE_ACCOUNT:
+            case BALANCE:
+                return HEADER_SIZE + Long.BYTES;
+            case TRANSFER:
+                return HEADER_SIZE + 3 * Long.BYTES;
+            default:
+                return -1;
+        }
+    }
+
+    static void putRequest(ByteBuffer out, byte type, long requestId, long first) {
+        out.putInt(requestSize(type)).put(type).putLong(requestId).putLong(first);
+    }
+
+    static void putTransfer(ByteBuffer out, long requestId, long senderId, long recipientId, long amount) {
+        out.putInt(requestSize(TRANSFER)).put(TRANSFER).putLong(requestId).putLong(senderId).putLong(recipientId).putLong(amount);
+    }
+
+    /**
+     * @return size of a response to a request of the type, not counting its length
+     */
+    static int responseSize(byte type) {
+        return type == TRANSFER ? TRANSFER_RESPONSE_SIZE : RESPONSE_SIZE;
+    }
+
+    /**
+     * @param transferId written to a response to a transfer only
+     */
+    static void putResponse(ByteBuffer out, byte type, long requestId, byte status, long value, long transferId) {
+        out.putInt(responseSize(type)).put(type).putLong(requestId).put(status).putLong(value);
+        if (type == TRANSFER) {
+            out.putLong(transferId);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.revolut.backend.server;
+
+import com.revolut.backend.api.AccountService;
+import com.revolut.backend.domain.TransferReceipt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.revolut.backend.ConfigurationProperties.configuration;
+
+/**
+ * Listens for the {@link BinaryProtocol} next to {@link WebServer}, handing requests to the same
+ * {@link NonBlockingService}. Meant for a few long-lived connections of other services, each served by a single
+ * thread, which decodes requests and hands them over without waiting for their results, and sends responses as
+ * the service's executors complete them, as many at once as are ready. The socket is non-blocking, so the thread
+ * waits for either in one selector and the executors never wait for a slow client, they only queue its responses.
+ * <p>
+ * A connection has at most {@code maxInFlight} requests unanswered: once it has that many, further requests are
+ * left unread, in the buffer and in the socket, until responses are sent, which bounds the responses queued and
+ * slows down a client sending faster than it reads.
+ */
+class BinaryServer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinaryServer.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FRAME_SIZE = BinaryProtocol.LENGTH_SIZE + BinaryProtocol.TRANSFER_RESPONSE_SIZE;
+
+    private final NonBlockingService service;
+    private final int port;
+    private final int maxInFlight;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private ServerSocketChannel serverChannel;
+
+    /**
+     * @param port port to listen on, 0 for any free one, see {@link #getPort()}
+     */
+    BinaryServer(NonBlockingService service, int port) {
+        this(service, port, configuration().getBinaryMaxInFlight());
+    }
+
+    /**
+     * @param maxInFlight requests a connection may have unanswered before it's no longer read
+     */
+    BinaryServer(NonBlockingService service, int port, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Requests in flight must be positive, got " + maxInFlight);
+        }
+        this.service = service;
+        this.port = port;
+        this.maxInFlight = maxInFlight;
+    }
+
+    void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        Thread acceptor = new Thread(this::accept, "binary-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    void stop() throws IOException {
+        serverChannel.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void accept() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.socket().setTcpNoDelay(true);
+                Connection connection = new Connection(channel, connectionCount.incrementAndGet());
+                connections.add(connection);
+                connection.start();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                LOGGER.warn("Failed to accept a connection", e);
+            }
+        }
+    }
+
+    private class Connection {
+        private final SocketChannel channel;
+        private final Selector selector;
+        /**
+         * Holds at most {@code maxInFlight} responses, as no more requests are dispatched.
+         */
+        private final Queue<Response> responses = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean wakeupPending = new AtomicBoolean();
+        private final Thread thread;
+        private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+        private int inFlight;
+
+        private Connection(SocketChannel channel, int number) throws IOException {
+            this.channel = channel;
+            this.selector = Selector.open();
+            this.thread = new Thread(this::serve, "binary-connection-" + number);
+            thread.setDaemon(true);
+            out.flip();
+        }
+
+        private void start() {
+            thread.start();
+        }
+
+        private void serve() {
+            try {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                while (channel.isOpen()) {
+                    selector.select();
+                    wakeupPending.set(false);
+                    boolean readable = selector.selectedKeys().remove(key) && key.isReadable();
+                    if (readable && channel.read(in) < 0) {
+                        return;
+                    }
+                    // answering frees in-flight slots for the requests still buffered at maxInFlight
+                    sendResponses();
+                    dispatchRequests();
+                    key.interestOps((inFlight < maxInFlight && in.hasRemaining() ? SelectionKey.OP_READ : 0)
+                            | (out.hasRemaining() ? SelectionKey.OP_WRITE : 0));
+                }
+            } catch (IOException | CancelledKeyException e) {
+                if (channel.isOpen()) {
+                    LOGGER.warn("Closing binary connection", e);
+                }
+            } finally {
+                close();
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to close selector of binary connection", e);
+                }
+            }
+        }
+
+        /**
+         * Dispatches the complete requests read, up to {@code maxInFlight} unanswered.
+         */
+        private void dispatchRequests() throws IOException {
+            in.flip();
+            try {
+                while (inFlight < maxInFlight && in.remaining() >= BinaryProtocol.LENGTH_SIZE + 1) {
+                    int length = in.getInt(in.position());
+                    byte type = in.get(in.position() + BinaryProtocol.LENGTH_SIZE);
+                    if (length != BinaryProtocol.requestSize(type)) {
+                        throw new IOException(String.format("Malformed frame of type %d and length %d", type, length));
+                    }
+                    if (in.remaining() < BinaryProtocol.LENGTH_SIZE + length) {
+                        break;
+                    }
+                    in.position(in.position() + BinaryProtocol.LENGTH_SIZE + 1);
+                    inFlight++;
+                    dispatch(type, in);
+                }
+            } finally {
+                in.compact();
+            }
+        }
+
+        private void dispatch(byte type, ByteBuffer in) {
+            long requestId = in.getLong();
+            switch (type) {
+                case BinaryProtocol.CREATE_ACCOUNT:
+                    respond(type, requestId, service.createAccount(in.getLong()));
+                    break;
+                case BinaryProtocol.BALANCE:
+                    respond(type, requestId, service.findBalance(in.getLong()));
+                    break;
+                default:
+                    long senderId = in.getLong();
+                    long recipientId = in.getLong();
+                    long amount = in.getLong();
+                    respondToTransfer(requestId, service.makeTransfer(senderId, recipientId, amount));
+            }
+        }
+
+        private void respond(byte type, long requestId, CompletionStage<Long> result) {
+            result.whenComplete((value, failure) -> {
+                if (failure != null) {
+                    queue(failed(type, requestId, failure));
+                } else if (type == BinaryProtocol.BALANCE && value == AccountService.NO_ACCOUNT) {
+                    queue(new Response(type, requestId, BinaryProtocol.NOT_FOUND, 0, TransferReceipt.NO_TRANSFER_ID));
+                } else {
+                    queue(new Response(type, requestId, BinaryProtocol.OK, value, TransferReceipt.NO_TRANSFER_ID));
+                }
+            });
+        }
+
+        private void respondToTransfer(long requestId, CompletionStage<TransferReceipt> result) {
+            result.whenComplete((receipt, failure) -> queue(failure != null
+                    ? failed(BinaryProtocol.TRANSFER, requestId, failure)
+                    : new Response(BinaryProtocol.TRANSFER, requestId, BinaryProtocol.OK, receipt.getStatus().getCode(), receipt.getTransferId())));
+        }
+
+        private Response failed(byte type, long requestId, Throwable failure) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            return new Response(type, requestId, cause instanceof WriteRejectedException ? BinaryProtocol.REJECTED : BinaryProtocol.FAILED,
+                    0, TransferReceipt.NO_TRANSFER_ID);
+        }
+
+        /**
+         * Runs on the thread completing the result; wakes the connection's thread up unless a wakeup is still pending.
+         */
+        private void queue(Response response) {
+            responses.add(response);
+            if (wakeupPending.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * Writes the queued responses until they're all sent or the socket takes no more, in which case the rest
+         * waits in the buffer and the queue for the socket to become writable.
+         */
+        private void sendResponses() throws IOException {
+            do {
+                out.compact();
+                Response response;
+                while (out.remaining() >= FRAME_SIZE && (response = responses.poll()) != null) {
+                    BinaryProtocol.putResponse(out, response.type, response.requestId, response.status, response.value, response.transferId);
+                    inFlight--;
+                }
+                out.flip();
+                channel.write(out);
+            } while (!out.hasRemaining() && !responses.isEmpty());
+        }
+
+        /**
+         * Closes the socket and wakes the connection's thread up, which then closes the selector and ends.
+         */
+        private void close() {
+            connections.remove(this);
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close binary connection", e);
+            }
+            selector.wakeup();
+        }
+    }
+
+    private static class Response {
+        private final byte type;
+        private final long requestId;
+        private final byte status;
+        private final long value;
+        private final long transferId;
+
+        private Response(byte type, long requestId, byte status, long value, long transferId) {
+            this.type = type;
+            this.requestId = requestId;
+            this.status = status;
+            this.value = value;
+            this.transferId = transferId;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.revolut.backend.server;
+
+import com.revolut.backend.domain.IdempotencyKey;
+import com.revolut.backend.domain.StatementPage;
+import com.revolut.backend.domain.TransferOrder;
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.metrics.LatencyHistogram;
+import com.revolut.backend.persistence.PersistenceProvider;
+import com.revolut.backend.persistence.PersistenceProxyService;
+import com.revolut.backend.server.HttpEndpoints.Reply;
+import com.revolut.backend.server.HttpEndpoints.StatementQuery;
+import com.revolut.backend.server.dto.CreateAccount;
+import com.revolut.backend.server.dto.MakeTransfer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.revolut.backend.ConfigurationProperties.configuration;
+import static com.revolut.backend.metrics.Metrics.metrics;
+
+/**
+ * Serves the {@link HttpEndpoints} of {@link WebServer}, but {@code /services/stats}, with the JDK's built-in HTTP server,
+ * running every request on a thread of its own which calls the engine in plain blocking style, with no hand-over
+ * to writer threads. Meant for virtual threads, see {@link VirtualThreads}, with which a thread per request is cheap
+ * enough for tens of thousands of concurrent connections; threads blocked on a write then wait for its commit,
+ * so with {@code GROUP} durability the commands of concurrent requests are journaled together.
+ * <p>
+ * Writes are shed with 503 like in {@link WebServer}, see {@link WriteAdmission}. With no writer queue, the writes
+ * waiting are those in progress, and a write's waiting time is how long it took to be committed.
+ */
+public class BlockingWebServer implements EngineServer {
+
+    private static final int BACKLOG = 4096;
+
+    private final PersistenceProxyService service;
+    private final HttpEndpoints endpoints = new HttpEndpoints(configuration().getAmountScale());
+    private final WriteAdmission admission;
+    private final AtomicInteger writesInProgress = new AtomicInteger();
+    private final ExecutorService requestExecutor;
+    private final int port;
+    private HttpServer server;
+
+    /**
+     * @param port            port to listen on, 0 for any free one, see {@link #getPort()}
+     * @param requestExecutor runs every request to completion, shut down when the server stops
+     */
+    public BlockingWebServer(PersistenceProvider persistenceProvider, int port, ExecutorService requestExecutor) {
+        this(persistenceProvider, port, requestExecutor, configuration().getWriteQueueCapacity(), configuration().getWriteMaxQueueWaitMillis());
+    }
+
+    /**
+     * @param queueCapacity      number of writes in progress above which further ones are shed
+     * @param maxQueueWaitMillis time writes take to be committed above which further ones are shed, 0 for no limit
+     */
+    BlockingWebServer(PersistenceProvider persistenceProvider, int port, ExecutorService requestExecutor, int queueCapacity, long maxQueueWaitMillis) {
+        this.admission = new WriteAdmission(queueCapacity, maxQueueWaitMillis);
+        this.service = new PersistenceProxyService(persistenceProvider);
+        this.port = port;
+        this.requestExecutor = requestExecutor;
+    }
+
+    @Override
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.setExecutor(requestExecutor);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = metrics().scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/services/account/create", timed("account_create", this::createAccount));
+        server.createContext("/services/account/balance/", timed("account_balance", this::checkBalance));
+        server.createContext("/services/account/snapshot", timed("account_snapshot", this::readAccounts));
+        server.createContext("/services/transfer/make", timed("transfer_make", this::makeTransfer));
+        server.createContext("/services/transfer/batch", timed("transfer_batch", this::makeTransfers));
+        server.createContext("/services/transfer/statement/", timed("transfer_statement", this::getStatement));
+        server.createContext("/services/transfer/", timed("transfer_get", this::getTransfer));
+        server.start();
+    }
+
+    @Override
+    public void stop() {
+        server.stop(0);
+        requestExecutor.shutdown();
+    }
+
+    @Override
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Records the time from receiving a request to sending its response, and answers failures the way
+     * {@link WebServer}'s error handler does.
+     */
+    private HttpHandler timed(String endpoint, Endpoint handler) {
+        LatencyHistogram latency = metrics().histogram("mte_http_request_duration_seconds",
+                "Time from receiving a request to sending its response", "endpoint", endpoint);
+        return exchange -> {
+            long start = System.nanoTime();
+            Reply reply;
+            try {
+                reply = handler.handle(exchange);
+            } catch (RuntimeException | IOException e) {
+                reply = endpoints.failure(e);
+            }
+            try {
+                send(exchange, reply);
+            } finally {
+                latency.record(System.nanoTime() - start);
+                exchange.close();
+            }
+        };
+    }
+
+    private Reply createAccount(HttpExchange exchange) throws IOException {
+        long initialBalance = endpoints.initialBalance(readJson(exchange, CreateAccount.class));
+        return endpoints.accountCreated(write(() -> service.createAccount(initialBalance)));
+    }
+
+    private Reply checkBalance(HttpExchange exchange) {
+        String id = pathToken(exchange);
+        long accountId = HttpEndpoints.parseId(id);
+        return accountId == HttpEndpoints.NO_ID ? endpoints.accountNotFound(id) : endpoints.balance(accountId, service.findBalance(accountId));
+    }
+
+    private Reply readAccounts(HttpExchange exchange) throws IOException {
+        return endpoints.accounts(endpoints.readAccounts(queryParams(exchange), service::readAccounts));
+    }
+
+    private Reply makeTransfer(HttpExchange exchange) throws IOException {
+        MakeTransfer request = readJson(exchange, MakeTransfer.class);
+        long amount = endpoints.transferAmount(request);
+        IdempotencyKey key = HttpEndpoints.idempotencyKey(request);
+        TransferReceipt receipt = write(() -> key == null
+                ? service.makeTransferWithReceipt(request.getSenderId(), request.getRecipientId(), amount)
+                : service.makeTransferWithReceipt(request.getSenderId(), request.getRecipientId(), amount, key));
+        NonBlockingService.count(receipt.getStatus());
+        return endpoints.transferMade(receipt);
+    }
+
+    private Reply makeTransfers(HttpExchange exchange) throws IOException {
+        List<TransferOrder> transfers = endpoints.transferOrders(readJson(exchange, MakeTransfer[].class));
+        List<TransferReceipt> receipts = write(() -> service.makeTransfersWithReceipts(transfers));
+        receipts.forEach(receipt -> NonBlockingService.count(receipt.getStatus()));
+        return endpoints.transfersMade(receipts);
+    }
+
+    private Reply getTransfer(HttpExchange exchange) {
+        String id = pathToken(exchange);
+        long transferId = HttpEndpoints.parseId(id);
+        return endpoints.transfer(id, transferId == HttpEndpoints.NO_ID ? null : service.findTransfer(transferId));
+    }
+
+    private Reply getStatement(HttpExchange exchange) throws IOException {
+        String id = pathToken(exchange);
+        long accountId = HttpEndpoints.parseId(id);
+        if (accountId == HttpEndpoints.NO_ID) {
+            return endpoints.accountNotFound(id);
+        }
+        StatementQuery query = endpoints.statementQuery(queryParams(exchange));
+        StatementPage page = service.findStatementPage(accountId, query.getCursor(), query.getLimit(), query.getOrder());
+        return endpoints.statement(accountId, query, page,
+                cursor -> service.findStatementPage(accountId, cursor, query.getLimit(), query.getOrder()));
+    }
+
+    private <T> T write(Supplier<T> write) {
+        WriteRejectedException rejection = admission.admit(writesInProgress.getAndIncrement());
+        if (rejection != null) {
+            writesInProgress.decrementAndGet();
+            throw rejection;
+        }
+        long start = System.nanoTime();
+        try {
+            return write.get();
+        } finally {
+            admission.recordQueueWait(System.nanoTime() - start);
+            writesInProgress.decrementAndGet();
+        }
+    }
+
+    private static String pathToken(HttpExchange exchange) {
+        return exchange.getRequestURI().getPath().substring(exchange.getHttpContext().getPath().length());
+    }
+
+    private static Map<String, String> queryParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String param : query.split("&")) {
+            int separator = param.indexOf('=');
+            String name = separator < 0 ? param : param.substring(0, separator);
+            String value = separator < 0 ? "" : param.substring(separator + 1);
+            params.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return params;
+    }
+
+    private <T> T readJson(HttpExchange exchange, Class<T> type) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            throw new IllegalArgumentException("Expected POST, got " + exchange.getRequestMethod());
+        }
+        return endpoints.readJson(exchange.getRequestBody(), type);
+    }
+
+    /**
+     * Chunked replies, i.e. streamed statements, are written a chunk at a time.
+     */
+    private static void send(HttpExchange exchange, Reply reply) throws IOException {
+        if (reply.getHeader() != null) {
+            exchange.getResponseHeaders().set(reply.getHeader(), reply.getHeaderValue());
+        }
+        exchange.getResponseHeaders().set("Content-Type", reply.getContentType());
+        if (reply.getChunks() != null) {
+            exchange.sendResponseHeaders(reply.getStatus(), 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (String chunk : reply.getChunks()) {
+                    out.write(chunk.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return;
+        }
+        exchange.sendResponseHeaders(reply.getStatus(), reply.getBody().length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(reply.getBody());
+        }
+    }
+
+    /**
+     * Handles a request on its own thread, blocking on the engine.
+     */
+    private interface Endpoint {
+        Reply handle(HttpExchange exchange) throws IOException;
+    }
+}
@@ -0,0 +1,34 @@
+package com.revolut.backend.server;
+
+import com.revolut.backend.persistence.PersistenceProvider;
+
+/**
+ * HTTP front of the engine, served in one of the modes selected by {@code webServer.mode}.
+ */
+public interface EngineServer {
+
+    void start() throws Exception;
+
+    void stop() throws Exception;
+
+    /**
+     * @return port the started server listens on
+     */
+    int getPort();
+
+    /**
+     * @param mode       {@code ratpack} for {@link WebServer}, {@code virtual} for {@link BlockingWebServer} on virtual threads
+     * @param port       port to listen on, 0 for any free one
+     * @param binaryPort port {@link BinaryServer} listens on, 0 for any free one, -1 for none; only served by {@code ratpack}
+     */
+    static EngineServer create(String mode, PersistenceProvider persistenceProvider, int port, int binaryPort) {
+        switch (mode) {
+            case "ratpack":
+                return new WebServer(persistenceProvider, port, binaryPort);
+            case "virtual":
+                return new BlockingWebServer(persistenceProvider, port, VirtualThreads.newThreadPerTaskExecutor());
+            default:
+                throw new IllegalArgumentException("Unknown web server mode " + mode + ", expected ratpack or virtual");
+        }
+    }
+}
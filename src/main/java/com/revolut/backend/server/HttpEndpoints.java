@@ -0,0 +1,345 @@
+package com.revolut.backend.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revolut.backend.api.AccountService;
+import com.revolut.backend.domain.AccountsView;
+import com.revolut.backend.domain.IdempotencyKey;
+import com.revolut.backend.domain.StatementOrder;
+import com.revolut.backend.domain.StatementPage;
+import com.revolut.backend.domain.Transfer;
+import com.revolut.backend.domain.TransferOrder;
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferRecord;
+import com.revolut.backend.domain.TransferStatus;
+import com.revolut.backend.server.dto.AccountSnapshot;
+import com.revolut.backend.server.dto.AccountsSnapshot;
+import com.revolut.backend.server.dto.CreateAccount;
+import com.revolut.backend.server.dto.MakeTransfer;
+import com.revolut.backend.server.dto.MinorUnits;
+import com.revolut.backend.server.dto.PagedStatement;
+import com.revolut.backend.server.dto.StatementEntry;
+import com.revolut.backend.server.dto.TransferDetails;
+import com.revolut.backend.server.dto.TransferMade;
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import static com.revolut.backend.ConfigurationProperties.configuration;
+
+/**
+ * Parses the requests and renders the responses of the HTTP endpoints for both {@link WebServer} and
+ * {@link BlockingWebServer}, which only differ in the transport and in how they call the engine:
+ * asynchronously through {@link NonBlockingService} or blocking.
+ */
+class HttpEndpoints {
+
+    static final long NO_ID = -1;
+    private static final String TRANSFER_PATH = "/services/transfer/";
+    private static final String JSON = "application/json";
+    private static final String TEXT = "text/plain;charset=UTF-8";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final MinorUnits minorUnits;
+    private final PrimitiveJsonCodec codec;
+    private final Reply[] noIdReplies = new Reply[TransferStatus.values().length];
+
+    HttpEndpoints(int amountScale) {
+        this.minorUnits = new MinorUnits(amountScale);
+        this.codec = new PrimitiveJsonCodec(amountScale);
+        for (TransferStatus status : TransferStatus.values()) {
+            noIdReplies[status.ordinal()] = new Reply(200, JSON, codec.writeReceipt(TransferReceipt.withoutId(status)), null, null, null);
+        }
+    }
+
+    /**
+     * Reads the fields of a plain transfer straight from the buffer, see {@link PrimitiveJsonCodec#readTransfer}.
+     */
+    boolean readTransfer(ByteBuf body, long[] fields) {
+        return codec.readTransfer(body, fields);
+    }
+
+    <T> T readJson(byte[] body, Class<T> type) throws IOException {
+        return OBJECT_MAPPER.readValue(body, type);
+    }
+
+    <T> T readJson(InputStream body, Class<T> type) throws IOException {
+        return OBJECT_MAPPER.readValue(body, type);
+    }
+
+    /**
+     * Parses an account or transfer id from a path without throwing, scans with made-up ids being cheap to turn away.
+     *
+     * @return the id, or {@link #NO_ID} if it's not a non-negative number, which no account or transfer has
+     */
+    static long parseId(String id) {
+        if (id == null || id.isEmpty() || id.length() > 18) {
+            return NO_ID;
+        }
+        long parsed = 0;
+        for (int i = 0; i < id.length(); i++) {
+            char digit = id.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return NO_ID;
+            }
+            parsed = parsed * 10 + digit - '0';
+        }
+        return parsed;
+    }
+
+    long initialBalance(CreateAccount request) {
+        return minorUnits.toMinorUnits(request.getInitialBalance());
+    }
+
+    Reply accountCreated(long accountId) {
+        return json(accountId);
+    }
+
+    /**
+     * @param balance the balance, or {@link AccountService#NO_ACCOUNT} if there's no such account
+     */
+    Reply balance(long accountId, long balance) {
+        return balance == AccountService.NO_ACCOUNT
+                ? accountNotFound(String.valueOf(accountId))
+                : new Reply(200, TEXT, codec.writeDecimal(balance), null, null, null);
+    }
+
+    Reply accountNotFound(String accountId) {
+        return text(404, String.format("Account with id %s not found", accountId));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the ids are missing or an id or the version isn't a non-negative number;
+     *                                  the engine refuses a version not committed yet the same way
+     */
+    <R> R readAccounts(Map<String, String> queryParams, AccountsReader<R> reader) {
+        String ids = queryParams.get("ids");
+        if (ids == null || ids.trim().isEmpty()) {
+            throw new IllegalArgumentException("Parameter ids is missing, expected comma separated account ids");
+        }
+        long[] accountIds = Arrays.stream(ids.split(","))
+                .mapToLong(id -> parseParam("ids", id.trim()))
+                .toArray();
+        return reader.read(accountIds,
+                queryParams.containsKey("version") ? parseParam("version", queryParams.get("version")) : -1,
+                Boolean.parseBoolean(queryParams.get("statements")));
+    }
+
+    Reply accounts(AccountsView accounts) {
+        return json(new AccountsSnapshot(accounts.getVersion(), accounts.getAccounts().stream()
+                .map(account -> AccountSnapshot.fromAccountView(account, minorUnits))
+                .collect(Collectors.toList())));
+    }
+
+    long transferAmount(MakeTransfer request) {
+        return minorUnits.toTransferAmount(request.getAmount());
+    }
+
+    /**
+     * @return the request's key scoped by its sender, or null if it has none
+     */
+    static IdempotencyKey idempotencyKey(MakeTransfer request) {
+        return request.getIdempotencyKey() == null ? null : IdempotencyKey.of(request.getSenderId(), request.getIdempotencyKey());
+    }
+
+    /**
+     * A transfer made is located by its id in the Location header as well as in the body.
+     */
+    Reply transferMade(TransferReceipt receipt) {
+        if (receipt.getTransferId() == TransferReceipt.NO_TRANSFER_ID) {
+            return noIdReplies[receipt.getStatus().ordinal()];
+        }
+        return new Reply(200, JSON, codec.writeReceipt(receipt), "Location", TRANSFER_PATH + receipt.getTransferId(), null);
+    }
+
+    List<TransferOrder> transferOrders(MakeTransfer[] request) {
+        if (Arrays.stream(request).anyMatch(transfer -> transfer != null && transfer.getIdempotencyKey() != null)) {
+            throw new IllegalArgumentException("Idempotency keys are not supported in batches");
+        }
+        return Arrays.stream(request)
+                .map(transfer -> transfer == null ? null : new TransferOrder(transfer.getSenderId(), transfer.getRecipientId(), transferAmount(transfer)))
+                .collect(Collectors.toList());
+    }
+
+    Reply transfersMade(List<TransferReceipt> receipts) {
+        return json(receipts.stream().map(TransferMade::fromReceipt).toArray(TransferMade[]::new));
+    }
+
+    /**
+     * @param transfer the transfer, or null if there's none with the id
+     */
+    Reply transfer(String transferId, TransferRecord transfer) {
+        return transfer == null
+                ? text(404, String.format("Transfer with id %s not found", transferId))
+                : json(TransferDetails.fromRecord(transfer, minorUnits));
+    }
+
+    /**
+     * A full statement is read as one page, a streamed one starts with a page of the largest size,
+     * the rest as requested, up to that size.
+     *
+     * @throws IllegalArgumentException if the stream format or the order is unknown, the cursor isn't a non-negative
+     *                                  number or the limit isn't a positive one
+     */
+    StatementQuery statementQuery(Map<String, String> queryParams) {
+        if (Boolean.parseBoolean(queryParams.get("full"))) {
+            return new StatementQuery(true, null, -1, Integer.MAX_VALUE, StatementOrder.OLDEST_FIRST);
+        }
+        if (queryParams.containsKey("stream")) {
+            return new StatementQuery(false, toStreamFormat(queryParams.get("stream")),
+                    -1, configuration().getStatementMaxPageSize(), StatementOrder.OLDEST_FIRST);
+        }
+        long limit = queryParams.containsKey("limit") ? parseParam("limit", queryParams.get("limit")) : configuration().getStatementDefaultPageSize();
+        if (limit == 0) {
+            throw new IllegalArgumentException("Parameter limit must be positive");
+        }
+        return new StatementQuery(false, null,
+                queryParams.containsKey("cursor") ? (int) Math.min(parseParam("cursor", queryParams.get("cursor")), Integer.MAX_VALUE) : -1,
+                (int) Math.min(limit, configuration().getStatementMaxPageSize()),
+                toStatementOrder(queryParams.get("order")));
+    }
+
+    /**
+     * @param page       the first page read for the query, or null if there's no such account
+     * @param pageReader reads the next pages of a streamed statement, at the given cursor
+     */
+    Reply statement(long accountId, StatementQuery query, StatementPage page, IntFunction<StatementPage> pageReader) {
+        if (page == null) {
+            return accountNotFound(String.valueOf(accountId));
+        }
+        if (query.isFull()) {
+            return json(toStatementEntries(page.getTransfers()));
+        }
+        if (query.getFormat() != null) {
+            return new Reply(200, query.getFormat().getContentType(), null, null, null, new StatementChunks(page, pageReader,
+                    transfer -> StatementEntry.fromTransfer(transfer, minorUnits), query.getFormat()));
+        }
+        return json(new PagedStatement(toStatementEntries(page.getTransfers()), page.hasNext() ? page.getNextCursor() : null));
+    }
+
+    /**
+     * Shed writes are answered with 503 and a Retry-After header; requests the endpoints or the engine refuse with an
+     * {@link IllegalArgumentException}, and bodies that aren't valid JSON, with 400.
+     */
+    Reply failure(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof WriteRejectedException) {
+            return new Reply(503, TEXT, cause.getMessage().getBytes(StandardCharsets.UTF_8),
+                    "Retry-After", String.valueOf(configuration().getWriteRetryAfterSeconds()), null);
+        }
+        if (cause instanceof IllegalArgumentException || cause instanceof JsonProcessingException) {
+            return text(400, cause.getMessage());
+        }
+        return text(500, "Caught by error handler: " + throwable.getMessage());
+    }
+
+    static StatementOrder toStatementOrder(String order) {
+        if (order == null || "asc".equals(order)) {
+            return StatementOrder.OLDEST_FIRST;
+        }
+        if ("desc".equals(order)) {
+            return StatementOrder.NEWEST_FIRST;
+        }
+        throw new IllegalArgumentException(String.format("Unknown order %s, expected asc or desc", order));
+    }
+
+    private static StatementChunks.Format toStreamFormat(String format) {
+        for (StatementChunks.Format known : StatementChunks.Format.values()) {
+            if (known.name().equalsIgnoreCase(format)) {
+                return known;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown stream format %s, expected json or ndjson", format));
+    }
+
+    /**
+     * @return the parameter's value, a non-negative number
+     */
+    private static long parseParam(String name, String value) {
+        long parsed = parseId(value);
+        if (parsed == NO_ID) {
+            throw new IllegalArgumentException(String.format("Parameter %s must be a non-negative number, got %s", name, value));
+        }
+        return parsed;
+    }
+
+    private List<StatementEntry> toStatementEntries(List<Transfer> transfers) {
+        return transfers.stream()
+                .map(transfer -> StatementEntry.fromTransfer(transfer, minorUnits))
+                .collect(Collectors.toList());
+    }
+
+    private static Reply json(Object body) {
+        try {
+            return new Reply(200, JSON, OBJECT_MAPPER.writeValueAsBytes(body), null, null, null);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Reply text(int status, String body) {
+        return new Reply(status, TEXT, body.getBytes(StandardCharsets.UTF_8), null, null, null);
+    }
+
+    /**
+     * Calls the engine to read accounts, in the transport's own style.
+     */
+    interface AccountsReader<R> {
+        R read(long[] ids, long version, boolean withStatements);
+    }
+
+    @Getter
+    static class StatementQuery {
+        private final boolean full;
+        /**
+         * Format of a streamed statement, null if it's not streamed.
+         */
+        private final StatementChunks.Format format;
+        private final int cursor;
+        private final int limit;
+        private final StatementOrder order;
+
+        private StatementQuery(boolean full, StatementChunks.Format format, int cursor, int limit, StatementOrder order) {
+            this.full = full;
+            this.format = format;
+            this.cursor = cursor;
+            this.limit = limit;
+            this.order = order;
+        }
+    }
+
+    /**
+     * Response of an endpoint, with at most one header; sent as a whole, or in chunks if it has them.
+     */
+    @Getter
+    static class Reply {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+        private final String header;
+        private final String headerValue;
+        private final Iterable<String> chunks;
+
+        private Reply(int status, String contentType, byte[] body, String header, String headerValue, Iterable<String> chunks) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+            this.header = header;
+            this.headerValue = headerValue;
+            this.chunks = chunks;
+        }
+    }
+}
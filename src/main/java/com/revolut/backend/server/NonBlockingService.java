@@ -1,41 +1,226 @@
 package com.revolut.backend.server;
 
-import com.revolut.backend.api.MoneyTransferService;
-import com.revolut.backend.domain.Transfer;
+import com.revolut.backend.domain.AccountsView;
+import com.revolut.backend.domain.IdempotencyKey;
+import com.revolut.backend.domain.StatementOrder;
+import com.revolut.backend.domain.StatementPage;
+import com.revolut.backend.domain.TransferOrder;
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferRecord;
 import com.revolut.backend.domain.TransferStatus;
+import com.revolut.backend.metrics.LatencyHistogram;
+import com.revolut.backend.persistence.PersistenceProxyService;
+import com.revolut.backend.server.dto.PathStats;
 
-import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
+import static com.revolut.backend.ConfigurationProperties.configuration;
+import static com.revolut.backend.metrics.Metrics.metrics;
+
+/**
+ * Hands writes over to a single writer, which only submits their commands to the journal, so commands of consecutive
+ * writes can be committed together. A writer per shard of accounts measured no faster: every write still goes
+ * through the one journal.
+ * <p>
+ * Reads run on a pool of their own and read the in-memory state without locks. Writes are shed rather than queued,
+ * see {@link WriteAdmission}.
+ */
 class NonBlockingService {
-    private final Executor writesExecutor = Executors.newSingleThreadExecutor();
-    private final MoneyTransferService targetService;
+    private static final LongAdder[] TRANSFERS_BY_STATUS = new LongAdder[TransferStatus.values().length];
+
+    static {
+        for (TransferStatus status : TransferStatus.values()) {
+            TRANSFERS_BY_STATUS[status.ordinal()] = metrics().counter("mte_transfers_total",
+                    "Transfers made, by their status", "status", status.name().toLowerCase());
+        }
+    }
+
+    private static final LatencyHistogram WRITES_QUEUE_WAIT = metrics().histogram("mte_write_queue_wait_seconds",
+            "Time a write waits in the writer's queue before it runs");
+
+    private final ThreadPoolExecutor writesExecutor;
+    private final WriteAdmission admission;
+    private final ExecutorService readsExecutor;
+    private final PersistenceProxyService targetService;
+    private final OperationStats readStats = new OperationStats();
+    private final OperationStats writeStats = new OperationStats();
+
+    NonBlockingService(PersistenceProxyService targetService) {
+        this(targetService, configuration().getReadThreads());
+    }
+
+    /**
+     * @param readThreads number of threads serving reads, 0 for as many as there are cores
+     */
+    NonBlockingService(PersistenceProxyService targetService, int readThreads) {
+        this(targetService, readThreads, configuration().getWriteQueueCapacity(), configuration().getWriteMaxQueueWaitMillis());
+    }
 
-    NonBlockingService(MoneyTransferService targetService) {
+    /**
+     * @param queueCapacity      number of writes waiting for the writer above which further ones are shed
+     * @param maxQueueWaitMillis queueing time of the writer's writes above which further ones are shed, 0 for no limit
+     */
+    NonBlockingService(PersistenceProxyService targetService, int readThreads, int queueCapacity, long maxQueueWaitMillis) {
+        if (readThreads < 0) {
+            throw new IllegalArgumentException("Number of read threads can't be negative, got " + readThreads);
+        }
+        this.admission = new WriteAdmission(queueCapacity, maxQueueWaitMillis);
         this.targetService = targetService;
+        this.writesExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                daemonThreads("writer"));
+        this.readsExecutor = Executors.newFixedThreadPool(readThreads == 0 ? Runtime.getRuntime().availableProcessors() : readThreads,
+                daemonThreads("reader"));
+        metrics().gauge("mte_write_queue_depth", "Writes waiting in the writer's queue", () -> writesExecutor.getQueue().size());
+        metrics().gauge("mte_accounts", "Accounts created", targetService::getAccountCount);
+        metrics().gauge("mte_statement_entries", "Entries of all statements, two per transfer", targetService::getStatementEntryCount);
+    }
+
+    CompletionStage<Long> createAccount(long initialBalance) {
+        return write(() -> targetService.submitCreateAccount(initialBalance));
+    }
+
+    /**
+     * @return the balance, or {@link com.revolut.backend.api.AccountService#NO_ACCOUNT} if there's no such account
+     */
+    CompletionStage<Long> findBalance(long id) {
+        return read(() -> targetService.findBalance(id));
+    }
+
+    CompletionStage<AccountsView> readAccounts(long[] ids, long version, boolean withStatements) {
+        return read(() -> targetService.readAccounts(ids, version, withStatements));
+    }
+
+    CompletionStage<TransferRecord> findTransfer(long transferId) {
+        return read(() -> targetService.findTransfer(transferId));
+    }
+
+    /**
+     * @return the page, or null if there's no such account
+     */
+    CompletionStage<StatementPage> findStatementPage(long id, int cursor, int limit, StatementOrder order) {
+        return read(() -> targetService.findStatementPage(id, cursor, limit, order));
+    }
+
+    /**
+     * Reads a page right away, on the calling thread; it never waits for a lock, but takes time
+     * in proportion to the page size.
+     */
+    StatementPage readStatementPage(long id, int cursor, int limit, StatementOrder order) {
+        return targetService.findStatementPage(id, cursor, limit, order);
+    }
+
+    PathStats getReadStats() {
+        return readStats.toPathStats();
+    }
+
+    PathStats getWriteStats() {
+        return writeStats.toPathStats();
+    }
+
+    CompletionStage<TransferReceipt> makeTransfer(long senderId, long recipientId, long amount) {
+        return write(() -> targetService.submitMakeTransfer(senderId, recipientId, amount))
+                .thenApply(receipt -> {
+                    count(receipt.getStatus());
+                    return receipt;
+                });
+    }
+
+    /**
+     * A transfer already made with the key is answered from the idempotency cache without going through a writer.
+     */
+    CompletionStage<TransferReceipt> makeTransfer(long senderId, long recipientId, long amount, IdempotencyKey key) {
+        Optional<TransferReceipt> original = targetService.findTransferReceipt(senderId, recipientId, amount, key, System.currentTimeMillis());
+        if (original.isPresent()) {
+            return CompletableFuture.completedFuture(original.get());
+        }
+        return write(() -> targetService.submitMakeTransfer(senderId, recipientId, amount, key))
+                .thenApply(receipt -> {
+                    count(receipt.getStatus());
+                    return receipt;
+                });
+    }
+
+    CompletionStage<List<TransferReceipt>> makeTransfers(List<TransferOrder> transfers) {
+        return write(() -> targetService.submitMakeTransfers(transfers))
+                .thenApply(receipts -> {
+                    receipts.forEach(receipt -> count(receipt.getStatus()));
+                    return receipts;
+                });
+    }
+
+    /**
+     * Counts the transfer's outcome in {@code mte_transfers_total}.
+     */
+    static TransferStatus count(TransferStatus status) {
+        if (status != null) {
+            TRANSFERS_BY_STATUS[status.ordinal()].increment();
+        }
+        return status;
     }
 
-    CompletionStage<Long> createAccount(BigDecimal initialBalance) {
-        CompletableFuture<Long> futureId = new CompletableFuture<>();
-        writesExecutor.execute(() -> futureId.complete(targetService.createAccount(initialBalance)));
-        return futureId;
+    void shutdown() {
+        writesExecutor.shutdown();
+        readsExecutor.shutdown();
     }
 
-    BigDecimal checkBalance(long id) {
-        return targetService.checkBalance(id);
+    private <T> CompletionStage<T> read(Supplier<T> read) {
+        long start = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return read.get();
+            } finally {
+                readStats.record(start);
+            }
+        }, readsExecutor);
     }
 
-    List<Transfer> getStatement(long id) {
-        return targetService.getStatement(id);
+    private <T> CompletionStage<T> write(Supplier<CompletionStage<T>> write) {
+        long start = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        WriteRejectedException rejection = admission.admit(writesExecutor.getQueue().size());
+        if (rejection != null) {
+            result.completeExceptionally(rejection);
+            return result;
+        }
+        writesExecutor.execute(() -> {
+            long wait = System.nanoTime() - start;
+            WRITES_QUEUE_WAIT.record(wait);
+            admission.recordQueueWait(wait);
+            try {
+                write.get().whenComplete((value, failure) -> {
+                    writeStats.record(start);
+                    if (failure != null) {
+                        result.completeExceptionally(failure);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            } catch (Throwable e) {
+                writeStats.record(start);
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
     }
 
-    CompletionStage<TransferStatus> makeTransfer(long senderId, long recipientId, BigDecimal amount) {
-        CompletableFuture<TransferStatus> futureStatus = new CompletableFuture<>();
-        writesExecutor.execute(() -> futureStatus.complete(targetService.makeTransfer(senderId, recipientId, amount)));
-        return futureStatus;
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger number = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 }
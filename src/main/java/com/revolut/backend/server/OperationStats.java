@@ -0,0 +1,41 @@
+package com.revolut.backend.server;
+
+import com.revolut.backend.server.dto.PathStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput and latency of one kind of requests, counted with {@link LongAdder}s, so that threads finishing
+ * requests at once don't contend on the counters.
+ */
+class OperationStats {
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param startNanos {@link System#nanoTime()} at which the request was received
+     */
+    void record(long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * @return requests per second and latencies since the stats were created
+     */
+    PathStats toPathStats() {
+        long requests = count.sum();
+        double seconds = (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        return new PathStats(requests,
+                requests / seconds,
+                requests == 0 ? 0 : totalNanos.sum() / 1000.0 / requests,
+                maxNanos.get() / 1000.0);
+    }
+}
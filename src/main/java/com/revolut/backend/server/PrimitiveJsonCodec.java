@@ -0,0 +1,280 @@
+package com.revolut.backend.server;
+
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferStatus;
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads and writes the fixed-shape JSON of the hottest endpoints straight between Netty buffers and primitives,
+ * without Jackson, {@link java.math.BigDecimal} or strings. Anything but the plain shape is left for Jackson, so the
+ * endpoints accept the same bodies as before.
+ */
+class PrimitiveJsonCodec {
+
+    static final int SENDER_ID = 0;
+    static final int RECIPIENT_ID = 1;
+    static final int AMOUNT = 2;
+
+    private static final byte[][] KEYS = {
+            "senderId".getBytes(StandardCharsets.US_ASCII),
+            "recipientId".getBytes(StandardCharsets.US_ASCII),
+            "amount".getBytes(StandardCharsets.US_ASCII)
+    };
+    private static final int ALL_FIELDS = (1 << KEYS.length) - 1;
+    private static final byte[][] RECEIPT_PREFIXES = new byte[TransferStatus.values().length][];
+    private static final byte[][] NO_ID_BODIES = new byte[TransferStatus.values().length][];
+
+    static {
+        for (TransferStatus status : TransferStatus.values()) {
+            String prefix = "{\"status\":" + status.getCode() + ",\"transferId\":";
+            RECEIPT_PREFIXES[status.ordinal()] = prefix.getBytes(StandardCharsets.US_ASCII);
+            NO_ID_BODIES[status.ordinal()] = (prefix + "null}").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final int scale;
+
+    /**
+     * @param scale number of decimal places of amounts, see {@link com.revolut.backend.server.dto.MinorUnits}
+     */
+    PrimitiveJsonCodec(int scale) {
+        if (scale < 0 || scale > 18) {
+            throw new IllegalArgumentException("Scale of amounts must be from 0 to 18, got " + scale);
+        }
+        this.scale = scale;
+    }
+
+    /**
+     * Reads {@code {"senderId":1,"recipientId":2,"amount":3.45}} with the fields in any order, leaving the reader
+     * index as it was.
+     *
+     * @param fields receives the sender id, the recipient id and the amount in minor units at {@link #SENDER_ID},
+     *               {@link #RECIPIENT_ID} and {@link #AMOUNT}; an amount which can't be represented is read as 0, like
+     *               {@link com.revolut.backend.server.dto.MinorUnits#toTransferAmount}
+     * @return false if the body has another shape and has to be read by Jackson
+     */
+    boolean readTransfer(ByteBuf body, long[] fields) {
+        int end = body.writerIndex();
+        int i = skipWhitespace(body, body.readerIndex(), end);
+        if (i >= end || body.getByte(i) != '{') {
+            return false;
+        }
+        int read = 0;
+        i = skipWhitespace(body, i + 1, end);
+        while (true) {
+            if (i >= end || body.getByte(i) != '"') {
+                return false;
+            }
+            int keyEnd = indexOfQuote(body, i + 1, end);
+            int field = keyEnd < 0 ? -1 : field(body, i + 1, keyEnd);
+            if (field < 0) {
+                return false;
+            }
+            i = skipWhitespace(body, keyEnd + 1, end);
+            if (i >= end || body.getByte(i) != ':') {
+                return false;
+            }
+            i = skipWhitespace(body, i + 1, end);
+            i = field == AMOUNT ? readAmount(body, i, end, fields) : readLong(body, i, end, fields, field);
+            if (i < 0) {
+                return false;
+            }
+            read |= 1 << field;
+            i = skipWhitespace(body, i, end);
+            if (i >= end) {
+                return false;
+            }
+            byte separator = body.getByte(i);
+            i = skipWhitespace(body, i + 1, end);
+            if (separator == '}') {
+                return i == end && read == ALL_FIELDS;
+            }
+            if (separator != ',') {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return the body Jackson writes for {@link com.revolut.backend.server.dto.TransferMade}; the array of a receipt
+     * without an id is shared and must not be modified
+     */
+    byte[] writeReceipt(TransferReceipt receipt) {
+        long transferId = receipt.getTransferId();
+        if (transferId == TransferReceipt.NO_TRANSFER_ID) {
+            return NO_ID_BODIES[receipt.getStatus().ordinal()];
+        }
+        byte[] prefix = RECEIPT_PREFIXES[receipt.getStatus().ordinal()];
+        int digits = 1;
+        for (long rest = transferId / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        byte[] out = new byte[prefix.length + digits + 1];
+        System.arraycopy(prefix, 0, out, 0, prefix.length);
+        int position = out.length;
+        out[--position] = '}';
+        do {
+            out[--position] = (byte) ('0' + transferId % 10);
+            transferId /= 10;
+        } while (transferId != 0);
+        return out;
+    }
+
+    /**
+     * @return the amount as {@link java.math.BigDecimal#toPlainString()} of
+     * {@link com.revolut.backend.server.dto.MinorUnits#toDecimal} writes it
+     */
+    byte[] writeDecimal(long minorUnits) {
+        // digits are taken from the negative value, which, unlike the positive one, can't overflow
+        long remaining = minorUnits < 0 ? minorUnits : -minorUnits;
+        int digits = 1;
+        for (long rest = remaining / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int integerDigits = Math.max(digits - scale, 1);
+        int sign = minorUnits < 0 ? 1 : 0;
+        byte[] out = new byte[sign + integerDigits + (scale > 0 ? 1 + scale : 0)];
+        int position = out.length;
+        for (int decimal = 0; decimal < scale; decimal++) {
+            out[--position] = (byte) ('0' - remaining % 10);
+            remaining /= 10;
+        }
+        if (scale > 0) {
+            out[--position] = '.';
+        }
+        do {
+            out[--position] = (byte) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (sign == 1) {
+            out[0] = '-';
+        }
+        return out;
+    }
+
+    /**
+     * @return position after the number, or -1 if it's not a plain integer fitting in a long
+     */
+    private static int readLong(ByteBuf body, int i, int end, long[] fields, int field) {
+        boolean negative = i < end && body.getByte(i) == '-';
+        int start = negative ? i + 1 : i;
+        long value = 0;
+        int position = start;
+        for (; position < end && isDigit(body.getByte(position)); position++) {
+            int digit = body.getByte(position) - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        if (position == start || position < end && isNumberPart(body.getByte(position))) {
+            return -1;
+        }
+        fields[field] = negative ? -value : value;
+        return position;
+    }
+
+    /**
+     * @return position after the number, or -1 if it's not a plain decimal number
+     */
+    private int readAmount(ByteBuf body, int i, int end, long[] fields) {
+        boolean negative = i < end && body.getByte(i) == '-';
+        int start = negative ? i + 1 : i;
+        long value = 0;
+        boolean representable = true;
+        int position = start;
+        for (; position < end && isDigit(body.getByte(position)); position++) {
+            int digit = body.getByte(position) - '0';
+            representable &= value <= (Long.MAX_VALUE - digit) / 10;
+            value = value * 10 + digit;
+        }
+        if (position == start) {
+            return -1;
+        }
+        int decimals = 0;
+        if (position < end && body.getByte(position) == '.') {
+            int fractionStart = ++position;
+            for (; position < end && isDigit(body.getByte(position)); position++) {
+                int digit = body.getByte(position) - '0';
+                if (decimals < scale) {
+                    representable &= value <= (Long.MAX_VALUE - digit) / 10;
+                    value = value * 10 + digit;
+                    decimals++;
+                } else {
+                    representable &= digit == 0;
+                }
+            }
+            if (position == fractionStart) {
+                return -1;
+            }
+        }
+        if (position < end && isNumberPart(body.getByte(position))) {
+            return -1;
+        }
+        for (; decimals < scale; decimals++) {
+            representable &= value <= Long.MAX_VALUE / 10;
+            value *= 10;
+        }
+        fields[AMOUNT] = !representable ? 0 : negative ? -value : value;
+        return position;
+    }
+
+    /**
+     * @return index of the field the key names, or -1 for another key
+     */
+    private static int field(ByteBuf body, int start, int end) {
+        for (int field = 0; field < KEYS.length; field++) {
+            byte[] key = KEYS[field];
+            if (key.length == end - start && matches(body, start, key)) {
+                return field;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(ByteBuf body, int start, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (body.getByte(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return index of the quote closing a key, or -1 if the key has escapes or isn't closed
+     */
+    private static int indexOfQuote(ByteBuf body, int i, int end) {
+        for (; i < end; i++) {
+            byte b = body.getByte(i);
+            if (b == '"') {
+                return i;
+            }
+            if (b == '\\') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(ByteBuf body, int i, int end) {
+        while (i < end) {
+            byte b = body.getByte(i);
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isNumberPart(byte b) {
+        return isDigit(b) || b == '.' || b == 'e' || b == 'E' || b == '+' || b == '-';
+    }
+}
@@ -0,0 +1,116 @@
+package com.revolut.backend.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revolut.backend.domain.StatementPage;
+import com.revolut.backend.domain.Transfer;
+import com.revolut.backend.server.dto.StatementEntry;
+
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Renders a statement as a sequence of response chunks, one page of entries per chunk.
+ * Pages are read only when the next chunk is requested, so memory taken by a response
+ * is bounded by the page size, not by the length of the statement.
+ */
+class StatementChunks implements Iterable<String> {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    enum Format {
+        /**
+         * One JSON array, same as the full statement.
+         */
+        JSON("application/json"),
+        /**
+         * One JSON entry per line.
+         */
+        NDJSON("application/x-ndjson");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        String getContentType() {
+            return contentType;
+        }
+    }
+
+    private final StatementPage firstPage;
+    private final IntFunction<StatementPage> pageReader;
+    private final Function<Transfer, StatementEntry> entryCreator;
+    private final Format format;
+
+    /**
+     * @param firstPage  read up front, so that an unknown account fails the request before the response starts
+     * @param pageReader reads the page at the given cursor
+     */
+    StatementChunks(StatementPage firstPage, IntFunction<StatementPage> pageReader, Function<Transfer, StatementEntry> entryCreator, Format format) {
+        this.firstPage = firstPage;
+        this.pageReader = pageReader;
+        this.entryCreator = entryCreator;
+        this.format = format;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private StatementPage page = firstPage;
+            private boolean firstEntry = true;
+            private boolean finished;
+
+            @Override
+            public boolean hasNext() {
+                return !finished;
+            }
+
+            @Override
+            public String next() {
+                if (finished) {
+                    throw new NoSuchElementException();
+                }
+                StringBuilder chunk = new StringBuilder();
+                if (format == Format.JSON && page == firstPage) {
+                    chunk.append('[');
+                }
+                for (Transfer transfer : page.getTransfers()) {
+                    appendEntry(chunk, entryCreator.apply(transfer));
+                }
+                if (page.hasNext()) {
+                    page = pageReader.apply(page.getNextCursor());
+                } else {
+                    if (format == Format.JSON) {
+                        chunk.append(']');
+                    }
+                    finished = true;
+                }
+                return chunk.toString();
+            }
+
+            private void appendEntry(StringBuilder chunk, StatementEntry entry) {
+                if (format == Format.JSON && !firstEntry) {
+                    chunk.append(',');
+                }
+                firstEntry = false;
+                chunk.append(writeJson(entry));
+                if (format == Format.NDJSON) {
+                    chunk.append('\n');
+                }
+            }
+        };
+    }
+
+    private static String writeJson(StatementEntry entry) {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(entry);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,126 +1,275 @@
 package com.revolut.backend.server;
 
-import com.revolut.backend.domain.TransferStatus;
+import com.revolut.backend.domain.IdempotencyKey;
+import com.revolut.backend.domain.TransferOrder;
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.metrics.LatencyHistogram;
 import com.revolut.backend.persistence.PersistenceProvider;
 import com.revolut.backend.persistence.PersistenceProxyService;
 import com.revolut.backend.persistence.inmemory.InMemoryPersistenceProvider;
+import com.revolut.backend.persistence.journal.MappedJournalPersistenceProvider;
+import com.revolut.backend.server.HttpEndpoints.Reply;
+import com.revolut.backend.server.HttpEndpoints.StatementQuery;
 import com.revolut.backend.server.dto.CreateAccount;
 import com.revolut.backend.server.dto.MakeTransfer;
-import com.revolut.backend.server.dto.StatementEntry;
+import com.revolut.backend.server.dto.ServerStats;
 import ratpack.error.ServerErrorHandler;
 import ratpack.exec.Promise;
 import ratpack.func.Action;
 import ratpack.handling.Chain;
-import ratpack.jackson.Jackson;
-import ratpack.jackson.JsonRender;
+import ratpack.handling.Context;
+import ratpack.http.Response;
+import ratpack.http.ResponseChunks;
 import ratpack.server.RatpackServer;
 import ratpack.server.ServerConfig;
+import ratpack.stream.Streams;
 
-import java.math.BigDecimal;
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import static com.revolut.backend.ConfigurationProperties.configuration;
+import static com.revolut.backend.metrics.Metrics.metrics;
 import static ratpack.jackson.Jackson.json;
 
 
-public class WebServer {
+public class WebServer implements EngineServer {
+
+    private static final ThreadLocal<long[]> TRANSFER_FIELDS = ThreadLocal.withInitial(() -> new long[3]);
 
     private final NonBlockingService service;
+    private final HttpEndpoints endpoints = new HttpEndpoints(configuration().getAmountScale());
+    private final int port;
+    private final BinaryServer binaryServer;
     private RatpackServer server;
 
-    private WebServer() {
-        this(new InMemoryPersistenceProvider());
+    private static PersistenceProvider createPersistenceProvider() {
+        switch (configuration().getPersistenceProvider()) {
+            case "airomem":
+                return new InMemoryPersistenceProvider();
+            case "journal":
+                return new MappedJournalPersistenceProvider();
+            default:
+                throw new IllegalArgumentException("Unknown persistence provider " + configuration().getPersistenceProvider() + ", expected airomem or journal");
+        }
     }
 
     public WebServer(PersistenceProvider persistenceProvider) {
+        this(persistenceProvider, configuration().getWebServerPort(), configuration().getBinaryPort());
+    }
+
+    /**
+     * @param port       port to listen on, 0 for any free one, see {@link #getPort()}
+     * @param binaryPort port to listen on for the {@link BinaryProtocol}, 0 for any free one, -1 for none,
+     *                   see {@link #getBinaryPort()}
+     */
+    public WebServer(PersistenceProvider persistenceProvider, int port, int binaryPort) {
         this.service = new NonBlockingService(new PersistenceProxyService(persistenceProvider));
+        this.port = port;
+        this.binaryServer = binaryPort < 0 ? null : new BinaryServer(service, binaryPort);
     }
 
+    @Override
     public void start() throws Exception {
+        if (binaryServer != null) {
+            binaryServer.start();
+        }
         this.server = RatpackServer.start(server -> server
                 .serverConfig(
                         ServerConfig
                                 .embedded()
                                 .publicAddress(configuration().getWebServerPublicAddress())
-                                .port(configuration().getWebServerPort())
+                                .port(port)
                                 .threads(configuration().getWebServerThreads())
                 )
                 .handlers(root -> {
+                            root.get("metrics", ctx -> ctx.getResponse().send("text/plain; version=0.0.4", metrics().scrape()));
                             root.prefix("services", services -> services
                                     .prefix("account", account -> account
-                                            .prefix("create", createAccountAction())
-                                            .prefix("balance", createCheckBalanceAction())
+                                            .prefix("create", createAccountAction(latency("account_create")))
+                                            .prefix("balance", createCheckBalanceAction(latency("account_balance")))
+                                            .prefix("snapshot", createReadAccountsAction(latency("account_snapshot")))
                                     )
                                     .prefix("transfer", account -> account
-                                            .prefix("make", createMakeTransferAction())
-                                            .prefix("statement", createGetStatementAction())
+                                            .prefix("make", createMakeTransferAction(latency("transfer_make")))
+                                            .prefix("batch", createMakeTransfersAction(latency("transfer_batch")))
+                                            .prefix("statement", createGetStatementAction(latency("transfer_statement")))
+                                            .prefix(":transferId", createGetTransferAction(latency("transfer_get")))
+                                    )
+                                    .prefix("stats", stats -> stats
+                                            .get(ctx -> ctx.render(json(new ServerStats(service.getReadStats(), service.getWriteStats()))))
                                     )
                             ).register(registry ->
-                                    registry.add(ServerErrorHandler.class, (context, throwable) ->
-                                            context.render("Caught by error handler: " + throwable.getMessage())
-                                    ));
+                                    registry.add(ServerErrorHandler.class, (ctx, throwable) -> send(ctx, endpoints.failure(throwable))));
 
                         }
                 )
         );
     }
 
-    private Action<Chain> createAccountAction() {
-        return createRequestResponseAction(CreateAccount.class, request -> service.createAccount(request.getInitialBalance()), Function.identity());
+    /**
+     * Handlers record into the histogram as they send the reply, so timing doesn't allocate. Requests failing into
+     * the error handler aren't timed.
+     */
+    private static LatencyHistogram latency(String endpoint) {
+        return metrics().histogram("mte_http_request_duration_seconds",
+                "Time from receiving a request to sending its response", "endpoint", endpoint);
     }
 
-    private Action<Chain> createCheckBalanceAction() {
+    private Action<Chain> createAccountAction(LatencyHistogram latency) {
+        return orderChain -> orderChain
+                .post(ctx -> {
+                    long start = System.nanoTime();
+                    ctx.getRequest().getBody().then(body -> {
+                        long initialBalance = endpoints.initialBalance(endpoints.readJson(body.getBytes(), CreateAccount.class));
+                        reply(ctx, latency, start, service.createAccount(initialBalance), endpoints::accountCreated);
+                    });
+                });
+    }
+
+    private Action<Chain> createCheckBalanceAction(LatencyHistogram latency) {
         return orderChain -> orderChain
                 .path(":id", ctx -> {
-                    Map<String, String> pathTokens = ctx.getPathTokens();
-                    String id = pathTokens.get("id");
-                    BigDecimal balance = service.checkBalance(Long.parseLong(id));
-                    ctx.render(balance.toString());
+                    long start = System.nanoTime();
+                    String id = ctx.getPathTokens().get("id");
+                    long accountId = HttpEndpoints.parseId(id);
+                    if (accountId == HttpEndpoints.NO_ID) {
+                        send(ctx, latency, start, endpoints.accountNotFound(id));
+                        return;
+                    }
+                    reply(ctx, latency, start, service.findBalance(accountId), balance -> endpoints.balance(accountId, balance));
                 });
     }
 
-    private Action<Chain> createMakeTransferAction() {
-        return createRequestResponseAction(MakeTransfer.class, request -> service.makeTransfer(request.getSenderId(), request.getRecipientId(), request.getAmount()), TransferStatus::getCode);
+    private Action<Chain> createReadAccountsAction(LatencyHistogram latency) {
+        return orderChain -> orderChain
+                .get(ctx -> {
+                    long start = System.nanoTime();
+                    reply(ctx, latency, start, endpoints.readAccounts(ctx.getRequest().getQueryParams(), service::readAccounts), endpoints::accounts);
+                });
     }
 
-    private Action<Chain> createGetStatementAction() {
+    /**
+     * Plain transfers are read straight from the request's buffer by the {@link PrimitiveJsonCodec},
+     * the rest, e.g. with an idempotency key, by Jackson.
+     */
+    private Action<Chain> createMakeTransferAction(LatencyHistogram latency) {
         return orderChain -> orderChain
-                .path(":id", ctx -> {
-                    Map<String, String> pathTokens = ctx.getPathTokens();
-                    long accountId = Long.parseLong(pathTokens.get("id"));
-                    List<StatementEntry> statement = service.getStatement(accountId).stream()
-                            .map(StatementEntry::fromTransfer)
-                            .collect(Collectors.toList());
-                    ctx.render(json(statement));
+                .post(ctx -> {
+                    long start = System.nanoTime();
+                    ctx.getRequest().getBody().then(body -> {
+                        long[] fields = TRANSFER_FIELDS.get();
+                        CompletionStage<TransferReceipt> receipt = endpoints.readTransfer(body.getBuffer(), fields)
+                                ? service.makeTransfer(fields[PrimitiveJsonCodec.SENDER_ID], fields[PrimitiveJsonCodec.RECIPIENT_ID], fields[PrimitiveJsonCodec.AMOUNT])
+                                : makeTransfer(endpoints.readJson(body.getBytes(), MakeTransfer.class));
+                        reply(ctx, latency, start, receipt, endpoints::transferMade);
+                    });
                 });
     }
 
-    private <RQ, T, RS> Action<Chain> createRequestResponseAction(Class<RQ> requestType, Function<RQ, CompletionStage<T>> processor, Function<T, RS> responseCreator) {
+    private CompletionStage<TransferReceipt> makeTransfer(MakeTransfer request) {
+        long amount = endpoints.transferAmount(request);
+        IdempotencyKey key = HttpEndpoints.idempotencyKey(request);
+        return key == null
+                ? service.makeTransfer(request.getSenderId(), request.getRecipientId(), amount)
+                : service.makeTransfer(request.getSenderId(), request.getRecipientId(), amount, key);
+    }
+
+    private Action<Chain> createMakeTransfersAction(LatencyHistogram latency) {
         return orderChain -> orderChain
-                .post(context -> {
-                    context.parse(requestType)
-                            .onError(System.out::println)
-                            .then(request -> {
-                                CompletionStage<JsonRender> response = processor.apply(request)
-                                        .thenApply(responseCreator)
-                                        .thenApply(Jackson::json);
+                .post(ctx -> {
+                    long start = System.nanoTime();
+                    ctx.getRequest().getBody().then(body -> {
+                        List<TransferOrder> transfers = endpoints.transferOrders(endpoints.readJson(body.getBytes(), MakeTransfer[].class));
+                        reply(ctx, latency, start, service.makeTransfers(transfers), endpoints::transfersMade);
+                    });
+                });
+    }
 
-                                Promise promise = Promise.async(downstream -> downstream.accept(response));
-                                context.render(promise);
-                            });
-                                    });
+    private Action<Chain> createGetTransferAction(LatencyHistogram latency) {
+        return orderChain -> orderChain
+                .get(ctx -> {
+                    long start = System.nanoTime();
+                    String id = ctx.getPathTokens().get("transferId");
+                    long transferId = HttpEndpoints.parseId(id);
+                    if (transferId == HttpEndpoints.NO_ID) {
+                        send(ctx, latency, start, endpoints.transfer(id, null));
+                        return;
+                    }
+                    reply(ctx, latency, start, service.findTransfer(transferId), transfer -> endpoints.transfer(id, transfer));
+                });
     }
 
-    public static void main(String... args) throws Exception {
-        new WebServer().start();
+    /**
+     * Pages of a streamed statement after the first one are read on the event loop, see
+     * {@link NonBlockingService#readStatementPage}.
+     */
+    private Action<Chain> createGetStatementAction(LatencyHistogram latency) {
+        return orderChain -> orderChain
+                .path(":id", ctx -> {
+                    long start = System.nanoTime();
+                    String id = ctx.getPathTokens().get("id");
+                    long accountId = HttpEndpoints.parseId(id);
+                    if (accountId == HttpEndpoints.NO_ID) {
+                        send(ctx, latency, start, endpoints.accountNotFound(id));
+                        return;
+                    }
+                    StatementQuery query = endpoints.statementQuery(ctx.getRequest().getQueryParams());
+                    reply(ctx, latency, start, service.findStatementPage(accountId, query.getCursor(), query.getLimit(), query.getOrder()),
+                            page -> endpoints.statement(accountId, query, page,
+                                    cursor -> service.readStatementPage(accountId, cursor, query.getLimit(), query.getOrder())));
+                });
+    }
+
+    private static <T> void reply(Context ctx, LatencyHistogram latency, long start, CompletionStage<T> result, Function<T, Reply> replier) {
+        Promise.<T>async(downstream -> downstream.accept(result))
+                .then(value -> send(ctx, latency, start, replier.apply(value)));
+    }
+
+    private static void send(Context ctx, LatencyHistogram latency, long start, Reply reply) {
+        latency.record(System.nanoTime() - start);
+        send(ctx, reply);
     }
 
+    private static void send(Context ctx, Reply reply) {
+        Response response = ctx.getResponse();
+        if (reply.getHeader() != null) {
+            response.getHeaders().set(reply.getHeader(), reply.getHeaderValue());
+        }
+        if (reply.getChunks() != null) {
+            ctx.render(ResponseChunks.stringChunks(reply.getContentType(), Streams.publish(reply.getChunks())));
+        } else {
+            response.status(reply.getStatus()).send(reply.getContentType(), reply.getBody());
+        }
+    }
+
+    /**
+     * Starts the server in the mode selected by {@code webServer.mode}, see {@link EngineServer#create}.
+     */
+    public static void main(String... args) throws Exception {
+        EngineServer.create(configuration().getWebServerMode(), createPersistenceProvider(), configuration().getWebServerPort(),
+                configuration().getBinaryPort()).start();
+    }
 
+    @Override
     public void stop() throws Exception {
         server.stop();
+        if (binaryServer != null) {
+            binaryServer.stop();
+        }
+        service.shutdown();
+    }
+
+    @Override
+    public int getPort() {
+        return server.getBindPort();
+    }
+
+    /**
+     * @return port the started server listens on for the {@link BinaryProtocol}
+     */
+    public int getBinaryPort() throws IOException {
+        return binaryServer.getPort();
     }
 }
@@ -0,0 +1,56 @@
+package com.revolut.backend.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.revolut.backend.metrics.Metrics.metrics;
+
+/**
+ * Sheds writes for both {@link NonBlockingService} and {@link BlockingWebServer}: a write is rejected when
+ * {@code queueCapacity} writes are already waiting, or when some are waiting and the last one to get through
+ * had waited longer than {@code maxQueueWaitMillis}, until the waiting writes drain.
+ */
+class WriteAdmission {
+
+    private static final LongAdder SHED_ON_FULL_QUEUE = metrics().counter("mte_writes_shed_total",
+            "Writes rejected instead of queued, by reason", "reason", "queue_full");
+    private static final LongAdder SHED_ON_QUEUE_WAIT = metrics().counter("mte_writes_shed_total",
+            "Writes rejected instead of queued, by reason", "reason", "queue_wait");
+
+    private final int queueCapacity;
+    private final long maxQueueWaitNanos;
+    private volatile long lastQueueWaitNanos;
+
+    /**
+     * @param queueCapacity      number of waiting writes above which further ones are shed
+     * @param maxQueueWaitMillis waiting time of writes above which further ones are shed, 0 for no limit
+     */
+    WriteAdmission(int queueCapacity, long maxQueueWaitMillis) {
+        if (queueCapacity < 1 || maxQueueWaitMillis < 0) {
+            throw new IllegalArgumentException(String.format("Write queue capacity must be positive and maximum queue wait not negative, got %d and %d",
+                    queueCapacity, maxQueueWaitMillis));
+        }
+        this.queueCapacity = queueCapacity;
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis);
+    }
+
+    /**
+     * @param waiting number of writes waiting, not counting this one
+     * @return the reason to shed the write, or null to let it in
+     */
+    WriteRejectedException admit(int waiting) {
+        if (waiting >= queueCapacity) {
+            SHED_ON_FULL_QUEUE.increment();
+            return WriteRejectedException.QUEUE_FULL;
+        }
+        if (waiting > 0 && maxQueueWaitNanos > 0 && lastQueueWaitNanos > maxQueueWaitNanos) {
+            SHED_ON_QUEUE_WAIT.increment();
+            return WriteRejectedException.QUEUE_WAIT;
+        }
+        return null;
+    }
+
+    void recordQueueWait(long nanos) {
+        lastQueueWaitNanos = nanos;
+    }
+}
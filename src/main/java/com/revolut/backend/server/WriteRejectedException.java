@@ -0,0 +1,15 @@
+package com.revolut.backend.server;
+
+/**
+ * A write shed by {@link WriteAdmission} instead of being queued, to be retried later.
+ * Thrown under overload, so it's shared and carries no stack trace.
+ */
+class WriteRejectedException extends RuntimeException {
+
+    static final WriteRejectedException QUEUE_FULL = new WriteRejectedException("Too many writes waiting, try again later");
+    static final WriteRejectedException QUEUE_WAIT = new WriteRejectedException("Writes are waiting too long, try again later");
+
+    private WriteRejectedException(String message) {
+        super(message, null, false, false);
+    }
+}
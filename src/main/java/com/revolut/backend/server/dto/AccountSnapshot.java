@@ -0,0 +1,40 @@
+package com.revolut.backend.server.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.revolut.backend.domain.AccountView;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Getter
+public class AccountSnapshot {
+    private final long accountId;
+    /**
+     * Null if the account didn't exist at the version read.
+     */
+    private final BigDecimal balance;
+    /**
+     * Null unless statements were asked for.
+     */
+    private final List<StatementEntry> statement;
+
+    public AccountSnapshot(@JsonProperty("accountId") long accountId,
+                           @JsonProperty("balance") BigDecimal balance,
+                           @JsonProperty("statement") List<StatementEntry> statement) {
+        this.accountId = accountId;
+        this.balance = balance;
+        this.statement = statement;
+    }
+
+    public static AccountSnapshot fromAccountView(AccountView account, MinorUnits minorUnits) {
+        if (!account.isFound()) {
+            return new AccountSnapshot(account.getAccountId(), null, null);
+        }
+        return new AccountSnapshot(account.getAccountId(), minorUnits.toDecimal(account.getBalance()),
+                account.getStatement() == null ? null : account.getStatement().stream()
+                        .map(transfer -> StatementEntry.fromTransfer(transfer, minorUnits))
+                        .collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,18 @@
+package com.revolut.backend.server.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class AccountsSnapshot {
+    private final long version;
+    private final List<AccountSnapshot> accounts;
+
+    public AccountsSnapshot(@JsonProperty("version") long version,
+                            @JsonProperty("accounts") List<AccountSnapshot> accounts) {
+        this.version = version;
+        this.accounts = accounts;
+    }
+}
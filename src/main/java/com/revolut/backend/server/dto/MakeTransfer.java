@@ -10,12 +10,22 @@ public class MakeTransfer {
     private final long senderId;
     private final long recipientId;
     private BigDecimal amount;
+    private final String idempotencyKey;
 
+    public MakeTransfer(long senderId, long recipientId, BigDecimal amount) {
+        this(senderId, recipientId, amount, null);
+    }
+
+    /**
+     * @param idempotencyKey optional, retries of a transfer with the same key return the status of the first one
+     */
     public MakeTransfer(@JsonProperty("senderId") long senderId,
                         @JsonProperty("recipientId") long recipientId,
-                        @JsonProperty("amount") BigDecimal amount) {
+                        @JsonProperty("amount") BigDecimal amount,
+                        @JsonProperty("idempotencyKey") String idempotencyKey) {
         this.senderId = senderId;
         this.recipientId = recipientId;
         this.amount = amount;
+        this.idempotencyKey = idempotencyKey;
     }
 }
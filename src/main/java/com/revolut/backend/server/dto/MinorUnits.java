@@ -0,0 +1,44 @@
+package com.revolut.backend.server.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Converts amounts between the decimal form used by the API and the minor units (e.g. cents) used by the engine.
+ */
+public class MinorUnits {
+
+    private final int scale;
+
+    public MinorUnits(int scale) {
+        this.scale = scale;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the amount is missing, has more decimal places than the scale or is out of range
+     */
+    public long toMinorUnits(BigDecimal amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount is missing");
+        }
+        try {
+            return amount.movePointRight(scale).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(String.format("Amount %s can't be represented with %d decimal places", amount.toPlainString(), scale));
+        }
+    }
+
+    /**
+     * @return the amount in minor units, or 0 (never a valid transfer amount) if it can't be represented
+     */
+    public long toTransferAmount(BigDecimal amount) {
+        try {
+            return toMinorUnits(amount);
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    public BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+}
@@ -0,0 +1,18 @@
+package com.revolut.backend.server.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class PagedStatement {
+    private final List<StatementEntry> entries;
+    private final Integer nextCursor;
+
+    public PagedStatement(@JsonProperty("entries") List<StatementEntry> entries,
+                          @JsonProperty("nextCursor") Integer nextCursor) {
+        this.entries = entries;
+        this.nextCursor = nextCursor;
+    }
+}
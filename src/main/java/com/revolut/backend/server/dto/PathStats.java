@@ -0,0 +1,22 @@
+package com.revolut.backend.server.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+
+@Getter
+public class PathStats {
+    private final long requests;
+    private final double requestsPerSecond;
+    private final double meanLatencyMicros;
+    private final double maxLatencyMicros;
+
+    public PathStats(@JsonProperty("requests") long requests,
+                     @JsonProperty("requestsPerSecond") double requestsPerSecond,
+                     @JsonProperty("meanLatencyMicros") double meanLatencyMicros,
+                     @JsonProperty("maxLatencyMicros") double maxLatencyMicros) {
+        this.requests = requests;
+        this.requestsPerSecond = requestsPerSecond;
+        this.meanLatencyMicros = meanLatencyMicros;
+        this.maxLatencyMicros = maxLatencyMicros;
+    }
+}
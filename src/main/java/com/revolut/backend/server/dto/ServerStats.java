@@ -0,0 +1,16 @@
+package com.revolut.backend.server.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+
+@Getter
+public class ServerStats {
+    private final PathStats reads;
+    private final PathStats writes;
+
+    public ServerStats(@JsonProperty("reads") PathStats reads,
+                       @JsonProperty("writes") PathStats writes) {
+        this.reads = reads;
+        this.writes = writes;
+    }
+}
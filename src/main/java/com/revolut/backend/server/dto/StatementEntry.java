@@ -20,7 +20,7 @@ public class StatementEntry {
         this.balance = balance;
     }
 
-    public static StatementEntry fromTransfer(Transfer transfer) {
-        return new StatementEntry(transfer.getTimestamp().toEpochMilli(), transfer.getParty(), transfer.getBalance());
+    public static StatementEntry fromTransfer(Transfer transfer, MinorUnits minorUnits) {
+        return new StatementEntry(transfer.getTimestamp().toEpochMilli(), transfer.getParty(), minorUnits.toDecimal(transfer.getBalance()));
     }
 }
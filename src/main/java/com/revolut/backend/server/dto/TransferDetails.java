@@ -0,0 +1,33 @@
+package com.revolut.backend.server.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.revolut.backend.domain.TransferRecord;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+@Getter
+public class TransferDetails {
+    private long transferId;
+    private long senderId;
+    private long recipientId;
+    private BigDecimal amount;
+    private long timestamp;
+
+    public TransferDetails(@JsonProperty("transferId") long transferId,
+                           @JsonProperty("senderId") long senderId,
+                           @JsonProperty("recipientId") long recipientId,
+                           @JsonProperty("amount") BigDecimal amount,
+                           @JsonProperty("timestamp") long timestamp) {
+        this.transferId = transferId;
+        this.senderId = senderId;
+        this.recipientId = recipientId;
+        this.amount = amount;
+        this.timestamp = timestamp;
+    }
+
+    public static TransferDetails fromRecord(TransferRecord transfer, MinorUnits minorUnits) {
+        return new TransferDetails(transfer.getTransferId(), transfer.getSenderId(), transfer.getRecipientId(),
+                minorUnits.toDecimal(transfer.getAmount()), transfer.getTimestamp());
+    }
+}
@@ -0,0 +1,25 @@
+package com.revolut.backend.server.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.revolut.backend.domain.TransferReceipt;
+import lombok.Getter;
+
+@Getter
+public class TransferMade {
+    private int status;
+    /**
+     * Null if the transfer wasn't made.
+     */
+    private Long transferId;
+
+    public TransferMade(@JsonProperty("status") int status,
+                        @JsonProperty("transferId") Long transferId) {
+        this.status = status;
+        this.transferId = transferId;
+    }
+
+    public static TransferMade fromReceipt(TransferReceipt receipt) {
+        return new TransferMade(receipt.getStatus().getCode(),
+                receipt.getTransferId() == TransferReceipt.NO_TRANSFER_ID ? null : receipt.getTransferId());
+    }
+}
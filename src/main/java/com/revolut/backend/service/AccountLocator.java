@@ -3,24 +3,36 @@ package com.revolut.backend.service;
 import com.revolut.backend.domain.Account;
 
 import java.io.Serializable;
-import java.util.Map;
 import java.util.Optional;
 
 public class AccountLocator implements Serializable {
 
-    protected final Map<Long, Account> accountById;
+    protected final DenseTable<Account> accountById;
 
-    public AccountLocator(Map<Long, Account> accountById) {
+    public AccountLocator(DenseTable<Account> accountById) {
         this.accountById = accountById;
     }
 
     public Optional<Account> getAccount(long id) {
-        return accountById.containsKey(id) ? Optional.of(accountById.get(id)) : Optional.empty();
+        return Optional.ofNullable(accountById.get(id));
+    }
+
+    /**
+     * @return the account, or null if not found
+     */
+    Account findAccount(long id) {
+        return accountById.get(id);
     }
 
     public void validateAccountId(long id) {
-        if (!accountById.containsKey(id)) {
+        getExistingAccount(id);
+    }
+
+    protected Account getExistingAccount(long id) {
+        Account account = accountById.get(id);
+        if (account == null) {
             throw new IllegalArgumentException(String.format("Account with id %d not found", id));
         }
+        return account;
     }
 }
@@ -4,28 +4,77 @@ import com.revolut.backend.api.AccountService;
 import com.revolut.backend.domain.Account;
 
 import java.io.Serializable;
-import java.math.BigDecimal;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class AccountRepository extends AccountLocator implements AccountService, Serializable {
     private final AtomicLong idGenerator = new AtomicLong();
+    private final Set<Long> hotAccountIds;
+    private final VersionClock versionClock;
 
     public AccountRepository() {
-        super(new ConcurrentHashMap<>());
+        this(Collections.emptySet(), new VersionClock());
+    }
+
+    /**
+     * @param hotAccountIds accounts made hot as soon as they're created, see {@link Account#makeHot()}
+     * @param versionClock  numbers creations of accounts along with transfers
+     */
+    AccountRepository(Set<Long> hotAccountIds, VersionClock versionClock) {
+        super(new DenseTable<>());
+        this.hotAccountIds = new HashSet<>(hotAccountIds);
+        this.versionClock = versionClock;
     }
 
     @Override
-    public long createAccount(BigDecimal initialBalance) {
+    public long createAccount(long initialBalance) {
         long id = idGenerator.getAndIncrement();
-        Account account = new Account(initialBalance);
-        accountById.put(id, account);
+        putAccount(id, initialBalance, initialBalance);
         return id;
     }
 
+    long accountCount() {
+        return idGenerator.get();
+    }
+
+    /**
+     * Recreates an account under the id it got when it was first created; ids are handed out past it from now on.
+     */
+    void restoreAccount(long id, long initialBalance) {
+        restoreAccount(id, initialBalance, initialBalance);
+    }
+
+    /**
+     * @param openingBalance balance before the first entry of the account's statement
+     */
+    void restoreAccount(long id, long balance, long openingBalance) {
+        putAccount(id, balance, openingBalance);
+        idGenerator.accumulateAndGet(id + 1, Math::max);
+    }
+
+    private void putAccount(long id, long balance, long openingBalance) {
+        long version = versionClock.begin();
+        try {
+            Account account = new Account(balance, openingBalance, version);
+            if (hotAccountIds.contains(id)) {
+                account.makeHot();
+            }
+            accountById.put(id, account);
+        } finally {
+            versionClock.complete(version);
+        }
+    }
+
+    @Override
+    public long checkBalance(long accountId) {
+        return getExistingAccount(accountId).getBalance();
+    }
+
     @Override
-    public BigDecimal checkBalance(long accountId) {
-        validateAccountId(accountId);
-        return accountById.get(accountId).getBalance();
+    public long findBalance(long accountId) {
+        Account account = accountById.get(accountId);
+        return account == null ? NO_ACCOUNT : account.getBalance();
     }
 }
@@ -1,35 +1,183 @@
 package com.revolut.backend.service;
 
 import com.revolut.backend.api.MoneyTransferService;
+import com.revolut.backend.domain.AccountsView;
+import com.revolut.backend.domain.IdempotencyKey;
+import com.revolut.backend.domain.StatementOrder;
+import com.revolut.backend.domain.StatementPage;
 import com.revolut.backend.domain.Transfer;
+import com.revolut.backend.domain.TransferOrder;
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferRecord;
 import com.revolut.backend.domain.TransferStatus;
 
-import java.math.BigDecimal;
+import java.io.DataInput;
+import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.revolut.backend.ConfigurationProperties.configuration;
 
 
 public class CoreService implements MoneyTransferService {
 
-    private final AccountRepository accountRepository = new AccountRepository();
-    private final TransferRepository transferRepository = new TransferRepository(accountRepository);
+    private final AccountRepository accountRepository;
+    private final TransferRepository transferRepository;
+
+    public CoreService() {
+        this(configuration().getHotAccountIds(), configuration().getHotAccountContendedCredits(), configuration().getHotAccountWindowMillis(),
+                configuration().getIdempotencyFifoCapacity(), TimeUnit.SECONDS.toMillis(configuration().getIdempotencyWindowSeconds()),
+                configuration().getTransfersRetained());
+    }
+
+    /**
+     * @param hotAccountIds            accounts made hot as soon as they're created, see {@link com.revolut.backend.domain.Account}
+     * @param hotAfterContendedCredits number of credits an account waits for its lock within {@code hotWindowMillis}
+     *                                 before it's made hot, 0 never
+     * @param idempotencyFifoCapacity  number of idempotency keys remembered at most, the first added evicted first
+     * @param idempotencyWindowMillis  how long an idempotency key is remembered
+     * @param transfersRetained        number of the latest transfer ids that can be looked up
+     */
+    public CoreService(Set<Long> hotAccountIds, int hotAfterContendedCredits, long hotWindowMillis, int idempotencyFifoCapacity, long idempotencyWindowMillis,
+                       long transfersRetained) {
+        VersionClock versionClock = new VersionClock();
+        this.accountRepository = new AccountRepository(hotAccountIds, versionClock);
+        this.transferRepository = new TransferRepository(accountRepository, hotAfterContendedCredits, hotWindowMillis,
+                new IdempotencyCache(idempotencyFifoCapacity, idempotencyWindowMillis), new TransferIndex(transfersRetained), versionClock);
+    }
+
+    /**
+     * Must be called while no command is running, see {@link ServiceState}.
+     */
+    public ServiceState.Mark markState() {
+        return ServiceState.mark(accountRepository, transferRepository);
+    }
+
+    public ServiceState captureState() {
+        return markState().read();
+    }
+
+    public static CoreService restoreState(DataInput in) throws IOException {
+        CoreService service = new CoreService();
+        ServiceState.restore(in, service.accountRepository, service.transferRepository);
+        return service;
+    }
+
+    @Override
+    public long getAccountCount() {
+        return accountRepository.accountCount();
+    }
+
+    @Override
+    public long getStatementEntryCount() {
+        return transferRepository.statementEntryCount();
+    }
+
+    /**
+     * Creates an account with the given id, for replaying creations out of their original order.
+     */
+    public void restoreAccount(long id, long initialBalance) {
+        accountRepository.restoreAccount(id, initialBalance);
+    }
 
     @Override
-    public long createAccount(BigDecimal initialBalance) {
+    public long createAccount(long initialBalance) {
         return accountRepository.createAccount(initialBalance);
     }
 
     @Override
-    public BigDecimal checkBalance(long accountId) {
+    public long checkBalance(long accountId) {
         return accountRepository.checkBalance(accountId);
     }
 
     @Override
-    public TransferStatus makeTransfer(long senderId, long recipientId, BigDecimal amount) {
+    public long findBalance(long accountId) {
+        return accountRepository.findBalance(accountId);
+    }
+
+    @Override
+    public AccountsView readAccounts(long[] accountIds, long version, boolean withStatements) {
+        return transferRepository.readAccounts(accountIds, version, withStatements);
+    }
+
+    @Override
+    public TransferStatus makeTransfer(long senderId, long recipientId, long amount) {
         return transferRepository.makeTransfer(senderId, recipientId, amount);
     }
 
+    @Override
+    public TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount) {
+        return transferRepository.makeTransferWithReceipt(senderId, recipientId, amount);
+    }
+
+    @Override
+    public TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount, long transferId) {
+        return transferRepository.makeTransferWithReceipt(senderId, recipientId, amount, transferId);
+    }
+
+    /**
+     * Takes ids for transfers about to be journaled, see {@link #makeTransferWithReceipt(long, long, long, long)}.
+     *
+     * @return the first of {@code count} consecutive ids
+     */
+    public long reserveTransferIds(int count) {
+        return transferRepository.reserveTransferIds(count);
+    }
+
+    @Override
+    public TransferRecord findTransfer(long transferId) {
+        return transferRepository.findTransfer(transferId);
+    }
+
+    @Override
+    public TransferStatus makeTransfer(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp) {
+        return transferRepository.makeTransfer(senderId, recipientId, amount, key, timestamp);
+    }
+
+    @Override
+    public TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp) {
+        return transferRepository.makeTransferWithReceipt(senderId, recipientId, amount, key, timestamp);
+    }
+
+    @Override
+    public TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp, long transferId) {
+        return transferRepository.makeTransferWithReceipt(senderId, recipientId, amount, key, timestamp, transferId);
+    }
+
+    @Override
+    public Optional<TransferReceipt> findTransferReceipt(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp) {
+        return transferRepository.findTransferReceipt(senderId, recipientId, amount, key, timestamp);
+    }
+
+    @Override
+    public List<TransferStatus> makeTransfers(List<TransferOrder> transfers) {
+        return transferRepository.makeTransfers(transfers);
+    }
+
+    @Override
+    public List<TransferReceipt> makeTransfersWithReceipts(List<TransferOrder> transfers) {
+        return transferRepository.makeTransfersWithReceipts(transfers);
+    }
+
+    @Override
+    public List<TransferReceipt> makeTransfersWithReceipts(List<TransferOrder> transfers, long firstTransferId) {
+        return transferRepository.makeTransfersWithReceipts(transfers, firstTransferId);
+    }
+
     @Override
     public List<Transfer> getStatement(long accountId) {
         return transferRepository.getStatement(accountId);
     }
+
+    @Override
+    public StatementPage getStatement(long accountId, int cursor, int limit, StatementOrder order) {
+        return transferRepository.getStatement(accountId, cursor, limit, order);
+    }
+
+    @Override
+    public StatementPage findStatementPage(long accountId, int cursor, int limit, StatementOrder order) {
+        return transferRepository.findStatementPage(accountId, cursor, limit, order);
+    }
 }
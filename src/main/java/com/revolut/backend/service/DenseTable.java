@@ -0,0 +1,94 @@
+package com.revolut.backend.service;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * Table of values keyed by dense, non-negative primitive long keys, e.g. sequentially generated ids.
+ * Values live in fixed-size chunks that are allocated on demand and never copied, only the small directory
+ * of chunks is copied when it grows. Chunks and values are published with volatile writes, so lookups
+ * from any thread are lock-free and see fully constructed values.
+ */
+public class DenseTable<T> implements Serializable {
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_DIRECTORY_SIZE = 16;
+    private static final long MAX_KEY = ((long) Integer.MAX_VALUE << CHUNK_BITS) | CHUNK_MASK;
+
+    private volatile AtomicReferenceArray<AtomicReferenceArray<T>> directory = new AtomicReferenceArray<>(INITIAL_DIRECTORY_SIZE);
+
+    /**
+     * @return the value, or null if there is none for the key
+     */
+    public T get(long key) {
+        AtomicReferenceArray<T> chunk = chunk(key);
+        return chunk == null ? null : chunk.get((int) (key & CHUNK_MASK));
+    }
+
+    public void put(long key, T value) {
+        createChunk(key).set((int) (key & CHUNK_MASK), value);
+    }
+
+    /**
+     * @return the current value for the key, or the value created by the factory if there was none
+     */
+    public T computeIfAbsent(long key, LongFunction<T> factory) {
+        T value = get(key);
+        if (value != null) {
+            return value;
+        }
+        AtomicReferenceArray<T> chunk = createChunk(key);
+        int index = (int) (key & CHUNK_MASK);
+        T created = factory.apply(key);
+        return chunk.compareAndSet(index, null, created) ? created : chunk.get(index);
+    }
+
+    private AtomicReferenceArray<T> chunk(long key) {
+        if (key < 0 || key > MAX_KEY) {
+            return null;
+        }
+        AtomicReferenceArray<AtomicReferenceArray<T>> currentDirectory = directory;
+        int chunkIndex = (int) (key >>> CHUNK_BITS);
+        return chunkIndex < currentDirectory.length() ? currentDirectory.get(chunkIndex) : null;
+    }
+
+    private AtomicReferenceArray<T> createChunk(long key) {
+        AtomicReferenceArray<T> chunk = chunk(key);
+        if (chunk != null) {
+            return chunk;
+        }
+        if (key < 0 || key > MAX_KEY) {
+            throw new IllegalArgumentException("Key out of range: " + key);
+        }
+        synchronized (this) {
+            int chunkIndex = (int) (key >>> CHUNK_BITS);
+            AtomicReferenceArray<AtomicReferenceArray<T>> currentDirectory = growDirectory(chunkIndex);
+            chunk = currentDirectory.get(chunkIndex);
+            if (chunk == null) {
+                chunk = new AtomicReferenceArray<>(CHUNK_SIZE);
+                currentDirectory.set(chunkIndex, chunk);
+            }
+            return chunk;
+        }
+    }
+
+    private AtomicReferenceArray<AtomicReferenceArray<T>> growDirectory(int chunkIndex) {
+        AtomicReferenceArray<AtomicReferenceArray<T>> currentDirectory = directory;
+        if (chunkIndex < currentDirectory.length()) {
+            return currentDirectory;
+        }
+        int size = currentDirectory.length();
+        while (size <= chunkIndex) {
+            size = size > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : size * 2;
+        }
+        AtomicReferenceArray<AtomicReferenceArray<T>> grown = new AtomicReferenceArray<>(size);
+        for (int i = 0; i < currentDirectory.length(); i++) {
+            grown.set(i, currentDirectory.get(i));
+        }
+        directory = grown;
+        return grown;
+    }
+}
@@ -0,0 +1,303 @@
+package com.revolut.backend.service;
+
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferStatus;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Receipts of transfers made with an idempotency key, kept for a time window and for at most {@code capacity} keys,
+ * with a fingerprint of the transfer a retry must match. Eviction is first in, first out. Entries live in primitive
+ * arrays: a ring buffer in the order they were added, indexed by an open-addressing hash table. Time comes with the
+ * journaled command, so replay rebuilds the same entries.
+ * <p>
+ * A key is {@link #claim claimed} before its transfer is made and {@link #complete completed} after it, so only
+ * retries of the same key wait for each other.
+ */
+class IdempotencyCache implements Serializable {
+
+    /**
+     * Returned by {@link #claim} while the key is claimed by a transfer still being made.
+     */
+    static final TransferReceipt PENDING = TransferReceipt.transferred(TransferReceipt.NO_TRANSFER_ID);
+
+    private static final int EMPTY = -1;
+    private static final byte PENDING_STATUS = -1;
+    private static final byte RELEASED_STATUS = -2;
+    private static final TransferStatus[] STATUSES = TransferStatus.values();
+
+    private final int capacity;
+    private final long windowMillis;
+    private final long[] keyHighs;
+    private final long[] keyLows;
+    private final long[] fingerprints;
+    private final long[] timestamps;
+    private final byte[] statuses;
+    private final long[] transferIds;
+    private final int[] index;
+    private final int indexMask;
+    private int oldest;
+    private int size;
+    private boolean frozen;
+    private IdempotencyCache frozenCopy;
+
+    IdempotencyCache(int capacity, long windowMillis) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Idempotency cache capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.windowMillis = windowMillis;
+        this.keyHighs = new long[capacity];
+        this.keyLows = new long[capacity];
+        this.fingerprints = new long[capacity];
+        this.timestamps = new long[capacity];
+        this.statuses = new byte[capacity];
+        this.transferIds = new long[capacity];
+        // at most half full, so that probe sequences stay short
+        this.index = new int[Integer.highestOneBit(capacity) << 2];
+        this.indexMask = index.length - 1;
+        Arrays.fill(index, EMPTY);
+    }
+
+    /**
+     * @return receipt of the transfer made with the key within the window before {@code now},
+     * {@link TransferStatus#IDEMPOTENCY_CONFLICT} if it had another fingerprint, null if there's none
+     */
+    synchronized TransferReceipt find(long keyHigh, long keyLow, long fingerprint, long now) {
+        TransferReceipt receipt = findEntry(keyHigh, keyLow, fingerprint, now);
+        return receipt == PENDING ? null : receipt;
+    }
+
+    /**
+     * Puts a pending entry for the key unless it has one within the window; the caller must then {@link #complete} or
+     * {@link #release} it.
+     *
+     * @return null if the key has been claimed, {@link #PENDING} if another transfer holds the claim, otherwise as
+     * {@link #find}
+     */
+    synchronized TransferReceipt claim(long keyHigh, long keyLow, long fingerprint, long now) {
+        TransferReceipt receipt = findEntry(keyHigh, keyLow, fingerprint, now);
+        if (receipt == null) {
+            put(keyHigh, keyLow, fingerprint, now, PENDING_STATUS, TransferReceipt.NO_TRANSFER_ID);
+        }
+        return receipt;
+    }
+
+    synchronized void complete(long keyHigh, long keyLow, TransferReceipt receipt) {
+        int position = positionOf(keyHigh, keyLow);
+        if (position != EMPTY && statuses[position] == PENDING_STATUS) {
+            statuses[position] = (byte) receipt.getStatus().ordinal();
+            transferIds[position] = receipt.getTransferId();
+        }
+    }
+
+    /**
+     * Drops the claim of a transfer that failed without a status; a retry makes it again.
+     */
+    synchronized void release(long keyHigh, long keyLow) {
+        int position = positionOf(keyHigh, keyLow);
+        if (position != EMPTY && statuses[position] == PENDING_STATUS) {
+            removeFromIndex(position);
+            statuses[position] = RELEASED_STATUS;
+        }
+    }
+
+    private TransferReceipt findEntry(long keyHigh, long keyLow, long fingerprint, long now) {
+        int position = positionOf(keyHigh, keyLow);
+        if (position == EMPTY || now - timestamps[position] > windowMillis) {
+            return null;
+        }
+        if (fingerprints[position] != fingerprint) {
+            return TransferReceipt.withoutId(TransferStatus.IDEMPOTENCY_CONFLICT);
+        }
+        if (statuses[position] == PENDING_STATUS) {
+            return PENDING;
+        }
+        return transferIds[position] == TransferReceipt.NO_TRANSFER_ID
+                ? TransferReceipt.withoutId(STATUSES[statuses[position]])
+                : TransferReceipt.transferred(transferIds[position]);
+    }
+
+    synchronized void put(long keyHigh, long keyLow, long fingerprint, long now, TransferReceipt receipt) {
+        put(keyHigh, keyLow, fingerprint, now, (byte) receipt.getStatus().ordinal(), receipt.getTransferId());
+    }
+
+    private void put(long keyHigh, long keyLow, long fingerprint, long now, byte status, long transferId) {
+        if (frozen) {
+            frozenCopy = copy();
+            frozen = false;
+        }
+        while (size > 0 && now - timestamps[oldest] > windowMillis) {
+            evictOldest();
+        }
+        int stale = positionOf(keyHigh, keyLow);
+        if (stale != EMPTY) {
+            // expired, but not evicted yet as it was added after a newer entry
+            removeFromIndex(stale);
+        }
+        if (size == capacity) {
+            evictOldest();
+        }
+        int position = (oldest + size) % capacity;
+        keyHighs[position] = keyHigh;
+        keyLows[position] = keyLow;
+        fingerprints[position] = fingerprint;
+        timestamps[position] = now;
+        statuses[position] = status;
+        transferIds[position] = transferId;
+        size++;
+        int slot = slotOf(keyHigh, keyLow);
+        while (index[slot] != EMPTY) {
+            slot = (slot + 1) & indexMask;
+        }
+        index[slot] = position;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized IdempotencyCache copy() {
+        IdempotencyCache copy = new IdempotencyCache(capacity, windowMillis);
+        System.arraycopy(keyHighs, 0, copy.keyHighs, 0, capacity);
+        System.arraycopy(keyLows, 0, copy.keyLows, 0, capacity);
+        System.arraycopy(fingerprints, 0, copy.fingerprints, 0, capacity);
+        System.arraycopy(timestamps, 0, copy.timestamps, 0, capacity);
+        System.arraycopy(statuses, 0, copy.statuses, 0, capacity);
+        System.arraycopy(transferIds, 0, copy.transferIds, 0, capacity);
+        System.arraycopy(index, 0, copy.index, 0, index.length);
+        copy.oldest = oldest;
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Marks the entries for {@link #takeFrozen()}; they're copied by whichever comes first, it or the next
+     * {@link #put}.
+     */
+    synchronized void freeze() {
+        frozen = true;
+        frozenCopy = null;
+    }
+
+    /**
+     * @return copy of the entries as of the last {@link #freeze()}
+     */
+    synchronized IdempotencyCache takeFrozen() {
+        IdempotencyCache copy = frozen ? copy() : frozenCopy;
+        frozen = false;
+        frozenCopy = null;
+        return copy;
+    }
+
+    /**
+     * @return whether both hold the same entries in the same order
+     */
+    synchronized boolean sameEntries(IdempotencyCache other) {
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            int position = (oldest + i) % capacity;
+            int otherPosition = (other.oldest + i) % other.capacity;
+            if (keyHighs[position] != other.keyHighs[otherPosition] || keyLows[position] != other.keyLows[otherPosition]
+                    || fingerprints[position] != other.fingerprints[otherPosition] || timestamps[position] != other.timestamps[otherPosition] || statuses[position] != other.statuses[otherPosition]
+                    || transferIds[position] != other.transferIds[otherPosition]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes completed entries only, a claim is left to the transfer holding it.
+     */
+    synchronized void writeTo(DataOutput out) throws IOException {
+        int completed = 0;
+        for (int i = 0; i < size; i++) {
+            if (statuses[(oldest + i) % capacity] >= 0) {
+                completed++;
+            }
+        }
+        out.writeInt(completed);
+        for (int i = 0; i < size; i++) {
+            int position = (oldest + i) % capacity;
+            if (statuses[position] < 0) {
+                continue;
+            }
+            out.writeLong(keyHighs[position]);
+            out.writeLong(keyLows[position]);
+            out.writeLong(fingerprints[position]);
+            out.writeLong(timestamps[position]);
+            out.writeByte(statuses[position]);
+            out.writeLong(transferIds[position]);
+        }
+    }
+
+    /**
+     * Adds entries written by {@link #writeTo(DataOutput)}, the capacity or window may have changed since.
+     */
+    synchronized void readFrom(DataInput in) throws IOException {
+        int entries = in.readInt();
+        for (int i = 0; i < entries; i++) {
+            long keyHigh = in.readLong();
+            long keyLow = in.readLong();
+            long fingerprint = in.readLong();
+            long timestamp = in.readLong();
+            TransferStatus status = STATUSES[in.readByte()];
+            long transferId = in.readLong();
+            put(keyHigh, keyLow, fingerprint, timestamp,
+                    transferId == TransferReceipt.NO_TRANSFER_ID ? TransferReceipt.withoutId(status) : TransferReceipt.transferred(transferId));
+        }
+    }
+
+    private int positionOf(long keyHigh, long keyLow) {
+        int slot = slotOf(keyHigh, keyLow);
+        while (index[slot] != EMPTY) {
+            int position = index[slot];
+            if (keyHighs[position] == keyHigh && keyLows[position] == keyLow) {
+                return position;
+            }
+            slot = (slot + 1) & indexMask;
+        }
+        return EMPTY;
+    }
+
+    private void evictOldest() {
+        removeFromIndex(oldest);
+        oldest = (oldest + 1) % capacity;
+        size--;
+    }
+
+    /**
+     * Frees the index slot pointing at the ring position, if any, shifting back the entries probed past it.
+     */
+    private void removeFromIndex(int position) {
+        int hole = slotOf(keyHighs[position], keyLows[position]);
+        while (index[hole] != position) {
+            if (index[hole] == EMPTY) {
+                return;
+            }
+            hole = (hole + 1) & indexMask;
+        }
+        int next = (hole + 1) & indexMask;
+        while (index[next] != EMPTY) {
+            int home = slotOf(keyHighs[index[next]], keyLows[index[next]]);
+            if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+                index[hole] = index[next];
+                hole = next;
+            }
+            next = (next + 1) & indexMask;
+        }
+        index[hole] = EMPTY;
+    }
+
+    private int slotOf(long keyHigh, long keyLow) {
+        // keys are hashes already
+        return (int) (keyHigh ^ keyLow ^ (keyHigh >>> 32)) & indexMask;
+    }
+}
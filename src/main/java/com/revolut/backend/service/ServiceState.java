@@ -0,0 +1,153 @@
+package com.revolut.backend.service;
+
+import com.revolut.backend.domain.Statement;
+import com.revolut.backend.domain.Transfer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Point-in-time image of {@link CoreService} as of a committed version. A {@link Mark}, taken while no command runs,
+ * only notes the version, the number of accounts and the next transfer id, so writers are held back for a constant
+ * time; {@link Mark#read()} reads the rest while commands run again.
+ */
+public class ServiceState {
+
+    private final long[] balances;
+    private final Statement[] statements;
+    private final int[] statementSizes;
+    private final IdempotencyCache idempotencyCache;
+    private final TransferIndex transferIndex;
+    private final long nextTransferId;
+
+    private ServiceState(long[] balances, Statement[] statements, int[] statementSizes, IdempotencyCache idempotencyCache,
+                         TransferIndex transferIndex, long nextTransferId) {
+        this.balances = balances;
+        this.statements = statements;
+        this.statementSizes = statementSizes;
+        this.idempotencyCache = idempotencyCache;
+        this.transferIndex = transferIndex;
+        this.nextTransferId = nextTransferId;
+    }
+
+    static Mark mark(AccountRepository accountRepository, TransferRepository transferRepository) {
+        transferRepository.getIdempotencyCache().freeze();
+        return new Mark(accountRepository, transferRepository, transferRepository.committedVersion(),
+                Math.toIntExact(accountRepository.accountCount()), transferRepository.nextTransferId());
+    }
+
+    /**
+     * Version, accounts and transfer ids the state is to be read as of.
+     */
+    public static class Mark {
+        private final AccountRepository accountRepository;
+        private final TransferRepository transferRepository;
+        private final long version;
+        private final int accounts;
+        private final long nextTransferId;
+
+        private Mark(AccountRepository accountRepository, TransferRepository transferRepository, long version, int accounts,
+                     long nextTransferId) {
+            this.accountRepository = accountRepository;
+            this.transferRepository = transferRepository;
+            this.version = version;
+            this.accounts = accounts;
+            this.nextTransferId = nextTransferId;
+        }
+
+        /**
+         * Balances are the opening balance plus the statement entries up to the version. May be called once,
+         * concurrently with commands.
+         */
+        public ServiceState read() {
+            long[] balances = new long[accounts];
+            Statement[] statements = new Statement[accounts];
+            int[] statementSizes = new int[accounts];
+            for (int id = 0; id < accounts; id++) {
+                statements[id] = transferRepository.findStatement(id);
+                statementSizes[id] = statements[id] == null ? 0 : statements[id].sizeAt(version);
+                balances[id] = accountRepository.findAccount(id).getOpeningBalance()
+                        + (statementSizes[id] == 0 ? 0 : statements[id].netAmount(statementSizes[id]));
+            }
+            return new ServiceState(balances, statements, statementSizes, transferRepository.getIdempotencyCache().takeFrozen(),
+                    transferRepository.getTransferIndex(), nextTransferId);
+        }
+    }
+
+    public int getAccounts() {
+        return balances.length;
+    }
+
+    /**
+     * Compares balances, statement entries and transfers, apart from their timestamps, which are taken anew on replay.
+     *
+     * @return description of the first difference found, empty if there's none
+     */
+    public Optional<String> findDifference(ServiceState other) {
+        if (balances.length != other.balances.length) {
+            return Optional.of(String.format("%d accounts instead of %d", other.balances.length, balances.length));
+        }
+        for (int id = 0; id < balances.length; id++) {
+            if (balances[id] != other.balances[id]) {
+                return Optional.of(String.format("account %d has balance %d instead of %d", id, other.balances[id], balances[id]));
+            }
+            if (statementSizes[id] != other.statementSizes[id]) {
+                return Optional.of(String.format("account %d has %d statement entries instead of %d", id, other.statementSizes[id], statementSizes[id]));
+            }
+            if (statementSizes[id] > 0) {
+                List<Transfer> transfers = statements[id].getTransfers(0, statementSizes[id]);
+                List<Transfer> otherTransfers = other.statements[id].getTransfers(0, statementSizes[id]);
+                for (int entry = 0; entry < transfers.size(); entry++) {
+                    if (transfers.get(entry).getParty() != otherTransfers.get(entry).getParty()
+                            || transfers.get(entry).getBalance() != otherTransfers.get(entry).getBalance()) {
+                        return Optional.of(String.format("account %d differs at statement entry %d", id, entry));
+                    }
+                }
+            }
+        }
+        if (!idempotencyCache.sameEntries(other.idempotencyCache)) {
+            return Optional.of("idempotency keys differ");
+        }
+        if (nextTransferId != other.nextTransferId) {
+            return Optional.of(String.format("next transfer id is %d instead of %d", other.nextTransferId, nextTransferId));
+        }
+        if (!transferIndex.sameEntries(other.transferIndex, nextTransferId)) {
+            return Optional.of("transfers differ");
+        }
+        return Optional.empty();
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(balances.length);
+        for (int id = 0; id < balances.length; id++) {
+            out.writeLong(balances[id]);
+            out.writeInt(statementSizes[id]);
+            if (statementSizes[id] > 0) {
+                statements[id].writeEntries(out, statementSizes[id]);
+            }
+        }
+        idempotencyCache.writeTo(out);
+        transferIndex.writeTo(out, nextTransferId);
+    }
+
+    static void restore(DataInput in, AccountRepository accountRepository, TransferRepository transferRepository) throws IOException {
+        int accounts = in.readInt();
+        for (int id = 0; id < accounts; id++) {
+            long balance = in.readLong();
+            int statementSize = in.readInt();
+            long netAmount = 0;
+            if (statementSize > 0) {
+                Statement statement = transferRepository.statement(id);
+                statement.readEntries(in, statementSize);
+                transferRepository.countRestoredEntries(statementSize);
+                netAmount = statement.netAmount(statementSize);
+            }
+            accountRepository.restoreAccount(id, balance, balance - netAmount);
+        }
+        transferRepository.getIdempotencyCache().readFrom(in);
+        transferRepository.restoreTransfers(in);
+    }
+}
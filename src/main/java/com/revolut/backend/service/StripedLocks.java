@@ -0,0 +1,83 @@
+package com.revolut.backend.service;
+
+import com.revolut.backend.metrics.LatencyHistogram;
+
+import java.io.Serializable;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.revolut.backend.metrics.Metrics.metrics;
+
+/**
+ * Fixed number of locks shared by all accounts, each account guarded by the stripe its id maps to.
+ * Memory stays bounded however many accounts there are; unrelated accounts sharing a stripe only contend
+ * with each other. Pairs of accounts are locked stripe by stripe in ascending order, so they can't deadlock.
+ * Locks wait without a timeout; the time spent waiting for a stripe held by another thread is recorded.
+ */
+class StripedLocks implements Serializable {
+
+    private static final LatencyHistogram LOCK_WAIT = metrics().histogram("mte_lock_wait_seconds",
+            "Time spent waiting for an account lock stripe held by another thread");
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /**
+     * @param stripes number of locks, a power of two
+     */
+    StripedLocks(int stripes) {
+        if (stripes < 1 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Number of lock stripes must be a power of two, got " + stripes);
+        }
+        this.stripes = new ReentrantLock[stripes];
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            this.stripes[stripe] = new ReentrantLock();
+        }
+        this.mask = stripes - 1;
+    }
+
+    void lock(long accountId) {
+        lock(stripes[stripeOf(accountId)]);
+    }
+
+    void unlock(long accountId) {
+        stripes[stripeOf(accountId)].unlock();
+    }
+
+    /**
+     * @return whether the other account's stripe was held by another thread and had to be waited for
+     */
+    boolean lock(long accountId, long otherAccountId) {
+        int stripe = stripeOf(accountId);
+        int otherStripe = stripeOf(otherAccountId);
+        if (stripe == otherStripe) {
+            return lock(stripes[stripe]);
+        }
+        boolean firstContended = lock(stripes[Math.min(stripe, otherStripe)]);
+        boolean secondContended = lock(stripes[Math.max(stripe, otherStripe)]);
+        return otherStripe < stripe ? firstContended : secondContended;
+    }
+
+    void unlock(long accountId, long otherAccountId) {
+        int stripe = stripeOf(accountId);
+        int otherStripe = stripeOf(otherAccountId);
+        if (stripe != otherStripe) {
+            stripes[Math.max(stripe, otherStripe)].unlock();
+        }
+        stripes[Math.min(stripe, otherStripe)].unlock();
+    }
+
+    private static boolean lock(ReentrantLock lock) {
+        if (lock.tryLock()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        LOCK_WAIT.record(System.nanoTime() - start);
+        return true;
+    }
+
+    private int stripeOf(long accountId) {
+        // ids are handed out sequentially, so their low bits already spread them evenly
+        return (int) (accountId ^ (accountId >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,164 @@
+package com.revolut.backend.service;
+
+import com.revolut.backend.domain.TransferRecord;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Committed transfers by id. Sender, recipient, amount, timestamp and version of a transfer are five consecutive
+ * longs in a chunk of a {@link DenseTable}: 40 bytes and no object. An entry is written before its version completes,
+ * so it's seen whole by a reader who finds its version within {@link VersionClock#committed()}. Empty slots have
+ * version 0, entries restored from a snapshot {@link #RESTORED}, committed at any version.
+ * <p>
+ * Only the latest {@code retained} ids are kept: chunks wholly below them are dropped as new ones are started.
+ */
+class TransferIndex implements Serializable {
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int FIELDS = 5;
+    private static final int SENDER = 0;
+    private static final int RECIPIENT = 1;
+    private static final int AMOUNT = 2;
+    private static final int TIMESTAMP = 3;
+    private static final int VERSION = 4;
+    private static final long RESTORED = -1;
+
+    private final DenseTable<long[]> chunks = new DenseTable<>();
+    private final long retained;
+    private final long retainedChunks;
+    private long firstChunk;
+
+    /**
+     * @param retained number of the latest transfer ids kept, at least
+     */
+    TransferIndex(long retained) {
+        if (retained < 1) {
+            throw new IllegalArgumentException("Number of transfers retained must be positive, got " + retained);
+        }
+        this.retained = retained;
+        this.retainedChunks = retained / CHUNK_SIZE + 1;
+    }
+
+    /**
+     * @param version version of the write making the transfer, not completed yet
+     */
+    void put(long transferId, long version, long senderId, long recipientId, long amount, long timestamp) {
+        long chunkIndex = transferId >>> CHUNK_BITS;
+        long[] chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            if (!startChunk(chunkIndex)) {
+                return;
+            }
+            chunk = chunks.computeIfAbsent(chunkIndex, index -> new long[CHUNK_SIZE * FIELDS]);
+        }
+        int offset = offset(transferId);
+        chunk[offset + SENDER] = senderId;
+        chunk[offset + RECIPIENT] = recipientId;
+        chunk[offset + AMOUNT] = amount;
+        chunk[offset + TIMESTAMP] = timestamp;
+        chunk[offset + VERSION] = version;
+    }
+
+    /**
+     * @param committed {@link VersionClock#committed()}, read before calling
+     * @return the transfer, or null if there's none with the id committed
+     */
+    TransferRecord find(long transferId, long committed) {
+        if (transferId < 0) {
+            return null;
+        }
+        long[] chunk = chunks.get(transferId >>> CHUNK_BITS);
+        if (chunk == null) {
+            return null;
+        }
+        int offset = offset(transferId);
+        long version = chunk[offset + VERSION];
+        if (version == 0 || version > committed) {
+            return null;
+        }
+        return new TransferRecord(transferId, chunk[offset + SENDER], chunk[offset + RECIPIENT], chunk[offset + AMOUNT], chunk[offset + TIMESTAMP]);
+    }
+
+    /**
+     * @return whether both hold the same transfers of the retained ids below the id, timestamps aside
+     */
+    boolean sameEntries(TransferIndex other, long toTransferId) {
+        for (long transferId = firstRetained(toTransferId); transferId < toTransferId; transferId++) {
+            long[] chunk = chunks.get(transferId >>> CHUNK_BITS);
+            long[] otherChunk = other.chunks.get(transferId >>> CHUNK_BITS);
+            int offset = offset(transferId);
+            boolean present = chunk != null && chunk[offset + VERSION] != 0;
+            boolean otherPresent = otherChunk != null && otherChunk[offset + VERSION] != 0;
+            if (present != otherPresent || present && (chunk[offset + SENDER] != otherChunk[offset + SENDER]
+                    || chunk[offset + RECIPIENT] != otherChunk[offset + RECIPIENT] || chunk[offset + AMOUNT] != otherChunk[offset + AMOUNT])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the transfers of the retained ids below the id, which must all be committed.
+     */
+    void writeTo(DataOutput out, long toTransferId) throws IOException {
+        long fromTransferId = firstRetained(toTransferId);
+        out.writeLong(fromTransferId);
+        out.writeLong(toTransferId);
+        for (long transferId = fromTransferId; transferId < toTransferId; transferId++) {
+            long[] chunk = chunks.get(transferId >>> CHUNK_BITS);
+            int offset = offset(transferId);
+            boolean present = chunk != null && chunk[offset + VERSION] != 0;
+            out.writeBoolean(present);
+            if (present) {
+                out.writeLong(chunk[offset + SENDER]);
+                out.writeLong(chunk[offset + RECIPIENT]);
+                out.writeLong(chunk[offset + AMOUNT]);
+                out.writeLong(chunk[offset + TIMESTAMP]);
+            }
+        }
+    }
+
+    /**
+     * Adds transfers written by {@link #writeTo(DataOutput, long)}.
+     *
+     * @return the id after the last one written, which the sequence of ids continues from
+     */
+    long readFrom(DataInput in) throws IOException {
+        long fromTransferId = in.readLong();
+        long toTransferId = in.readLong();
+        for (long transferId = fromTransferId; transferId < toTransferId; transferId++) {
+            if (in.readBoolean()) {
+                put(transferId, RESTORED, in.readLong(), in.readLong(), in.readLong(), in.readLong());
+            }
+        }
+        return toTransferId;
+    }
+
+    private long firstRetained(long toTransferId) {
+        return Math.max(0, toTransferId - retained);
+    }
+
+    /**
+     * @return false if the chunk is below the retained ones already, then it's not started
+     */
+    private synchronized boolean startChunk(long chunkIndex) {
+        if (chunkIndex < firstChunk) {
+            return false;
+        }
+        for (; firstChunk < chunkIndex - retainedChunks; firstChunk++) {
+            if (chunks.get(firstChunk) != null) {
+                chunks.put(firstChunk, null);
+            }
+        }
+        return true;
+    }
+
+    private static int offset(long transferId) {
+        return (int) (transferId & CHUNK_MASK) * FIELDS;
+    }
+}
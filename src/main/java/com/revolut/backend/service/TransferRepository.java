@@ -2,113 +2,408 @@ package com.revolut.backend.service;
 
 import com.revolut.backend.api.TransferService;
 import com.revolut.backend.domain.Account;
+import com.revolut.backend.domain.AccountView;
+import com.revolut.backend.domain.AccountsView;
+import com.revolut.backend.domain.IdempotencyKey;
+import com.revolut.backend.domain.Statement;
+import com.revolut.backend.domain.StatementOrder;
+import com.revolut.backend.domain.StatementPage;
 import com.revolut.backend.domain.Transfer;
+import com.revolut.backend.domain.TransferOrder;
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferRecord;
 import com.revolut.backend.domain.TransferStatus;
-import lombok.AllArgsConstructor;
-import lombok.Getter;
 
+import java.io.DataInput;
+import java.io.IOException;
 import java.io.Serializable;
-import java.math.BigDecimal;
-import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Semaphore;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
 
-import static com.revolut.backend.domain.Transfer.incoming;
-import static com.revolut.backend.domain.Transfer.outgoing;
 import static com.revolut.backend.domain.TransferStatus.*;
 
 public class TransferRepository implements TransferService, Serializable {
 
+    private static final int LOCK_STRIPES = 1024;
+    private static final int CLAIM_YIELDS = 16;
+    private static final long MAX_CLAIM_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
     private final AccountLocator accountLocator;
-    private final ConcurrentHashMap<Long, Semaphore> mutexByAccountId = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Long, ConcurrentLinkedQueue<Transfer>> transfersById = new ConcurrentHashMap<>();
+    private final StripedLocks locks = new StripedLocks(LOCK_STRIPES);
+    private final DenseTable<Statement> statementById = new DenseTable<>();
+    private final TransferIndex transferIndex;
+    private final AtomicLong nextTransferId = new AtomicLong();
+    private final LongAdder statementEntries = new LongAdder();
+    private final int hotAfterContendedCredits;
+    private final long hotWindowMillis;
+    private final IdempotencyCache idempotencyCache;
+    private final VersionClock versionClock;
 
     TransferRepository(AccountLocator accountLocator) {
+        this(accountLocator, 0, 0, new IdempotencyCache(1024, TimeUnit.DAYS.toMillis(1)), new TransferIndex(Long.MAX_VALUE), new VersionClock());
+    }
+
+    /**
+     * @param hotAfterContendedCredits number of credits an account waits for its lock within {@code hotWindowMillis}
+     *                                 before it's made hot, 0 never
+     * @param versionClock             numbers writes, transfers along with creations of accounts
+     */
+    TransferRepository(AccountLocator accountLocator, int hotAfterContendedCredits, long hotWindowMillis,
+                       IdempotencyCache idempotencyCache, TransferIndex transferIndex, VersionClock versionClock) {
         this.accountLocator = accountLocator;
+        this.hotAfterContendedCredits = hotAfterContendedCredits;
+        this.hotWindowMillis = hotWindowMillis;
+        this.idempotencyCache = idempotencyCache;
+        this.transferIndex = transferIndex;
+        this.versionClock = versionClock;
     }
 
+    /**
+     * Failures are returned, not thrown: a storm of failing transfers shouldn't spend its time filling in stack traces.
+     */
     @Override
-    public TransferStatus makeTransfer(long senderId, long recipientId, BigDecimal amount) {
-        try {
-            validateTransfer(senderId, recipientId, amount);
-            makeTransfer(getAccount(senderId, INVALID_SENDER), getAccount(recipientId, INVALID_RECIPIENT), amount, senderId);
-            recordTransfer(senderId, recipientId, amount);
-            return TransferStatus.TRANSFERRED;
-        } catch (TransferFailedException e) {
-            return e.getFailureReason();
-        }
+    public TransferStatus makeTransfer(long senderId, long recipientId, long amount) {
+        return makeTransferWithReceipt(senderId, recipientId, amount).getStatus();
     }
 
-    private void validateTransfer(long senderId, long recipientId, BigDecimal amount) throws TransferFailedException {
+    @Override
+    public TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount) {
+        return makeTransferWithReceipt(senderId, recipientId, amount, TransferReceipt.NO_TRANSFER_ID);
+    }
+
+    /**
+     * A transfer without an id takes the next one of the sequence once it's made, so transfers made one at a time get
+     * ids without gaps. One given an id, see {@link #reserveTransferIds(int)}, moves the sequence past it.
+     */
+    @Override
+    public TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount, long transferId) {
         if (senderId == recipientId) {
-            throw createTransferFailedException(INVALID_RECIPIENT);
+            return TransferReceipt.withoutId(INVALID_RECIPIENT);
+        }
+        if (amount <= 0) {
+            return TransferReceipt.withoutId(INVALID_AMOUNT);
+        }
+        Account sender = accountLocator.findAccount(senderId);
+        if (sender == null) {
+            return TransferReceipt.withoutId(INVALID_SENDER);
         }
-        if (amount == null || BigDecimal.ZERO.compareTo(amount) >= 0) {
-            throw createTransferFailedException(INVALID_AMOUNT);
+        Account recipient = accountLocator.findAccount(recipientId);
+        if (recipient == null) {
+            return TransferReceipt.withoutId(INVALID_RECIPIENT);
         }
+        return makeTransfer(sender, recipient, senderId, recipientId, amount, transferId);
     }
 
-    private void makeTransfer(Account sender, Account recipient, BigDecimal amount, long lockId) throws TransferFailedException {
+    /**
+     * Takes ids for transfers about to be journaled; an id taken by a transfer that then fails isn't given to another
+     * one.
+     *
+     * @return the first of {@code count} consecutive ids
+     */
+    long reserveTransferIds(int count) {
+        return nextTransferId.getAndAdd(count);
+    }
+
+    /**
+     * Only transfers up to {@link VersionClock#committed()} are found, like everything else read.
+     */
+    @Override
+    public TransferRecord findTransfer(long transferId) {
+        return transferIndex.find(transferId, versionClock.committed());
+    }
+
+    @Override
+    public TransferStatus makeTransfer(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp) {
+        return makeTransferWithReceipt(senderId, recipientId, amount, key, timestamp).getStatus();
+    }
+
+    @Override
+    public TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp) {
+        return makeTransferWithReceipt(senderId, recipientId, amount, key, timestamp, TransferReceipt.NO_TRANSFER_ID);
+    }
+
+    /**
+     * The key is claimed while the transfer is made, so only retries of the same key wait for it.
+     */
+    @Override
+    public TransferReceipt makeTransferWithReceipt(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp, long transferId) {
+        TransferReceipt original = claim(key, fingerprint(senderId, recipientId, amount), timestamp);
+        if (original != null) {
+            return original;
+        }
+        TransferReceipt receipt;
         try {
-            acquireLock(lockId);
-            if (sender.getBalance().compareTo(amount) < 0) {
-                throw createTransferFailedException(NO_FUNDS);
+            receipt = makeTransferWithReceipt(senderId, recipientId, amount, transferId);
+        } catch (RuntimeException e) {
+            idempotencyCache.release(key.getHigh(), key.getLow());
+            throw e;
+        }
+        idempotencyCache.complete(key.getHigh(), key.getLow(), receipt);
+        return receipt;
+    }
+
+    private TransferReceipt claim(IdempotencyKey key, long fingerprint, long timestamp) {
+        long parkNanos = 1_000;
+        for (int waits = 0; ; waits++) {
+            TransferReceipt original = idempotencyCache.claim(key.getHigh(), key.getLow(), fingerprint, timestamp);
+            if (original != IdempotencyCache.PENDING) {
+                return original;
+            }
+            if (waits < CLAIM_YIELDS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(2 * parkNanos, MAX_CLAIM_PARK_NANOS);
             }
-            sender.withdraw(amount);
-            recipient.deposit(amount);
-        } finally {
-            releaseLock(lockId);
         }
     }
 
-    private Account getAccount(long senderId, TransferStatus statusIfNotFound) throws TransferFailedException {
-        return accountLocator.getAccount(senderId).orElseThrow(() -> createTransferFailedException(statusIfNotFound));
+    @Override
+    public Optional<TransferReceipt> findTransferReceipt(long senderId, long recipientId, long amount, IdempotencyKey key, long timestamp) {
+        return Optional.ofNullable(idempotencyCache.find(key.getHigh(), key.getLow(), fingerprint(senderId, recipientId, amount), timestamp));
+    }
+
+    /**
+     * @return hash of the fields a retry with the same key must repeat
+     */
+    private static long fingerprint(long senderId, long recipientId, long amount) {
+        long hash = senderId * 0x9e3779b97f4a7c15L;
+        hash = (hash ^ recipientId) * 0x9e3779b97f4a7c15L;
+        hash = (hash ^ amount) * 0x9e3779b97f4a7c15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    IdempotencyCache getIdempotencyCache() {
+        return idempotencyCache;
+    }
+
+    @Override
+    public List<TransferStatus> makeTransfers(List<TransferOrder> transfers) {
+        return makeTransfersWithReceipts(transfers).stream().map(TransferReceipt::getStatus).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<TransferReceipt> makeTransfersWithReceipts(List<TransferOrder> transfers) {
+        return makeTransfersWithReceipts(transfers, TransferReceipt.NO_TRANSFER_ID);
+    }
+
+    /**
+     * A transfer given ids is made with the id at its position, null orders included.
+     */
+    @Override
+    public List<TransferReceipt> makeTransfersWithReceipts(List<TransferOrder> transfers, long firstTransferId) {
+        List<TransferReceipt> receipts = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferOrder transfer = transfers.get(i);
+            long transferId = firstTransferId == TransferReceipt.NO_TRANSFER_ID ? TransferReceipt.NO_TRANSFER_ID : firstTransferId + i;
+            receipts.add(transfer == null ? TransferReceipt.withoutId(INVALID_AMOUNT)
+                    : makeTransferWithReceipt(transfer.getSenderId(), transfer.getRecipientId(), transfer.getAmount(), transferId));
+        }
+        return receipts;
     }
 
-    private void acquireLock(long accountId) throws TransferFailedException {
+    /**
+     * Both accounts are locked, so the balance check, both balance changes and the statement entries happen at once.
+     * A hot recipient is credited without taking its lock, credits don't depend on its balance.
+     */
+    private TransferReceipt makeTransfer(Account sender, Account recipient, long senderId, long recipientId, long amount, long transferId) {
+        if (recipient.isHot()) {
+            locks.lock(senderId);
+            try {
+                return transfer(sender, recipient, senderId, recipientId, amount, transferId);
+            } finally {
+                locks.unlock(senderId);
+            }
+        }
+        TransferReceipt receipt;
+        boolean contended = locks.lock(senderId, recipientId);
         try {
-            Semaphore semaphore = mutexByAccountId.computeIfAbsent(accountId, id -> new Semaphore(1));
-            if (!semaphore.tryAcquire(100, TimeUnit.MILLISECONDS)) {
-                throw createTransferFailedException(INTERNAL_ERROR);
+            receipt = transfer(sender, recipient, senderId, recipientId, amount, transferId);
+        } finally {
+            locks.unlock(senderId, recipientId);
+        }
+        if (contended && hotAfterContendedCredits > 0
+                && recipient.recordContendedCredit(System.currentTimeMillis(), hotWindowMillis) >= hotAfterContendedCredits) {
+            recipient.makeHot();
+        }
+        return receipt;
+    }
+
+    private TransferReceipt transfer(Account sender, Account recipient, long senderId, long recipientId, long amount, long transferId) {
+        if (sender.getBalance() < amount) {
+            return TransferReceipt.withoutId(NO_FUNDS);
+        }
+        sender.withdraw(amount);
+        if (!recipient.tryDeposit(amount)) {
+            sender.deposit(amount);
+            return TransferReceipt.withoutId(INVALID_AMOUNT);
+        }
+        return TransferReceipt.transferred(recordTransfer(senderId, recipientId, amount, transferId));
+    }
+
+    /**
+     * Both entries get the same version, taken while both statements are held, so versions never decrease within
+     * a statement, even on a hot account credited without its lock. The transfer is indexed before its version
+     * completes.
+     *
+     * @param transferId id given to the transfer, or {@link TransferReceipt#NO_TRANSFER_ID} to take the next one
+     * @return the transfer's id
+     */
+    private long recordTransfer(long senderId, long recipientId, long amount, long transferId) {
+        Statement senderStatement = statement(senderId);
+        Statement recipientStatement = statement(recipientId);
+        Statement first = senderId < recipientId ? senderStatement : recipientStatement;
+        Statement second = senderId < recipientId ? recipientStatement : senderStatement;
+        synchronized (first) {
+            synchronized (second) {
+                long version = versionClock.begin();
+                try {
+                    long timestamp = System.currentTimeMillis();
+                    long id = takeTransferId(transferId);
+                    senderStatement.append(timestamp, recipientId, -amount, version);
+                    recipientStatement.append(timestamp, senderId, amount, version);
+                    transferIndex.put(id, version, senderId, recipientId, amount, timestamp);
+                    statementEntries.add(2);
+                    return id;
+                } finally {
+                    versionClock.complete(version);
+                }
             }
-        } catch (InterruptedException e) {
-            throw createTransferFailedException(INTERNAL_ERROR);
         }
     }
 
-    private void releaseLock(long accountId) {
-        if (mutexByAccountId.containsKey(accountId)) {
-            mutexByAccountId.get(accountId).release();
+    private long takeTransferId(long transferId) {
+        if (transferId == TransferReceipt.NO_TRANSFER_ID) {
+            return nextTransferId.getAndIncrement();
+        }
+        nextTransferId.accumulateAndGet(transferId + 1, Math::max);
+        return transferId;
+    }
+
+    /**
+     * Reads only entries and accounts already published, without waiting for any lock.
+     */
+    AccountsView readAccounts(long[] accountIds, long version, boolean withStatements) {
+        long committed = versionClock.committed();
+        if (version > committed) {
+            throw new IllegalArgumentException(String.format("Version %d is not committed yet, the latest is %d", version, committed));
+        }
+        long readVersion = version < 0 ? committed : version;
+        List<AccountView> accounts = new ArrayList<>(accountIds.length);
+        for (long accountId : accountIds) {
+            accounts.add(readAccount(accountId, readVersion, withStatements));
         }
+        return new AccountsView(readVersion, accounts);
     }
 
-    private TransferFailedException createTransferFailedException(TransferStatus reason) {
-        return new TransferFailedException(reason);
+    private AccountView readAccount(long accountId, long version, boolean withStatement) {
+        Account account = accountLocator.findAccount(accountId);
+        if (account == null || account.getCreatedVersion() > version) {
+            return AccountView.notFound(accountId);
+        }
+        Statement statement = statementById.get(accountId);
+        int size = statement == null ? 0 : statement.sizeAt(version);
+        long balance = account.getOpeningBalance() + (statement == null ? 0 : statement.netAmount(size));
+        List<Transfer> transfers = null;
+        if (withStatement) {
+            transfers = size > 0 ? statement.getTransfers(0, size) : new ArrayList<>();
+        }
+        return new AccountView(accountId, true, balance, transfers);
     }
 
-    @AllArgsConstructor
-    @Getter
-    private class TransferFailedException extends Exception {
-        private TransferStatus failureReason;
+    long committedVersion() {
+        return versionClock.committed();
     }
 
-    private void recordTransfer(long senderId, long recipientId, BigDecimal amount) {
-        Instant timestamp = Instant.now();
-        statement(senderId).add(outgoing(timestamp, recipientId, amount));
-        statement(recipientId).add(incoming(timestamp, senderId, amount));
+    Statement statement(long accountId) {
+        return statementById.computeIfAbsent(accountId, id -> new Statement());
     }
 
-    private ConcurrentLinkedQueue<Transfer> statement(long accountId) {
-        return transfersById.computeIfAbsent(accountId, id -> new ConcurrentLinkedQueue<>());
+    /**
+     * Counted as entries are appended rather than by walking every statement.
+     */
+    long statementEntryCount() {
+        return statementEntries.sum();
+    }
+
+    long nextTransferId() {
+        return nextTransferId.get();
+    }
+
+    TransferIndex getTransferIndex() {
+        return transferIndex;
+    }
+
+    /**
+     * Adds transfers written by {@link TransferIndex#writeTo}, continuing the sequence of ids after them.
+     */
+    void restoreTransfers(DataInput in) throws IOException {
+        nextTransferId.set(transferIndex.readFrom(in));
+    }
+
+    /**
+     * Counts entries restored from a snapshot, see {@link #statementEntryCount()}.
+     */
+    void countRestoredEntries(int entries) {
+        statementEntries.add(entries);
+    }
+
+    /**
+     * @return the statement, or null if the account has made no transfers
+     */
+    Statement findStatement(long accountId) {
+        return statementById.get(accountId);
     }
 
     @Override
     public List<Transfer> getStatement(long accountId) {
-        accountLocator.validateAccountId(accountId);
-        return new ArrayList<>(statement(accountId));
+        Statement statement = statementById.get(accountId);
+        if (statement == null) {
+            accountLocator.validateAccountId(accountId);
+            return new ArrayList<>();
+        }
+        return statement.getTransfers();
+    }
+
+    @Override
+    public StatementPage getStatement(long accountId, int cursor, int limit, StatementOrder order) {
+        StatementPage page = findStatementPage(accountId, cursor, limit, order);
+        if (page == null) {
+            accountLocator.validateAccountId(accountId);
+        }
+        return page;
+    }
+
+    /**
+     * A statement is only created for an existing account, so the account is looked up only if it has none.
+     */
+    @Override
+    public StatementPage findStatementPage(long accountId, int cursor, int limit, StatementOrder order) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit must be positive, got " + limit);
+        }
+        Statement statement = statementById.get(accountId);
+        if (statement == null && accountLocator.findAccount(accountId) == null) {
+            return null;
+        }
+        int size = statement == null ? 0 : statement.size();
+        if (order == StatementOrder.NEWEST_FIRST) {
+            int to = cursor < 0 ? size : Math.min(cursor, size);
+            int from = Math.max(0, to - limit);
+            List<Transfer> transfers = from < to ? statement.getTransfers(from, to) : new ArrayList<>();
+            Collections.reverse(transfers);
+            return new StatementPage(transfers, from > 0 ? from : StatementPage.NO_MORE_ENTRIES);
+        }
+        int from = cursor < 0 ? 0 : Math.min(cursor, size);
+        int to = (int) Math.min((long) from + limit, size);
+        List<Transfer> transfers = from < to ? statement.getTransfers(from, to) : new ArrayList<>();
+        return new StatementPage(transfers, to < size ? to : StatementPage.NO_MORE_ENTRIES);
     }
 }
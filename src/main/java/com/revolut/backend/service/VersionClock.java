@@ -0,0 +1,60 @@
+package com.revolut.backend.service;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Numbers writes. Writes may finish out of order, so readers are given {@link #committed()}, the highest version
+ * finished along with all the ones before it. Finished versions are marked in a ring; a write a whole ring ahead of
+ * the oldest unfinished one waits for it. Every {@link #begin()} must be followed by {@link #complete(long)} in a
+ * finally block, or {@link #committed()} and, a ring later, every writer are held back.
+ */
+class VersionClock implements Serializable {
+
+    private static final AtomicLongFieldUpdater<VersionClock> COMMITTED = AtomicLongFieldUpdater.newUpdater(VersionClock.class, "committed");
+    private static final int SLOTS = 1 << 16;
+    private static final int YIELDS = 64;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong last = new AtomicLong();
+    private final AtomicLongArray finished = new AtomicLongArray(SLOTS);
+    private volatile long committed;
+
+    /**
+     * @return version of a write about to be made
+     */
+    long begin() {
+        long version = last.incrementAndGet();
+        long parkNanos = 1_000;
+        for (int waits = 0; version - committed > SLOTS; waits++) {
+            if (waits < YIELDS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(2 * parkNanos, MAX_PARK_NANOS);
+            }
+        }
+        return version;
+    }
+
+    void complete(long version) {
+        finished.set(slot(version), version);
+        long current;
+        while (finished.get(slot((current = committed) + 1)) == current + 1) {
+            // whoever fails here lost to another thread moving the version on, and tries the next one
+            COMMITTED.compareAndSet(this, current, current + 1);
+        }
+    }
+
+    long committed() {
+        return committed;
+    }
+
+    private static int slot(long version) {
+        return (int) (version & (SLOTS - 1));
+    }
+}
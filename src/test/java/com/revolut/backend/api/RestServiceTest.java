@@ -1,6 +1,11 @@
 package com.revolut.backend.api;
 
 import com.revolut.backend.domain.TransferStatus;
+import com.revolut.backend.server.dto.AccountsSnapshot;
+import com.revolut.backend.server.dto.MakeTransfer;
+import com.revolut.backend.server.dto.PagedStatement;
+import com.revolut.backend.server.dto.StatementEntry;
+import com.revolut.backend.server.dto.TransferDetails;
 import com.revolut.backend.utils.TestServerRunner;
 import com.revolut.backend.utils.TestUtils;
 import org.junit.jupiter.api.Assertions;
@@ -8,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -18,6 +24,7 @@ import static com.revolut.backend.utils.TestUtils.amount;
 import static com.revolut.backend.utils.TestUtils.assertEquals;
 import static com.revolut.backend.utils.TestWebServer.webServer;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(TestServerRunner.class)
 class RestServiceTest {
@@ -39,7 +46,53 @@ class RestServiceTest {
         //when
         BigDecimal actualBalance = restClient().checkBalance(id);
         //then
-        Assertions.assertEquals(initialBalance, actualBalance);
+        assertEquals(initialBalance, actualBalance);
+    }
+
+    @Test
+    void shouldNotFindBalanceOfUnknownAccount() {
+        //when
+        int statusCode = restClient().checkBalanceStatusCode(9999);
+        //then
+        assertEquals(404, statusCode);
+    }
+
+    @Test
+    void shouldNotFindBalanceOfMalformedAccountId() {
+        //when
+        int statusCode = restClient().checkBalanceStatusCode("abc");
+        //then
+        assertEquals(404, statusCode);
+    }
+
+    @Test
+    void transferShouldBeFoundAtItsLocation() {
+        //given
+        long senderId = restClient().createAccount(BigDecimal.TEN);
+        long recipientId = restClient().createAccount(BigDecimal.ZERO);
+        //when
+        String location = restClient().makeTransferForLocation(senderId, recipientId, BigDecimal.ONE);
+        TransferDetails transfer = restClient().getTransfer(location);
+        //then
+        assertEquals(senderId, transfer.getSenderId());
+        assertEquals(recipientId, transfer.getRecipientId());
+        assertEquals(0, BigDecimal.ONE.compareTo(transfer.getAmount()));
+        assertEquals(location, "/services/transfer/" + transfer.getTransferId());
+    }
+
+    @Test
+    void metricsShouldCountTransfersAndTimeEndpoints() {
+        //given
+        long senderId = restClient().createAccount(BigDecimal.TEN);
+        long recipientId = restClient().createAccount(BigDecimal.ZERO);
+        restClient().makeTransfer(senderId, recipientId, BigDecimal.ONE);
+        //when
+        String metrics = restClient().scrapeMetrics();
+        //then
+        assertTrue(metrics.contains("mte_transfers_total{status=\"transferred\"}"));
+        assertTrue(metrics.contains("mte_http_request_duration_seconds_count{endpoint=\"transfer_make\"}"));
+        assertTrue(metrics.contains("# TYPE mte_write_queue_depth gauge"));
+        assertTrue(metrics.contains("mte_statement_entries "));
     }
 
     @Test
@@ -89,6 +142,11 @@ class RestServiceTest {
         assertEquals(TransferStatus.INVALID_AMOUNT, makeTransferWithAmount(amount(-0.1)));
     }
 
+    @Test
+    void shouldNotAllowForAmountBeyondEngineScale() {
+        assertEquals(TransferStatus.INVALID_AMOUNT, makeTransferWithAmount(amount(0.00001)));
+    }
+
     private TransferStatus makeTransferWithAmount(BigDecimal amount) {
         long senderId = restClient().createAccount();
         long recipientId = restClient().createAccount();
@@ -129,6 +187,60 @@ class RestServiceTest {
         findTransferInStatements(senderId, recipientId, transferAmount);
     }
 
+    @Test
+    void shouldNotRepeatTransferRetriedWithSameIdempotencyKey() {
+        //given
+        long senderId = restClient().createAccount(amount(10));
+        long recipientId = restClient().createAccount();
+        String idempotencyKey = "retry-" + senderId;
+        //when
+        TransferStatus first = restClient().makeTransfer(senderId, recipientId, amount(7), idempotencyKey);
+        TransferStatus retry = restClient().makeTransfer(senderId, recipientId, amount(7), idempotencyKey);
+        TransferStatus other = restClient().makeTransfer(senderId, recipientId, amount(7), idempotencyKey + "-other");
+        //then
+        assertEquals(TransferStatus.TRANSFERRED, first);
+        assertEquals(TransferStatus.TRANSFERRED, retry);
+        assertEquals(TransferStatus.NO_FUNDS, other);
+        assertEquals(amount(3), restClient().checkBalance(senderId));
+        Assertions.assertEquals(1, restClient().getStatement(recipientId).size());
+    }
+
+    @Test
+    void shouldRejectRetryChangingTransferOfItsIdempotencyKey() {
+        //given
+        long senderId = restClient().createAccount(amount(10));
+        long otherSenderId = restClient().createAccount(amount(10));
+        long recipientId = restClient().createAccount();
+        restClient().makeTransfer(senderId, recipientId, amount(2), "order-1");
+        //when
+        TransferStatus otherAmount = restClient().makeTransfer(senderId, recipientId, amount(3), "order-1");
+        TransferStatus otherSender = restClient().makeTransfer(otherSenderId, recipientId, amount(3), "order-1");
+        //then
+        assertEquals(TransferStatus.IDEMPOTENCY_CONFLICT, otherAmount);
+        assertEquals(TransferStatus.TRANSFERRED, otherSender);
+        assertEquals(amount(8), restClient().checkBalance(senderId));
+        assertEquals(amount(5), restClient().checkBalance(recipientId));
+    }
+
+    @Test
+    void accountsShouldBeReadAsOfOneVersion() {
+        //given
+        long accountId = restClient().createAccount(amount(100));
+        long otherAccountId = restClient().createAccount(amount(5));
+        restClient().makeTransfer(accountId, otherAccountId, amount(30));
+        AccountsSnapshot before = restClient().readAccounts(false, null, accountId, otherAccountId);
+        //when
+        restClient().makeTransfer(otherAccountId, accountId, amount(10));
+        AccountsSnapshot again = restClient().readAccounts(true, before.getVersion(), accountId, otherAccountId, 999_999);
+        //then
+        assertEquals(before.getVersion(), again.getVersion());
+        assertEquals(amount(70), again.getAccounts().get(0).getBalance());
+        assertEquals(amount(35), again.getAccounts().get(1).getBalance());
+        Assertions.assertEquals(1, again.getAccounts().get(1).getStatement().size());
+        Assertions.assertNull(again.getAccounts().get(2).getBalance());
+        Assertions.assertNull(before.getAccounts().get(0).getStatement());
+    }
+
     @Test
     void balancesAndStatementsShouldReflectAllTransactions() {
         //given
@@ -170,21 +282,79 @@ class RestServiceTest {
         Assertions.assertEquals(numTransfers, restClient().getStatement(bankrupt).size());
     }
 
+    @Test
+    void batchShouldApplyTransfersInOrderAndReportEachStatus() {
+        //given
+        long accountId = restClient().createAccount(amount(10));
+        long otherAccountId = restClient().createAccount(amount(0));
+        //when
+        List<TransferStatus> statuses = restClient().makeTransfers(Arrays.asList(
+                new MakeTransfer(accountId, otherAccountId, amount(10)),
+                new MakeTransfer(otherAccountId, 9999, amount(1)),
+                new MakeTransfer(otherAccountId, accountId, amount(4)),
+                new MakeTransfer(otherAccountId, accountId, null),
+                new MakeTransfer(otherAccountId, accountId, amount(7))));
+        //then
+        Assertions.assertEquals(Arrays.asList(TransferStatus.TRANSFERRED, TransferStatus.INVALID_RECIPIENT, TransferStatus.TRANSFERRED, TransferStatus.INVALID_AMOUNT, TransferStatus.NO_FUNDS), statuses);
+        assertEquals(amount(4), restClient().checkBalance(accountId));
+        assertEquals(amount(6), restClient().checkBalance(otherAccountId));
+        Assertions.assertEquals(2, restClient().getStatement(accountId).size());
+    }
+
+    @Test
+    void statementShouldBeReadPageByPage() {
+        //given
+        long accountId = restClient().createAccount(amount(100));
+        long otherAccountId = restClient().createAccount();
+        IntStream.rangeClosed(1, 5).forEach(i -> restClient().makeTransfer(accountId, otherAccountId, amount(i)));
+        //when
+        PagedStatement firstPage = restClient().getStatementPage(accountId, null, 2, "asc");
+        PagedStatement secondPage = restClient().getStatementPage(accountId, firstPage.getNextCursor(), 2, "asc");
+        PagedStatement lastPage = restClient().getStatementPage(accountId, secondPage.getNextCursor(), 2, "asc");
+        PagedStatement newestFirst = restClient().getStatementPage(accountId, null, 2, "desc");
+        //then
+        Assertions.assertEquals(2, firstPage.getEntries().size());
+        assertEquals(amount(-1), firstPage.getEntries().get(0).getBalance());
+        assertEquals(amount(-3), secondPage.getEntries().get(0).getBalance());
+        Assertions.assertEquals(1, lastPage.getEntries().size());
+        assertEquals(amount(-5), lastPage.getEntries().get(0).getBalance());
+        Assertions.assertNull(lastPage.getNextCursor());
+        assertEquals(amount(-5), newestFirst.getEntries().get(0).getBalance());
+        assertEquals(amount(-4), newestFirst.getEntries().get(1).getBalance());
+    }
+
+    @Test
+    void streamedStatementShouldContainAllEntries() {
+        //given
+        long accountId = restClient().createAccount(amount(100));
+        long otherAccountId = restClient().createAccount();
+        IntStream.rangeClosed(1, 3).forEach(i -> restClient().makeTransfer(accountId, otherAccountId, amount(i)));
+        //when
+        List<StatementEntry> json = restClient().getStreamedStatement(otherAccountId, "json");
+        List<StatementEntry> ndjson = restClient().getStreamedStatement(otherAccountId, "ndjson");
+        //then
+        Assertions.assertEquals(3, json.size());
+        Assertions.assertEquals(3, ndjson.size());
+        assertEquals(amount(3), json.get(2).getBalance());
+        assertEquals(amount(3), ndjson.get(2).getBalance());
+        Assertions.assertEquals(accountId, ndjson.get(0).getParty());
+    }
+
     @Test
     void dataShouldBeAvailableAfterServerRestart() throws Exception {
         final long account1Id = restClient().createAccount(amount(10000));
         final long account2Id = restClient().createAccount(amount(34523.67));
 
         webServer().restartServerAndDatabase();
-        Assertions.assertEquals(amount(34523.67), restClient().checkBalance(account2Id));
-        Assertions.assertEquals(amount(10000), restClient().checkBalance(account1Id));
+        assertEquals(amount(34523.67), restClient().checkBalance(account2Id));
+        assertEquals(amount(10000), restClient().checkBalance(account1Id));
         Assertions.assertTrue(restClient().getStatement(account1Id).isEmpty());
         Assertions.assertTrue(restClient().getStatement(account2Id).isEmpty());
 
         restClient().makeTransfer(account1Id, account2Id, amount(123.45));
         webServer().restartServerAndDatabase();
-        Assertions.assertEquals(amount(9876.55), restClient().checkBalance(account1Id));
-        Assertions.assertEquals(amount(34647.12), restClient().checkBalance(account2Id));
+        assertEquals(amount(9876.55), restClient().checkBalance(account1Id));
+        assertEquals(amount(34647.12), restClient().checkBalance(account2Id));
         findTransferInStatements(account1Id, account2Id, amount(123.45));
     }
 
@@ -2,20 +2,25 @@ package com.revolut.backend.domain;
 
 import org.junit.jupiter.api.Test;
 
-import java.math.BigDecimal;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import static com.revolut.backend.utils.TestUtils.amount;
-import static com.revolut.backend.utils.TestUtils.assertEquals;
+import static com.revolut.backend.utils.TestUtils.minorUnits;
+import static com.revolut.backend.utils.TestUtils.runConcurrently;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class AccountTest {
 
     @Test
     void instanceShouldBeCreatedWithInitialBalance() {
-        final BigDecimal initialBalance = amount(12.34);
+        final long initialBalance = minorUnits(12.34);
         //given
         Account account = new Account(initialBalance);
         //when
-        BigDecimal balance = account.getBalance();
+        long balance = account.getBalance();
         //then
         assertEquals(initialBalance, balance);
     }
@@ -23,22 +28,85 @@ class AccountTest {
     @Test
     void depositShouldAddGivenAmountToBalance() {
         //given
-        Account account = new Account(amount(178.5));
+        Account account = new Account(minorUnits(178.5));
         //when
-        account.deposit(amount(1330.01));
-        BigDecimal finalBalance = account.getBalance();
+        account.deposit(minorUnits(1330.01));
+        long finalBalance = account.getBalance();
         //then
-        assertEquals(amount(1508.51), finalBalance);
+        assertEquals(minorUnits(1508.51), finalBalance);
     }
 
     @Test
     void withdrawShouldSubtractGivenAmountFromBalance() {
         //given
-        Account account = new Account(amount(4500.43));
+        Account account = new Account(minorUnits(4500.43));
         //when
-        account.withdraw(amount(499.99));
-        BigDecimal finalBalance = account.getBalance();
+        account.withdraw(minorUnits(499.99));
+        long finalBalance = account.getBalance();
         //then
-        assertEquals(amount(4000.44), finalBalance);
+        assertEquals(minorUnits(4000.44), finalBalance);
     }
-}
\ No newline at end of file
+
+    @Test
+    void depositShouldThrowOnOverflowAndKeepBalance() {
+        //given
+        Account account = new Account(Long.MAX_VALUE - 1);
+        //when
+        assertThrows(ArithmeticException.class, () -> account.deposit(2));
+        //then
+        assertEquals(Long.MAX_VALUE - 1, account.getBalance());
+    }
+
+    @Test
+    void tryDepositShouldTellAboutOverflowAndKeepBalance() {
+        //given
+        Account account = new Account(Long.MAX_VALUE - 1);
+        //when
+        boolean deposited = account.tryDeposit(2);
+        //then
+        assertFalse(deposited);
+        assertEquals(Long.MAX_VALUE - 1, account.getBalance());
+    }
+
+    @Test
+    void hotAccountShouldSumConcurrentCreditsExactly() {
+        //given
+        Account account = new Account(minorUnits(10));
+        account.makeHot();
+        //when
+        runConcurrently(IntStream.range(0, 20).boxed()
+                .map(i -> (Runnable) () -> IntStream.range(0, 500).forEach(j -> account.deposit(1)))
+                .collect(Collectors.toList()));
+        account.withdraw(minorUnits(10) + 9_000);
+        //then
+        assertTrue(account.isHot());
+        assertEquals(1_000, account.getBalance());
+    }
+
+    @Test
+    void accountShouldKeepBalanceWhenMadeHot() {
+        //given
+        Account account = new Account(minorUnits(50));
+        account.deposit(minorUnits(25));
+        //when
+        account.makeHot();
+        account.deposit(minorUnits(5));
+        account.withdraw(minorUnits(70));
+        //then
+        assertEquals(minorUnits(10), account.getBalance());
+    }
+
+    @Test
+    void contendedCreditsShouldBeCountedWithinWindowOnly() {
+        //given
+        Account account = new Account(0);
+        //when
+        account.recordContendedCredit(1000, 100);
+        account.recordContendedCredit(1050, 100);
+        int withinWindow = account.recordContendedCredit(1100, 100);
+        int afterWindow = account.recordContendedCredit(1101, 100);
+        //then
+        assertEquals(3, withinWindow);
+        assertEquals(1, afterWindow);
+    }
+}
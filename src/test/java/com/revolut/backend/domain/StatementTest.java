@@ -0,0 +1,74 @@
+package com.revolut.backend.domain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementTest {
+
+    @Test
+    void newStatementShouldBeEmpty() {
+        Statement statement = new Statement();
+        assertEquals(0, statement.size());
+        assertTrue(statement.getTransfers().isEmpty());
+    }
+
+    @Test
+    void entriesShouldBeReadBackInOrderAcrossChunks() {
+        final int numOfEntries = 20_000;
+        //given
+        Statement statement = new Statement();
+        //when
+        for (int i = 0; i < numOfEntries; i++) {
+            statement.append(1_000L + i, i % 7, i % 2 == 0 ? i : -i);
+        }
+        //then
+        List<Transfer> transfers = statement.getTransfers();
+        assertEquals(numOfEntries, transfers.size());
+        for (int i = 0; i < numOfEntries; i++) {
+            Transfer transfer = transfers.get(i);
+            Assertions.assertEquals(1_000L + i, transfer.getTimestamp().toEpochMilli());
+            Assertions.assertEquals(i % 7, transfer.getParty());
+            Assertions.assertEquals(i % 2 == 0 ? i : -i, transfer.getBalance());
+        }
+    }
+
+    @Test
+    void rangeShouldContainOnlyRequestedEntries() {
+        //given
+        Statement statement = new Statement();
+        for (int i = 0; i < 10; i++) {
+            statement.append(i, i, i);
+        }
+        //when
+        List<Transfer> transfers = statement.getTransfers(3, 6);
+        //then
+        assertEquals(3, transfers.size());
+        Assertions.assertEquals(3, transfers.get(0).getParty());
+        Assertions.assertEquals(5, transfers.get(2).getParty());
+    }
+
+    @Test
+    void sizeAtVersionShouldCountEntriesUpToIt() {
+        //given
+        Statement statement = new Statement();
+        for (int i = 0; i < 100; i++) {
+            statement.append(i, i, 10, 2L * i + 1);
+        }
+        //when
+        int beforeAll = statement.sizeAt(0);
+        int upToFiftieth = statement.sizeAt(100);
+        int all = statement.sizeAt(Long.MAX_VALUE);
+        //then
+        assertEquals(0, beforeAll);
+        assertEquals(50, upToFiftieth);
+        assertEquals(100, all);
+        assertEquals(0, statement.netAmount(beforeAll));
+        assertEquals(500, statement.netAmount(upToFiftieth));
+        assertEquals(1000, statement.netAmount(all));
+    }
+}
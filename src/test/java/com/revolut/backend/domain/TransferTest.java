@@ -3,10 +3,9 @@ package com.revolut.backend.domain;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
-import java.math.BigDecimal;
 import java.time.Instant;
 
-import static com.revolut.backend.utils.TestUtils.amount;
+import static com.revolut.backend.utils.TestUtils.minorUnits;
 import static org.junit.jupiter.api.Assertions.*;
 
 class TransferTest {
@@ -16,13 +15,13 @@ class TransferTest {
         //given
         final Instant timestamp = Instant.now();
         final long party = 1;
-        final BigDecimal amount = amount(123.45);
+        final long amount = minorUnits(123.45);
         //when
-        Transfer transfer = Transfer.outgoing(Instant.now(), party, amount);
+        Transfer transfer = Transfer.outgoing(timestamp, party, amount);
         //then
         Assertions.assertEquals(timestamp, transfer.getTimestamp());
         Assertions.assertEquals(party, transfer.getParty());
-        assertEquals(amount.negate(), transfer.getBalance());
+        Assertions.assertEquals(-amount, transfer.getBalance());
     }
 
     @Test
@@ -30,12 +29,12 @@ class TransferTest {
         //given
         final Instant timestamp = Instant.now();
         final long party = 0;
-        final BigDecimal amount = amount(99.99);
+        final long amount = minorUnits(99.99);
         //when
-        Transfer transfer = Transfer.incoming(Instant.now(), party, amount);
+        Transfer transfer = Transfer.incoming(timestamp, party, amount);
         //then
         Assertions.assertEquals(timestamp, transfer.getTimestamp());
         Assertions.assertEquals(party, transfer.getParty());
-        assertEquals(amount, transfer.getBalance());
+        Assertions.assertEquals(amount, transfer.getBalance());
     }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.revolut.backend.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+
+    @Test
+    void durationsShouldFallIntoBucketsOfPowersOfTwoMicros() {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(0, LatencyHistogram.bucketOf(1_000));
+        assertEquals(1, LatencyHistogram.bucketOf(1_001));
+        assertEquals(2, LatencyHistogram.bucketOf(4_000));
+        assertEquals(3, LatencyHistogram.bucketOf(4_001));
+        assertEquals(LatencyHistogram.BOUNDED_BUCKETS, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    void scrapeShouldWriteCumulativeBuckets() {
+        //given
+        Metrics metrics = new Metrics();
+        LatencyHistogram histogram = metrics.histogram("test_seconds", "Test durations", "endpoint", "test");
+        //when
+        histogram.record(500);
+        histogram.record(3_000);
+        histogram.record(3_000_000);
+        String scraped = metrics.scrape();
+        //then
+        assertTrue(scraped.contains("# HELP test_seconds Test durations\n# TYPE test_seconds histogram\n"));
+        assertTrue(scraped.contains("test_seconds_bucket{endpoint=\"test\",le=\"0.000001\"} 1\n"));
+        assertTrue(scraped.contains("test_seconds_bucket{endpoint=\"test\",le=\"0.000004\"} 2\n"));
+        assertTrue(scraped.contains("test_seconds_bucket{endpoint=\"test\",le=\"0.002048\"} 2\n"));
+        assertTrue(scraped.contains("test_seconds_bucket{endpoint=\"test\",le=\"0.004096\"} 3\n"));
+        assertTrue(scraped.contains("test_seconds_bucket{endpoint=\"test\",le=\"+Inf\"} 3\n"));
+        assertTrue(scraped.contains("test_seconds_sum{endpoint=\"test\"} 0.0030035\n"));
+        assertTrue(scraped.contains("test_seconds_count{endpoint=\"test\"} 3\n"));
+    }
+
+    @Test
+    void registeringAgainShouldKeepCountersAndReplaceGauges() {
+        //given
+        Metrics metrics = new Metrics();
+        LongAdder counter = metrics.counter("test_total", "Test events", "status", "ok");
+        metrics.gauge("test_size", "Test size", () -> 1);
+        //when
+        counter.add(2);
+        LongAdder again = metrics.counter("test_total", "Test events", "status", "ok");
+        metrics.gauge("test_size", "Test size", () -> 7);
+        String scraped = metrics.scrape();
+        //then
+        assertSame(counter, again);
+        assertTrue(scraped.contains("# TYPE test_total counter\ntest_total{status=\"ok\"} 2\n"));
+        assertTrue(scraped.contains("# TYPE test_size gauge\ntest_size 7\n"));
+    }
+
+    @Test
+    void metricShouldKeepItsType() {
+        //given
+        Metrics metrics = new Metrics();
+        metrics.counter("test_total", "Test events");
+        //when then
+        assertThrows(IllegalArgumentException.class, () -> metrics.gauge("test_total", "Test events", () -> 0));
+    }
+}
@@ -0,0 +1,331 @@
+package com.revolut.backend.persistence.journal;
+
+import com.revolut.backend.domain.IdempotencyKey;
+import com.revolut.backend.domain.TransferOrder;
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferStatus;
+import com.revolut.backend.persistence.BatchCommand;
+import com.revolut.backend.persistence.DurabilityLevel;
+import com.revolut.backend.persistence.MakeTransferCommand;
+import com.revolut.backend.persistence.MakeTransfersCommand;
+import com.revolut.backend.persistence.PersistenceProxyService;
+import com.revolut.backend.persistence.ServiceCommand;
+import com.revolut.backend.service.CoreService;
+import com.revolut.backend.service.ServiceState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.revolut.backend.ConfigurationProperties.configuration;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedJournalPersistenceProviderTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    private Path folder;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        folder = Files.createTempDirectory("test_mte_journal_");
+    }
+
+    @Test
+    void stateShouldBeRecoveredFromJournal() {
+        //given
+        MappedJournalPersistenceProvider provider = open(DurabilityLevel.SYNC);
+        PersistenceProxyService service = new PersistenceProxyService(provider);
+        long senderId = service.createAccount(1000);
+        long recipientId = service.createAccount(0);
+        service.makeTransfer(senderId, recipientId, 300);
+        service.makeTransfers(Arrays.asList(new TransferOrder(recipientId, senderId, 100), null, new TransferOrder(senderId, recipientId, 5000)));
+        provider.close();
+        //when
+        PersistenceProxyService recovered = new PersistenceProxyService(open(DurabilityLevel.SYNC));
+        //then
+        assertEquals(800, recovered.checkBalance(senderId));
+        assertEquals(200, recovered.checkBalance(recipientId));
+        assertEquals(2, recovered.getStatement(senderId).size());
+        assertEquals(2, recovered.createAccount(0));
+    }
+
+    @Test
+    void journalShouldRollOverToNewSegments() throws IOException {
+        //given
+        MappedJournalPersistenceProvider provider = open(DurabilityLevel.GROUP);
+        PersistenceProxyService service = new PersistenceProxyService(provider);
+        long senderId = service.createAccount(1_000_000);
+        long recipientId = service.createAccount(0);
+        //when
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(TransferStatus.TRANSFERRED, service.makeTransfer(senderId, recipientId, 1));
+        }
+        provider.close();
+        PersistenceProxyService recovered = new PersistenceProxyService(open(DurabilityLevel.GROUP));
+        //then
+        assertTrue(segments().size() > 1);
+        assertEquals(1000, recovered.checkBalance(recipientId));
+        assertEquals(1000, recovered.getStatement(recipientId).size());
+    }
+
+    @Test
+    void tornRecordShouldBeCutOffOnRecovery() throws IOException {
+        //given
+        MappedJournalPersistenceProvider provider = open(DurabilityLevel.SYNC);
+        PersistenceProxyService service = new PersistenceProxyService(provider);
+        long senderId = service.createAccount(1000);
+        long recipientId = service.createAccount(0);
+        service.makeTransfer(senderId, recipientId, 300);
+        service.makeTransfer(senderId, recipientId, 200);
+        provider.close();
+        // flip a byte in the amount of the last transfer, as if the crash hit in the middle of writing it
+        long lastRecordAmountOffset = 2 * (MappedJournal.HEADER_SIZE + 9) + 2 * (MappedJournal.HEADER_SIZE + 33) - 2 * Long.BYTES;
+        try (RandomAccessFile segment = new RandomAccessFile(segments().get(0).toFile(), "rw")) {
+            segment.seek(lastRecordAmountOffset);
+            segment.write(0x7f);
+        }
+        //when
+        PersistenceProxyService recovered = new PersistenceProxyService(open(DurabilityLevel.SYNC));
+        //then
+        assertEquals(700, recovered.checkBalance(senderId));
+        assertEquals(300, recovered.checkBalance(recipientId));
+        //when
+        recovered.makeTransfer(senderId, recipientId, 100);
+        PersistenceProxyService recoveredAgain = new PersistenceProxyService(open(DurabilityLevel.SYNC));
+        //then
+        assertEquals(400, recoveredAgain.checkBalance(recipientId));
+    }
+
+    @Test
+    void recoveryShouldReplayOnlyJournalAfterLatestSnapshot() throws IOException {
+        //given
+        MappedJournalPersistenceProvider provider = open(DurabilityLevel.SYNC);
+        PersistenceProxyService service = new PersistenceProxyService(provider);
+        long senderId = service.createAccount(1_000_000);
+        long recipientId = service.createAccount(0);
+        for (int i = 0; i < 500; i++) {
+            service.makeTransfer(senderId, recipientId, 1);
+        }
+        provider.takeSnapshot();
+        service.makeTransfer(senderId, recipientId, 10);
+        service.createAccount(5);
+        provider.close();
+        //when
+        MappedJournalPersistenceProvider recoveredProvider = open(DurabilityLevel.SYNC);
+        PersistenceProxyService recovered = new PersistenceProxyService(recoveredProvider);
+        //then
+        assertEquals(2, recoveredProvider.getReplayedRecords());
+        assertEquals(1_000_000 - 510, recovered.checkBalance(senderId));
+        assertEquals(510, recovered.checkBalance(recipientId));
+        assertEquals(510, recovered.readAccounts(new long[]{recipientId}, -1, false).getAccounts().get(0).getBalance());
+        assertEquals(5, recovered.checkBalance(2));
+        assertEquals(501, recovered.getStatement(recipientId).size());
+        assertEquals(recipientId, recovered.getStatement(senderId).get(0).getParty());
+        assertEquals(1, segments().stream().filter(file -> file.getFileName().toString().startsWith("snapshot-")).count());
+        assertTrue(segments().stream().filter(file -> file.getFileName().toString().startsWith("journal-")).count() < 5);
+    }
+
+    @Test
+    void snapshotTakenDuringWritesShouldMatchJournal() {
+        //given
+        MappedJournalPersistenceProvider provider = open(DurabilityLevel.ASYNC);
+        PersistenceProxyService service = new PersistenceProxyService(provider);
+        int accounts = 10;
+        for (int i = 0; i < accounts; i++) {
+            service.createAccount(1000);
+        }
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                service.makeTransfer(i % accounts, (i + 1) % accounts, 1 + i % 7);
+            }
+        });
+        //when
+        writer.start();
+        provider.takeSnapshot();
+        joinUninterruptibly(writer);
+        long[] balances = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            balances[i] = service.checkBalance(i);
+        }
+        provider.close();
+        PersistenceProxyService recovered = new PersistenceProxyService(open(DurabilityLevel.SYNC));
+        //then
+        for (int i = 0; i < accounts; i++) {
+            assertEquals(balances[i], recovered.checkBalance(i));
+        }
+    }
+
+    @Test
+    void commandsOfConcurrentWritersShouldReplayToLiveState() {
+        //given
+        MappedJournalPersistenceProvider provider = open(DurabilityLevel.SYNC);
+        PersistenceProxyService service = new PersistenceProxyService(provider);
+        int accounts = 8;
+        for (int i = 0; i < accounts; i++) {
+            service.createAccount(100);
+        }
+        List<Thread> writers = new ArrayList<>();
+        for (int writer = 0; writer < 4; writer++) {
+            int offset = writer;
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    if (i % 100 == 0) {
+                        service.createAccount(10);
+                    }
+                    service.makeTransfer((i + offset) % accounts, (3 * i + offset + 1) % accounts, 1 + i % 40);
+                }
+            }));
+        }
+        //when
+        writers.forEach(Thread::start);
+        provider.takeSnapshot();
+        writers.forEach(MappedJournalPersistenceProviderTest::joinUninterruptibly);
+        ServiceState live = ((CoreService) provider.liveService()).captureState();
+        provider.close();
+        MappedJournalPersistenceProvider recovered = open(DurabilityLevel.SYNC);
+        //then
+        assertEquals(Optional.empty(), live.findDifference(((CoreService) recovered.liveService()).captureState()));
+    }
+
+    @Test
+    void idempotencyKeysShouldBeRecoveredFromJournalAndSnapshot() {
+        //given
+        MappedJournalPersistenceProvider provider = open(DurabilityLevel.SYNC);
+        PersistenceProxyService service = new PersistenceProxyService(provider);
+        long senderId = service.createAccount(1000);
+        long recipientId = service.createAccount(0);
+        IdempotencyKey first = IdempotencyKey.of(senderId, "first");
+        IdempotencyKey second = IdempotencyKey.of(senderId, "second");
+        service.makeTransfer(senderId, recipientId, 600, first, 1000);
+        provider.takeSnapshot();
+        service.makeTransfer(senderId, recipientId, 600, second, 2000);
+        provider.close();
+        //when
+        PersistenceProxyService recovered = new PersistenceProxyService(open(DurabilityLevel.SYNC));
+        //then
+        assertEquals(TransferStatus.TRANSFERRED, recovered.makeTransfer(senderId, recipientId, 600, first, 3000));
+        assertEquals(TransferStatus.NO_FUNDS, recovered.makeTransfer(senderId, recipientId, 600, second, 3000));
+        assertEquals(400, recovered.checkBalance(senderId));
+        assertEquals(1, recovered.getStatement(recipientId).size());
+    }
+
+    @Test
+    void keyedTransferShouldBeTimedAsItIsJournaled() throws InterruptedException {
+        //given
+        MappedJournalPersistenceProvider provider = open(DurabilityLevel.SYNC);
+        PersistenceProxyService service = new PersistenceProxyService(provider);
+        long senderId = service.createAccount(1000);
+        long recipientId = service.createAccount(0);
+        IdempotencyKey key = IdempotencyKey.of(senderId, "key");
+        long window = TimeUnit.SECONDS.toMillis(configuration().getIdempotencyWindowSeconds());
+        long before = System.currentTimeMillis();
+        service.makeTransferWithReceipt(senderId, recipientId, 100, key);
+        long after = System.currentTimeMillis();
+        Thread.sleep(50);
+        provider.close();
+        //when
+        PersistenceProxyService recovered = new PersistenceProxyService(open(DurabilityLevel.SYNC));
+        //then
+        assertTrue(recovered.findTransferReceipt(senderId, recipientId, 100, key, before + window).isPresent());
+        assertFalse(recovered.findTransferReceipt(senderId, recipientId, 100, key, after + window + 1).isPresent());
+    }
+
+    @Test
+    void transfersShouldBeFoundByIdsIssuedBeforeRestart() {
+        //given
+        MappedJournalPersistenceProvider provider = open(DurabilityLevel.GROUP);
+        PersistenceProxyService service = new PersistenceProxyService(provider);
+        long senderId = service.createAccount(1000);
+        long recipientId = service.createAccount(0);
+        IdempotencyKey key = IdempotencyKey.of(senderId, "key");
+        TransferReceipt beforeSnapshot = service.makeTransferWithReceipt(senderId, recipientId, 100);
+        provider.takeSnapshot();
+        TransferReceipt failed = service.makeTransferWithReceipt(senderId, recipientId, 5000);
+        service.createAccount(0);
+        TransferReceipt keyed = service.makeTransferWithReceipt(senderId, recipientId, 200, key, 1000);
+        service.makeTransfers(Arrays.asList(new TransferOrder(recipientId, senderId, 50), null));
+        TransferReceipt last = service.makeTransferWithReceipt(recipientId, senderId, 10);
+        provider.close();
+        //when
+        PersistenceProxyService recovered = new PersistenceProxyService(open(DurabilityLevel.SYNC));
+        TransferReceipt next = recovered.makeTransferWithReceipt(senderId, recipientId, 1);
+        //then
+        assertEquals(TransferReceipt.NO_TRANSFER_ID, failed.getTransferId());
+        assertEquals(100, recovered.findTransfer(beforeSnapshot.getTransferId()).getAmount());
+        assertEquals(200, recovered.findTransfer(keyed.getTransferId()).getAmount());
+        assertEquals(50, recovered.findTransfer(last.getTransferId() - 2).getAmount());
+        assertNull(recovered.findTransfer(last.getTransferId() - 1));
+        assertEquals(senderId, recovered.findTransfer(last.getTransferId()).getRecipientId());
+        assertEquals(keyed.getTransferId(), recovered.makeTransferWithReceipt(senderId, recipientId, 200, key, 2000).getTransferId());
+        assertTrue(next.getTransferId() > last.getTransferId());
+        assertEquals(1, recovered.findTransfer(next.getTransferId()).getAmount());
+    }
+
+    @Test
+    void batchFailingToBeJournaledShouldLeaveNoneOfItsCommands() throws IOException {
+        //given
+        MappedJournalPersistenceProvider provider = open(DurabilityLevel.GROUP);
+        PersistenceProxyService service = new PersistenceProxyService(provider);
+        long senderId = service.createAccount(1000);
+        long recipientId = service.createAccount(0);
+        // more than a segment takes, so that the batch starts a new one before it fails
+        List<ServiceCommand<?>> commands = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            commands.add(new MakeTransferCommand(senderId, recipientId, 1));
+        }
+        commands.add(new MakeTransfersCommand(Collections.nCopies(SEGMENT_SIZE / 24, new TransferOrder(senderId, recipientId, 1))));
+        //when
+        assertThrows(IllegalArgumentException.class, () -> provider.commit(new BatchCommand(commands)));
+        service.makeTransfer(senderId, recipientId, 10);
+        provider.close();
+        PersistenceProxyService recovered = new PersistenceProxyService(open(DurabilityLevel.SYNC));
+        //then
+        assertEquals(990, service.checkBalance(senderId));
+        assertEquals(990, recovered.checkBalance(senderId));
+        assertEquals(1, recovered.getStatement(recipientId).size());
+        assertEquals(1, segments().stream().filter(file -> file.getFileName().toString().startsWith("journal-")).count());
+    }
+
+    @Test
+    void replayShouldSkipOnlyFailuresCommandsHadWhenFirstExecuted() {
+        //when
+        MappedJournalPersistenceProvider.replay(() -> Math.addExact(Long.MAX_VALUE, 1));
+        //then
+        assertThrows(NullPointerException.class, () -> MappedJournalPersistenceProvider.replay(() -> {
+            throw new NullPointerException();
+        }));
+        assertThrows(IllegalStateException.class, () -> MappedJournalPersistenceProvider.replay(() -> {
+            throw new IllegalStateException("Unknown journal opcode 9");
+        }));
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private MappedJournalPersistenceProvider open(DurabilityLevel durabilityLevel) {
+        return new MappedJournalPersistenceProvider(folder, SEGMENT_SIZE, durabilityLevel, 0);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+}
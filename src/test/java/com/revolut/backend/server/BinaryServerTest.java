@@ -0,0 +1,120 @@
+package com.revolut.backend.server;
+
+import com.revolut.backend.api.AccountService;
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferStatus;
+import com.revolut.backend.persistence.PersistenceProxyService;
+import com.revolut.backend.utils.TestDirectProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BinaryServerTest {
+
+    private NonBlockingService service;
+    private BinaryServer server;
+    private BinaryClient client;
+
+    @BeforeEach
+    void connect() throws IOException {
+        service = new NonBlockingService(new PersistenceProxyService(new TestDirectProvider()));
+        server = new BinaryServer(service, 0);
+        server.start();
+        client = new BinaryClient("localhost", server.getPort());
+    }
+
+    @AfterEach
+    void disconnect() throws IOException {
+        client.close();
+        server.stop();
+        service.shutdown();
+    }
+
+    @Test
+    void transferShouldMoveMoneyBetweenAccounts() {
+        //given
+        long senderId = client.createAccount(1000).join();
+        long recipientId = client.createAccount(0).join();
+        //when
+        TransferStatus status = client.makeTransfer(senderId, recipientId, 300).join();
+        //then
+        assertEquals(TransferStatus.TRANSFERRED, status);
+        assertEquals(700, (long) client.findBalance(senderId).join());
+        assertEquals(300, (long) client.findBalance(recipientId).join());
+    }
+
+    @Test
+    void madeTransferShouldBeAnsweredWithItsId() {
+        //given
+        long senderId = client.createAccount(1000).join();
+        long recipientId = client.createAccount(0).join();
+        //when
+        TransferReceipt made = client.makeTransferWithReceipt(senderId, recipientId, 300).join();
+        TransferReceipt failed = client.makeTransferWithReceipt(senderId, recipientId, 3000).join();
+        //then
+        assertEquals(TransferStatus.TRANSFERRED, made.getStatus());
+        assertEquals(300, service.findTransfer(made.getTransferId()).toCompletableFuture().join().getAmount());
+        assertEquals(TransferStatus.NO_FUNDS, failed.getStatus());
+        assertEquals(TransferReceipt.NO_TRANSFER_ID, failed.getTransferId());
+    }
+
+    @Test
+    void failedTransferShouldBeAnsweredWithItsStatus() {
+        //given
+        long senderId = client.createAccount(100).join();
+        //when
+        TransferStatus noFunds = client.makeTransfer(senderId, client.createAccount(0).join(), 101).join();
+        TransferStatus noRecipient = client.makeTransfer(senderId, 9999, 1).join();
+        //then
+        assertEquals(TransferStatus.NO_FUNDS, noFunds);
+        assertEquals(TransferStatus.INVALID_RECIPIENT, noRecipient);
+        assertEquals(AccountService.NO_ACCOUNT, (long) client.findBalance(9999).join());
+    }
+
+    @Test
+    void requestsInFlightShouldBeAnsweredByTheirIds() {
+        //given
+        long senderId = client.createAccount(10_000).join();
+        long recipientId = client.createAccount(0).join();
+        List<CompletableFuture<TransferStatus>> transfers = new ArrayList<>();
+        //when
+        for (int i = 0; i < 1000; i++) {
+            transfers.add(client.makeTransfer(senderId, recipientId, 1 + i % 2 * 100_000));
+        }
+        //then
+        for (int i = 0; i < transfers.size(); i++) {
+            assertEquals(i % 2 == 0 ? TransferStatus.TRANSFERRED : TransferStatus.NO_FUNDS, transfers.get(i).join());
+        }
+        assertEquals(500, (long) client.findBalance(recipientId).join());
+    }
+
+    @Test
+    void requestsBeyondMaxInFlightShouldWaitToBeReadAndBeAnswered() throws IOException {
+        //given
+        BinaryServer limited = new BinaryServer(service, 0, 2);
+        limited.start();
+        List<CompletableFuture<TransferStatus>> transfers = new ArrayList<>();
+        try (BinaryClient limitedClient = new BinaryClient("localhost", limited.getPort())) {
+            long senderId = limitedClient.createAccount(10_000).join();
+            long recipientId = limitedClient.createAccount(0).join();
+            //when
+            for (int i = 0; i < 1000; i++) {
+                transfers.add(limitedClient.makeTransfer(senderId, recipientId, 1));
+            }
+            //then
+            for (CompletableFuture<TransferStatus> transfer : transfers) {
+                assertEquals(TransferStatus.TRANSFERRED, transfer.join());
+            }
+            assertEquals(1000, (long) limitedClient.findBalance(recipientId).join());
+        } finally {
+            limited.stop();
+        }
+    }
+}
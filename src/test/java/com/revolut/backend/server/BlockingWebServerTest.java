@@ -0,0 +1,192 @@
+package com.revolut.backend.server;
+
+import com.revolut.backend.utils.GatedProvider;
+import com.revolut.backend.utils.TestDirectProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockingWebServerTest {
+
+    private BlockingWebServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new BlockingWebServer(new TestDirectProvider(), 0, Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    void transferShouldMoveMoneyBetweenAccounts() throws IOException {
+        //given
+        String senderId = post("services/account/create", "{\"initialBalance\":10}");
+        String recipientId = post("services/account/create", "{\"initialBalance\":0}");
+        //when
+        String made = post("services/transfer/make", String.format("{\"senderId\":%s,\"recipientId\":%s,\"amount\":2.5}", senderId, recipientId));
+        //then
+        assertTrue(made.matches("\\{\"status\":0,\"transferId\":\\d+}"), made);
+        assertEquals("7.5000", get("services/account/balance/" + senderId, 200));
+        assertEquals("2.5000", get("services/account/balance/" + recipientId, 200));
+    }
+
+    @Test
+    void transferShouldBeFoundAtItsLocation() throws IOException {
+        //given
+        String senderId = post("services/account/create", "{\"initialBalance\":10}");
+        String recipientId = post("services/account/create", "{\"initialBalance\":0}");
+        //when
+        HttpURLConnection connection = send("services/transfer/make", String.format("{\"senderId\":%s,\"recipientId\":%s,\"amount\":2.5}", senderId, recipientId));
+        String location = connection.getHeaderField("Location");
+        //then
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("{\"status\":0,\"transferId\":" + location.substring(location.lastIndexOf('/') + 1) + "}", read(connection.getInputStream()));
+        String transfer = get(location.substring(1), 200);
+        assertTrue(transfer.contains(String.format("\"senderId\":%s,\"recipientId\":%s,\"amount\":2.5000", senderId, recipientId)), transfer);
+        assertTrue(transfer.contains("\"transferId\":" + location.substring(location.lastIndexOf('/') + 1)), transfer);
+        assertEquals("Transfer with id 999999 not found", get("services/transfer/999999", 404));
+        assertEquals("Transfer with id abc not found", get("services/transfer/abc", 404));
+    }
+
+    @Test
+    void batchShouldReturnIdsOfTransfersMade() throws IOException {
+        //given
+        String senderId = post("services/account/create", "{\"initialBalance\":10}");
+        String recipientId = post("services/account/create", "{\"initialBalance\":0}");
+        //when
+        String made = post("services/transfer/batch", String.format("[{\"senderId\":%s,\"recipientId\":%s,\"amount\":1},null,{\"senderId\":%s,\"recipientId\":%s,\"amount\":1}]",
+                senderId, recipientId, senderId, recipientId));
+        //then
+        assertEquals("[{\"status\":0,\"transferId\":0},{\"status\":4,\"transferId\":null},{\"status\":0,\"transferId\":1}]", made);
+    }
+
+    @Test
+    void statementShouldBePaged() throws IOException {
+        //given
+        String senderId = post("services/account/create", "{\"initialBalance\":10}");
+        String recipientId = post("services/account/create", "{\"initialBalance\":0}");
+        post("services/transfer/batch", String.format("[{\"senderId\":%s,\"recipientId\":%s,\"amount\":1},{\"senderId\":%s,\"recipientId\":%s,\"amount\":2}]",
+                senderId, recipientId, senderId, recipientId));
+        //when
+        String page = get("services/transfer/statement/" + recipientId + "?limit=1&order=desc", 200);
+        //then
+        assertTrue(page.endsWith(String.format("\"party\":%s,\"balance\":2.0000}],\"nextCursor\":1}", senderId)), page);
+    }
+
+    @Test
+    void invalidQueryParametersShouldBeBadRequests() throws IOException {
+        //given
+        String accountId = post("services/account/create", "{\"initialBalance\":10}");
+        String statement = "services/transfer/statement/" + accountId;
+        //then
+        assertEquals("Parameter cursor must be a non-negative number, got abc", get(statement + "?cursor=abc", 400));
+        assertEquals("Parameter limit must be a non-negative number, got x", get(statement + "?limit=x", 400));
+        assertEquals("Parameter limit must be positive", get(statement + "?limit=0", 400));
+        assertEquals("Unknown order up, expected asc or desc", get(statement + "?order=up", 400));
+        assertEquals("Unknown stream format csv, expected json or ndjson", get(statement + "?stream=csv", 400));
+        assertEquals("Parameter ids is missing, expected comma separated account ids", get("services/account/snapshot", 400));
+        assertEquals("Parameter ids must be a non-negative number, got 1a", get("services/account/snapshot?ids=1a", 400));
+        assertEquals("Parameter version must be a non-negative number, got v2", get("services/account/snapshot?ids=0&version=v2", 400));
+        assertTrue(get("services/account/snapshot?ids=0&version=999999", 400).startsWith("Version 999999 is not committed yet"));
+        assertEquals(400, send("services/transfer/make", "{\"senderId\":").getResponseCode());
+    }
+
+    @Test
+    void unknownAccountShouldNotBeFound() throws IOException {
+        assertEquals("Account with id 9999 not found", get("services/account/balance/9999", 404));
+        assertEquals("Account with id 9999 not found", get("services/transfer/statement/9999", 404));
+        assertEquals("Account with id abc not found", get("services/account/balance/abc", 404));
+        assertEquals("Account with id -1 not found", get("services/transfer/statement/-1", 404));
+    }
+
+    @Test
+    void writeShouldBeShedWhileWritesInProgressTakeTooLong() throws Exception {
+        //given
+        server.stop();
+        GatedProvider provider = new GatedProvider();
+        server = new BlockingWebServer(provider, 0, Executors.newCachedThreadPool(), 1000, 50);
+        server.start();
+        ExecutorService clients = Executors.newCachedThreadPool();
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> postUnchecked("services/account/create", "{\"initialBalance\":1}"), clients);
+        provider.awaitEntered();
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> postUnchecked("services/account/create", "{\"initialBalance\":1}"), clients);
+        provider.awaitEntered();
+        Thread.sleep(200);
+        provider.release(1);
+        CompletableFuture.anyOf(first, second).get(10, TimeUnit.SECONDS);
+        //when
+        HttpURLConnection shed = send("services/account/create", "{\"initialBalance\":1}");
+        //then
+        assertEquals(503, shed.getResponseCode());
+        provider.release(2);
+        CompletableFuture.allOf(first, second).get(10, TimeUnit.SECONDS);
+        assertEquals("2", post("services/account/create", "{\"initialBalance\":1}"));
+        clients.shutdown();
+    }
+
+    private String postUnchecked(String path, String body) {
+        try {
+            return post(path, body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String post(String path, String body) throws IOException {
+        HttpURLConnection connection = send(path, body);
+        assertEquals(200, connection.getResponseCode());
+        return read(connection.getInputStream());
+    }
+
+    private HttpURLConnection send(String path, String body) throws IOException {
+        HttpURLConnection connection = connect(path);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection;
+    }
+
+    private String get(String path, int expectedStatus) throws IOException {
+        HttpURLConnection connection = connect(path);
+        assertEquals(expectedStatus, connection.getResponseCode());
+        return read(expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream());
+    }
+
+    private HttpURLConnection connect(String path) throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:" + server.getPort() + "/" + path).openConnection();
+    }
+
+    private static String read(InputStream body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = body) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,62 @@
+package com.revolut.backend.server;
+
+import com.revolut.backend.persistence.PersistenceProxyService;
+import com.revolut.backend.utils.GatedProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NonBlockingServiceTest {
+
+    @Test
+    void writeShouldBeShedWhenQueueIsFull() throws Exception {
+        //given
+        GatedProvider provider = new GatedProvider();
+        NonBlockingService service = new NonBlockingService(new PersistenceProxyService(provider), 1, 2, 0);
+        CompletionStage<Long> running = service.createAccount(100);
+        provider.awaitEntered();
+        CompletionStage<Long> first = service.createAccount(100);
+        CompletionStage<Long> second = service.createAccount(100);
+        //when
+        CompletionStage<Long> shed = service.createAccount(100);
+        //then
+        CompletionException rejection = assertThrows(CompletionException.class, () -> shed.toCompletableFuture().join());
+        assertSame(WriteRejectedException.QUEUE_FULL, rejection.getCause());
+        provider.release(3);
+        assertEquals(0, (long) running.toCompletableFuture().get(10, TimeUnit.SECONDS));
+        assertEquals(1, (long) first.toCompletableFuture().get(10, TimeUnit.SECONDS));
+        assertEquals(2, (long) second.toCompletableFuture().get(10, TimeUnit.SECONDS));
+        service.shutdown();
+    }
+
+    @Test
+    void writeShouldBeShedWhileQueuedWritesWaitTooLong() throws Exception {
+        //given
+        GatedProvider provider = new GatedProvider();
+        NonBlockingService service = new NonBlockingService(new PersistenceProxyService(provider), 1, 1000, 50);
+        CompletionStage<Long> running = service.createAccount(100);
+        provider.awaitEntered();
+        CompletionStage<Long> delayed = service.createAccount(100);
+        CompletionStage<Long> queued = service.createAccount(100);
+        Thread.sleep(200);
+        provider.release(1);
+        provider.awaitEntered();
+        //when
+        CompletionStage<Long> shed = service.createAccount(100);
+        //then
+        CompletionException rejection = assertThrows(CompletionException.class, () -> shed.toCompletableFuture().join());
+        assertSame(WriteRejectedException.QUEUE_WAIT, rejection.getCause());
+        provider.release(3);
+        assertEquals(0, (long) running.toCompletableFuture().get(10, TimeUnit.SECONDS));
+        assertEquals(1, (long) delayed.toCompletableFuture().get(10, TimeUnit.SECONDS));
+        assertEquals(2, (long) queued.toCompletableFuture().get(10, TimeUnit.SECONDS));
+        assertEquals(3, (long) service.createAccount(100).toCompletableFuture().get(10, TimeUnit.SECONDS));
+        service.shutdown();
+    }
+}
@@ -0,0 +1,137 @@
+package com.revolut.backend.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferStatus;
+import com.revolut.backend.server.dto.MinorUnits;
+import com.revolut.backend.server.dto.TransferMade;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrimitiveJsonCodecTest {
+
+    private final PrimitiveJsonCodec codec = new PrimitiveJsonCodec(4);
+
+    @Test
+    void shouldReadPlainTransfer() {
+        //given
+        long[] fields = new long[3];
+        //when
+        boolean read = codec.readTransfer(buffer("{\"senderId\":12,\"recipientId\":34,\"amount\":5.67}"), fields);
+        //then
+        assertTrue(read);
+        assertArrayEquals(new long[]{12, 34, 56700}, fields);
+    }
+
+    @Test
+    void shouldReadFieldsInAnyOrderWithWhitespace() {
+        //given
+        long[] fields = new long[3];
+        //when
+        boolean read = codec.readTransfer(buffer(" {\n \"amount\" : 100 ,\t\"recipientId\": 2, \"senderId\" :1 }\r\n"), fields);
+        //then
+        assertTrue(read);
+        assertArrayEquals(new long[]{1, 2, 1000000}, fields);
+    }
+
+    @Test
+    void shouldReadAmountsAsMinorUnitsDo() {
+        MinorUnits minorUnits = new MinorUnits(4);
+        for (String amount : new String[]{"0", "0.0001", "-3.5", "1.23450000", "0.00001", "922337203685477.5807", "922337203685477.5808", "99999999999999999999"}) {
+            //given
+            long[] fields = new long[3];
+            //when
+            boolean read = codec.readTransfer(buffer("{\"senderId\":1,\"recipientId\":2,\"amount\":" + amount + "}"), fields);
+            //then
+            assertTrue(read, amount);
+            assertEquals(minorUnits.toTransferAmount(new BigDecimal(amount)), fields[PrimitiveJsonCodec.AMOUNT], amount);
+        }
+    }
+
+    @Test
+    void shouldLeaveOtherShapesToJackson() {
+        String[] bodies = {
+                "",
+                "{}",
+                "{\"senderId\":1,\"recipientId\":2}",
+                "{\"senderId\":1,\"recipientId\":2,\"amount\":3,\"idempotencyKey\":\"abc\"}",
+                "{\"senderId\":1,\"recipientId\":2,\"amount\":\"3\"}",
+                "{\"senderId\":1,\"recipientId\":2,\"amount\":null}",
+                "{\"senderId\":1,\"recipientId\":2,\"amount\":1e3}",
+                "{\"senderId\":1.0,\"recipientId\":2,\"amount\":3}",
+                "{\"senderId\":99999999999999999999,\"recipientId\":2,\"amount\":3}",
+                "{\"senderId\":1,\"recipientId\":2,\"amount\":3.}",
+                "{\"sender\\u0049d\":1,\"recipientId\":2,\"amount\":3}",
+                "{\"senderId\":1,\"recipientId\":2,\"amount\":3",
+                "{\"senderId\":1,\"recipientId\":2,\"amount\":3}x",
+                "[{\"senderId\":1,\"recipientId\":2,\"amount\":3}]"
+        };
+        for (String body : bodies) {
+            //when
+            boolean read = codec.readTransfer(buffer(body), new long[3]);
+            //then
+            assertFalse(read, body);
+        }
+    }
+
+    @Test
+    void shouldReadFromReaderIndex() {
+        //given
+        ByteBuf buffer = buffer("xx{\"senderId\":1,\"recipientId\":2,\"amount\":3}").skipBytes(2);
+        long[] fields = new long[3];
+        //when
+        boolean read = codec.readTransfer(buffer, fields);
+        //then
+        assertTrue(read);
+        assertArrayEquals(new long[]{1, 2, 30000}, fields);
+        assertEquals(2, buffer.readerIndex());
+    }
+
+    @Test
+    void shouldWriteReceiptAsJacksonDoes() throws JsonProcessingException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<TransferReceipt> receipts = new ArrayList<>();
+        for (TransferStatus status : TransferStatus.values()) {
+            receipts.add(TransferReceipt.withoutId(status));
+        }
+        for (long transferId : new long[]{0, 7, 10, 1234567890123L, Long.MAX_VALUE}) {
+            receipts.add(TransferReceipt.transferred(transferId));
+        }
+        for (TransferReceipt receipt : receipts) {
+            //when
+            byte[] body = codec.writeReceipt(receipt);
+            //then
+            assertEquals(objectMapper.writeValueAsString(TransferMade.fromReceipt(receipt)), new String(body, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void shouldWriteDecimalAsMinorUnitsDo() {
+        for (int scale : new int[]{0, 2, 4}) {
+            PrimitiveJsonCodec scaled = new PrimitiveJsonCodec(scale);
+            MinorUnits minorUnits = new MinorUnits(scale);
+            for (long amount : new long[]{0, 1, -1, 5, 75000, -75000, 123456789, Long.MAX_VALUE, Long.MIN_VALUE}) {
+                //when
+                byte[] decimal = scaled.writeDecimal(amount);
+                //then
+                assertEquals(minorUnits.toDecimal(amount).toPlainString(), new String(decimal, StandardCharsets.US_ASCII), scale + " " + amount);
+            }
+        }
+    }
+
+    private static ByteBuf buffer(String body) {
+        return Unpooled.copiedBuffer(body, StandardCharsets.UTF_8);
+    }
+}
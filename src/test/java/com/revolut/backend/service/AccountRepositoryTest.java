@@ -1,5 +1,6 @@
 package com.revolut.backend.service;
 
+import com.revolut.backend.api.AccountService;
 import com.revolut.backend.domain.Account;
 import io.netty.util.internal.ConcurrentSet;
 import org.junit.jupiter.api.BeforeEach;
@@ -56,6 +57,18 @@ class AccountRepositoryTest {
         assertFalse(account.isPresent());
     }
 
+    @Test
+    void findBalanceShouldTellAboutUnknownAccountWithoutThrowing() {
+        //given
+        long accountId = repository.createAccount(25);
+        //when
+        long balance = repository.findBalance(accountId);
+        long unknownBalance = repository.findBalance(99999);
+        //then
+        assertEquals(25, balance);
+        assertEquals(AccountService.NO_ACCOUNT, unknownBalance);
+    }
+
     private Set<Long> createAccountsConcurrently(int howMany) {
         ConcurrentSet<Long> ids = new ConcurrentSet<>();
         List<Runnable> concurrentOperations = IntStream.range(0, howMany).boxed()
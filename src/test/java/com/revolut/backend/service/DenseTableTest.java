@@ -0,0 +1,68 @@
+package com.revolut.backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static com.revolut.backend.utils.TestUtils.runConcurrently;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DenseTableTest {
+
+    private DenseTable<String> table;
+
+    @BeforeEach
+    void setUp() {
+        table = new DenseTable<>();
+    }
+
+    @Test
+    void getShouldReturnNullForMissingKeys() {
+        //given
+        table.put(5, "five");
+        //then
+        assertNull(table.get(4));
+        assertNull(table.get(1_000_000));
+        assertNull(table.get(-1));
+        assertNull(table.get(Long.MAX_VALUE));
+    }
+
+    @Test
+    void valuesShouldBeFoundAcrossChunksAndAfterDirectoryGrowth() {
+        //given
+        long[] keys = {0, 4095, 4096, 123_456, 10_000_000};
+        //when
+        for (long key : keys) {
+            table.put(key, "value" + key);
+        }
+        //then
+        for (long key : keys) {
+            assertEquals("value" + key, table.get(key));
+        }
+    }
+
+    @Test
+    void computeIfAbsentShouldCreateValueOnlyOnce() {
+        //when
+        String created = table.computeIfAbsent(7, key -> "created");
+        String existing = table.computeIfAbsent(7, key -> "other");
+        //then
+        assertEquals("created", created);
+        assertEquals("created", existing);
+    }
+
+    @Test
+    void concurrentPutsShouldAllBeVisible() {
+        final int numOfConcurrentRequests = 100;
+        //when
+        List<Runnable> concurrentOperations = LongStream.range(0, numOfConcurrentRequests).boxed()
+                .map(key -> (Runnable) () -> table.put(key * 5_000, "value" + key))
+                .collect(Collectors.toList());
+        runConcurrently(concurrentOperations);
+        //then
+        LongStream.range(0, numOfConcurrentRequests).forEach(key -> assertEquals("value" + key, table.get(key * 5_000)));
+    }
+}
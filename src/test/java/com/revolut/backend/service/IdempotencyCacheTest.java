@@ -0,0 +1,153 @@
+package com.revolut.backend.service;
+
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import static com.revolut.backend.domain.TransferStatus.NO_FUNDS;
+import static com.revolut.backend.domain.TransferStatus.TRANSFERRED;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyCacheTest {
+
+    @Test
+    void keyShouldBeFoundWithinWindowOnly() {
+        //given
+        IdempotencyCache cache = new IdempotencyCache(16, 1000);
+        //when
+        cache.put(1, 2, 0, 5000, TransferReceipt.withoutId(NO_FUNDS));
+        //then
+        assertEquals(NO_FUNDS, cache.find(1, 2, 0, 5000).getStatus());
+        assertEquals(NO_FUNDS, cache.find(1, 2, 0, 6000).getStatus());
+        assertNull(cache.find(1, 2, 0, 6001));
+        assertNull(cache.find(2, 1, 0, 5000));
+    }
+
+    @Test
+    void claimedKeyShouldBePendingUntilCompletedOrReleased() throws IOException {
+        //given
+        IdempotencyCache cache = new IdempotencyCache(16, 1000);
+        //when
+        TransferReceipt claimed = cache.claim(1, 2, 0, 5000);
+        TransferReceipt retried = cache.claim(1, 2, 0, 5001);
+        TransferReceipt changed = cache.claim(1, 2, 7, 5001);
+        TransferReceipt found = cache.find(1, 2, 0, 5001);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        cache.writeTo(new DataOutputStream(bytes));
+        cache.complete(1, 2, TransferReceipt.transferred(9));
+        cache.claim(3, 4, 0, 5002);
+        cache.release(3, 4);
+        //then
+        assertNull(claimed);
+        assertSame(IdempotencyCache.PENDING, retried);
+        assertEquals(TransferStatus.IDEMPOTENCY_CONFLICT, changed.getStatus());
+        assertNull(found);
+        assertEquals(0, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())).readInt());
+        assertEquals(9, cache.claim(1, 2, 0, 5003).getTransferId());
+        assertNull(cache.claim(3, 4, 0, 5003));
+    }
+
+    @Test
+    void frozenEntriesShouldBeKeptFromLaterPuts() {
+        //given
+        IdempotencyCache cache = new IdempotencyCache(2, Long.MAX_VALUE / 2);
+        IdempotencyCache expected = new IdempotencyCache(2, Long.MAX_VALUE / 2);
+        cache.put(1, 1, 0, 1, TransferReceipt.transferred(1));
+        expected.put(1, 1, 0, 1, TransferReceipt.transferred(1));
+        //when
+        cache.freeze();
+        cache.put(2, 2, 0, 2, TransferReceipt.withoutId(NO_FUNDS));
+        cache.put(3, 3, 0, 3, TransferReceipt.withoutId(NO_FUNDS));
+        IdempotencyCache frozen = cache.takeFrozen();
+        //then
+        assertTrue(expected.sameEntries(frozen));
+        assertNull(cache.find(1, 1, 0, 3));
+    }
+
+    @Test
+    void oldestKeysShouldBeEvictedWhenFull() {
+        //given
+        IdempotencyCache cache = new IdempotencyCache(3, Long.MAX_VALUE / 2);
+        //when
+        for (long key = 1; key <= 5; key++) {
+            cache.put(key, key, 0, key, TransferReceipt.transferred(key));
+        }
+        //then
+        assertEquals(3, cache.size());
+        assertNull(cache.find(1, 1, 0, 10));
+        assertNull(cache.find(2, 2, 0, 10));
+        assertEquals(3, cache.find(3, 3, 0, 10).getTransferId());
+        assertEquals(5, cache.find(5, 5, 0, 10).getTransferId());
+    }
+
+    @Test
+    void cacheShouldAgreeWithReferenceModelUnderChurn() {
+        //given
+        int capacity = 100;
+        long window = 500;
+        IdempotencyCache cache = new IdempotencyCache(capacity, window);
+        Deque<long[]> model = new ArrayDeque<>();
+        Random random = new Random(7);
+        //when
+        for (long now = 0; now < 20_000; now++) {
+            // few distinct keys, so that colliding probe sequences get removed from often
+            long key = random.nextInt(300);
+            TransferReceipt found = cache.find(key, ~key, 0, now);
+            long[] expected = findInModel(model, key, now, window);
+            //then
+            assertEquals(expected == null ? null : TransferStatus.values()[(int) expected[2]], found == null ? null : found.getStatus());
+            if (found == null) {
+                TransferStatus status = TransferStatus.values()[random.nextInt(TransferStatus.values().length)];
+                cache.put(key, ~key, 0, now, status == TRANSFERRED ? TransferReceipt.transferred(now) : TransferReceipt.withoutId(status));
+                while (!model.isEmpty() && now - model.peekFirst()[1] > window) {
+                    model.removeFirst();
+                }
+                model.removeIf(entry -> entry[0] == key);
+                if (model.size() == capacity) {
+                    model.removeFirst();
+                }
+                model.addLast(new long[]{key, now, status.ordinal()});
+            }
+        }
+    }
+
+    @Test
+    void entriesShouldSurviveWritingAndReading() throws IOException {
+        //given
+        IdempotencyCache cache = new IdempotencyCache(8, 1000);
+        for (long key = 1; key <= 12; key++) {
+            cache.put(key, -key, 7 * key, 100 + key, key % 2 == 0 ? TransferReceipt.transferred(key) : TransferReceipt.withoutId(NO_FUNDS));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        //when
+        cache.writeTo(new DataOutputStream(bytes));
+        IdempotencyCache read = new IdempotencyCache(8, 1000);
+        read.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        //then
+        assertTrue(cache.sameEntries(read));
+        assertTrue(cache.sameEntries(cache.copy()));
+        assertEquals(TRANSFERRED, read.find(12, -12, 84, 200).getStatus());
+        assertEquals(12, read.find(12, -12, 84, 200).getTransferId());
+        assertEquals(NO_FUNDS, read.find(11, -11, 77, 200).getStatus());
+        assertEquals(TransferStatus.IDEMPOTENCY_CONFLICT, read.find(12, -12, 0, 200).getStatus());
+        assertNull(read.find(4, -4, 28, 200));
+    }
+
+    private static long[] findInModel(Deque<long[]> model, long key, long now, long window) {
+        for (long[] entry : model) {
+            if (entry[0] == key) {
+                return now - entry[1] > window ? null : entry;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,87 @@
+package com.revolut.backend.service;
+
+import com.revolut.backend.domain.IdempotencyKey;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ServiceStateTest {
+
+    @Test
+    void markedStateShouldBeReadAsOfItsVersion() {
+        //given
+        CoreService service = newService();
+        CoreService expected = newService();
+        for (CoreService each : new CoreService[]{service, expected}) {
+            each.createAccount(1000);
+            each.createAccount(0);
+            each.makeTransfer(0, 1, 300);
+            each.makeTransfer(0, 1, 100, IdempotencyKey.of(0, "first"), 1000);
+        }
+        //when
+        ServiceState.Mark mark = service.markState();
+        service.makeTransfer(1, 0, 50);
+        service.makeTransfer(0, 1, 100, IdempotencyKey.of(0, "second"), 2000);
+        service.createAccount(7);
+        ServiceState state = mark.read();
+        //then
+        Optional<String> difference = expected.captureState().findDifference(state);
+        assertFalse(difference.isPresent(), difference.orElse(""));
+        assertEquals(2, state.getAccounts());
+    }
+
+    @Test
+    void restoredStateShouldCountItsStatementEntries() throws IOException {
+        //given
+        CoreService service = newService();
+        service.createAccount(1000);
+        service.createAccount(0);
+        service.createAccount(0);
+        service.makeTransfer(0, 1, 300);
+        service.makeTransfer(1, 2, 100);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        service.captureState().writeTo(new DataOutputStream(bytes));
+        //when
+        CoreService restored = CoreService.restoreState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        restored.makeTransfer(2, 0, 50);
+        //then
+        assertEquals(4, service.getStatementEntryCount());
+        assertEquals(6, restored.getStatementEntryCount());
+    }
+
+    @Test
+    void onlyRetainedTransfersShouldBeFoundAndRestored() throws IOException {
+        //given
+        CoreService service = new CoreService(Collections.emptySet(), 0, 0, 16, Long.MAX_VALUE / 2, 1);
+        service.createAccount(100_000);
+        service.createAccount(0);
+        for (int i = 0; i < 3 * 4096; i++) {
+            service.makeTransfer(0, 1, 1);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        service.captureState().writeTo(new DataOutputStream(bytes));
+        //when
+        CoreService restored = CoreService.restoreState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        //then
+        assertNull(service.findTransfer(0));
+        assertNotNull(service.findTransfer(3 * 4096 - 1));
+        assertNull(restored.findTransfer(3 * 4096 - 2));
+        assertNotNull(restored.findTransfer(3 * 4096 - 1));
+        assertEquals(3 * 4096, restored.reserveTransferIds(1));
+    }
+
+    private static CoreService newService() {
+        return new CoreService(Collections.emptySet(), 0, 0, 16, Long.MAX_VALUE / 2, Long.MAX_VALUE);
+    }
+}
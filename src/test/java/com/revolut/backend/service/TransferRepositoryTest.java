@@ -2,33 +2,53 @@ package com.revolut.backend.service;
 
 import com.revolut.backend.domain.TransferStatus;
 import com.revolut.backend.domain.Account;
+import com.revolut.backend.domain.AccountView;
+import com.revolut.backend.domain.AccountsView;
+import com.revolut.backend.domain.IdempotencyKey;
+import com.revolut.backend.domain.Statement;
+import com.revolut.backend.domain.StatementOrder;
+import com.revolut.backend.domain.StatementPage;
+import com.revolut.backend.domain.Transfer;
+import com.revolut.backend.domain.TransferOrder;
+import com.revolut.backend.domain.TransferReceipt;
+import com.revolut.backend.domain.TransferRecord;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
+import static com.revolut.backend.domain.TransferStatus.IDEMPOTENCY_CONFLICT;
+import static com.revolut.backend.domain.TransferStatus.INVALID_AMOUNT;
+import static com.revolut.backend.domain.TransferStatus.INVALID_RECIPIENT;
+import static com.revolut.backend.domain.TransferStatus.INVALID_SENDER;
 import static com.revolut.backend.domain.TransferStatus.NO_FUNDS;
 import static com.revolut.backend.domain.TransferStatus.TRANSFERRED;
 import static com.revolut.backend.utils.TestUtils.*;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TransferRepositoryTest {
 
     private TransferRepository repository;
-    private Map<Long, Account> accounts;
+    private DenseTable<Account> accounts;
 
     @BeforeEach
     void setUp() {
-        accounts = new HashMap<>();
+        accounts = new DenseTable<>();
         AccountLocator accountLocator = new AccountLocator(accounts);
         repository = new TransferRepository(accountLocator);
     }
@@ -36,21 +56,21 @@ class TransferRepositoryTest {
     @Test
     void concurrentTransfersShouldUpdateBalancesRespectively() {
         //given
-        Account account1 = account(101L, amount(1000));
-        Account account2 = account(999L, amount(999));
+        Account account1 = account(101L, minorUnits(1000));
+        Account account2 = account(999L, minorUnits(999));
         //when
         Map<TransferStatus, AtomicInteger> counters = makeTransfersConcurrently(101L, 999L, 50, deterministicBalanceGenerator());
         //then
         Assertions.assertEquals(50, counters.get(TRANSFERRED).get());
-        assertEquals(amount(749.44), account1.getBalance());
-        assertEquals(amount(1249.56), account2.getBalance());
+        Assertions.assertEquals(minorUnits(749.44), account1.getBalance());
+        Assertions.assertEquals(minorUnits(1249.56), account2.getBalance());
     }
 
     @Test
     void only1shouldPassRestShouldFailDueToLackOfFunds() {
         //given
-        account(1L, amount(100));
-        account(2L, amount(0));
+        account(1L, minorUnits(100));
+        account(2L, minorUnits(0));
         //when
         Map<TransferStatus, AtomicInteger> counters = makeTransfersConcurrently(1L, 2L, 10, i -> amount(100));
         //then
@@ -60,6 +80,279 @@ class TransferRepositoryTest {
         Assertions.assertEquals(9, counters.get(NO_FUNDS).get());
     }
 
+    @Test
+    void transfersInBothDirectionsShouldAllPassWithoutDeadlock() {
+        //given
+        Account account1 = account(1L, minorUnits(1000));
+        Account account2 = account(1L + 1024, minorUnits(1000));
+        Account account3 = account(7L, minorUnits(1000));
+        //when
+        List<Runnable> transfers = IntStream.range(0, 60).boxed()
+                .map(i -> (Runnable) () -> {
+                    for (int j = 0; j < 200; j++) {
+                        long[] ids = {1L, 1L + 1024, 7L};
+                        Assertions.assertEquals(TRANSFERRED, repository.makeTransfer(ids[i % 3], ids[(i + 1 + j % 2) % 3], 1));
+                    }
+                })
+                .collect(Collectors.toList());
+        runConcurrently(transfers);
+        //then
+        Assertions.assertEquals(minorUnits(3000), account1.getBalance() + account2.getBalance() + account3.getBalance());
+        Assertions.assertEquals(8000, repository.getStatement(7L).size());
+    }
+
+    @Test
+    void hotRecipientShouldReceiveAllConcurrentCredits() {
+        //given
+        Account merchant = account(0L, minorUnits(0));
+        merchant.makeHot();
+        LongStream.rangeClosed(1, 20).forEach(id -> account(id, minorUnits(100)));
+        //when
+        runConcurrently(LongStream.rangeClosed(1, 20).boxed()
+                .map(id -> (Runnable) () -> IntStream.range(0, 100).forEach(i ->
+                        Assertions.assertEquals(TRANSFERRED, repository.makeTransfer(id, 0L, minorUnits(1)))))
+                .collect(Collectors.toList()));
+        TransferStatus overdraft = repository.makeTransfer(0L, 1L, minorUnits(2000) + 1);
+        TransferStatus payout = repository.makeTransfer(0L, 1L, minorUnits(2000));
+        //then
+        Assertions.assertEquals(NO_FUNDS, overdraft);
+        Assertions.assertEquals(TRANSFERRED, payout);
+        Assertions.assertEquals(0, merchant.getBalance());
+        Assertions.assertEquals(2001, repository.getStatement(0L).size());
+    }
+
+    @Test
+    void contendedRecipientShouldTurnHotAndKeepBalancesExact() throws InterruptedException {
+        //given
+        repository = new TransferRepository(new AccountLocator(accounts), 3, Long.MAX_VALUE / 2,
+                new IdempotencyCache(16, Long.MAX_VALUE / 2), new TransferIndex(Long.MAX_VALUE), new VersionClock());
+        Account merchant = account(0L, minorUnits(0));
+        LongStream.rangeClosed(1, 20).forEach(id -> account(id, minorUnits(100)));
+        // the first credit waits on the merchant's statement while holding its lock, the others wait for the lock
+        Statement merchantStatement = repository.statement(0L);
+        CountDownLatch held = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            synchronized (merchantStatement) {
+                held.countDown();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+            }
+        });
+        holder.start();
+        held.await();
+        //when
+        runConcurrently(LongStream.rangeClosed(1, 20).boxed()
+                .map(id -> (Runnable) () -> IntStream.range(0, 50).forEach(i ->
+                        Assertions.assertEquals(TRANSFERRED, repository.makeTransfer(id, 0L, 1))))
+                .collect(Collectors.toList()));
+        //then
+        assertTrue(merchant.isHot());
+        Assertions.assertEquals(1000, merchant.getBalance());
+        Assertions.assertEquals(1000, repository.getStatement(0L).size());
+        Assertions.assertEquals(20 * minorUnits(100), LongStream.rangeClosed(0, 20).map(id -> accounts.get(id).getBalance()).sum());
+    }
+
+    @Test
+    void idempotencyKeysShouldBeScopedBySenderAndMatchRetriedTransfer() {
+        //given
+        account(1L, minorUnits(10));
+        account(2L, minorUnits(10));
+        account(3L, minorUnits(0));
+        //when
+        TransferStatus first = repository.makeTransfer(1L, 3L, minorUnits(5), IdempotencyKey.of(1L, "key"), 1000);
+        TransferStatus sameKeyOtherSender = repository.makeTransfer(2L, 3L, minorUnits(5), IdempotencyKey.of(2L, "key"), 1000);
+        TransferStatus otherAmount = repository.makeTransfer(1L, 3L, minorUnits(6), IdempotencyKey.of(1L, "key"), 1001);
+        TransferStatus otherRecipient = repository.makeTransfer(1L, 2L, minorUnits(5), IdempotencyKey.of(1L, "key"), 1002);
+        TransferStatus retry = repository.makeTransfer(1L, 3L, minorUnits(5), IdempotencyKey.of(1L, "key"), 1003);
+        //then
+        Assertions.assertEquals(Arrays.asList(TRANSFERRED, TRANSFERRED, IDEMPOTENCY_CONFLICT, IDEMPOTENCY_CONFLICT, TRANSFERRED),
+                Arrays.asList(first, sameKeyOtherSender, otherAmount, otherRecipient, retry));
+        Assertions.assertEquals(Optional.of(IDEMPOTENCY_CONFLICT),
+                repository.findTransferReceipt(1L, 3L, minorUnits(6), IdempotencyKey.of(1L, "key"), 1004).map(TransferReceipt::getStatus));
+        Assertions.assertEquals(minorUnits(5), accounts.get(1L).getBalance());
+        Assertions.assertEquals(minorUnits(10), accounts.get(3L).getBalance());
+        Assertions.assertEquals(2, repository.getStatement(3L).size());
+        Assertions.assertEquals(minorUnits(5), repository.findTransfer(repository.makeTransferWithReceipt(1L, 3L, minorUnits(5),
+                IdempotencyKey.of(1L, "key"), 1005).getTransferId()).getAmount());
+    }
+
+    @Test
+    void keyedTransferShouldHoldBackOnlyRetriesOfItsKey() throws InterruptedException {
+        //given
+        account(1L, minorUnits(10));
+        account(2L, minorUnits(0));
+        account(3L, minorUnits(10));
+        account(4L, minorUnits(0));
+        IdempotencyKey key = IdempotencyKey.of(1L, "key");
+        TransferReceipt[] receipts = new TransferReceipt[2];
+        TransferStatus[] otherKey = new TransferStatus[1];
+        Thread first = new Thread(() -> receipts[0] = repository.makeTransferWithReceipt(1L, 2L, minorUnits(5), key, 1000));
+        Thread retry = new Thread(() -> receipts[1] = repository.makeTransferWithReceipt(1L, 2L, minorUnits(5), key, 1001));
+        Thread other = new Thread(() -> otherKey[0] = repository.makeTransfer(3L, 4L, minorUnits(5), IdempotencyKey.of(3L, "key"), 1000));
+        Statement recipientStatement = repository.statement(2L);
+        //when
+        synchronized (recipientStatement) {
+            // the first transfer claims its key and waits for the recipient's statement
+            first.start();
+            while (first.getState() != Thread.State.BLOCKED) {
+                Thread.yield();
+            }
+            other.start();
+            other.join(TimeUnit.SECONDS.toMillis(5));
+            retry.start();
+            retry.join(50);
+            //then
+            assertFalse(other.isAlive());
+            assertTrue(retry.isAlive());
+        }
+        first.join();
+        retry.join();
+        Assertions.assertEquals(TRANSFERRED, otherKey[0]);
+        Assertions.assertEquals(receipts[0].getTransferId(), receipts[1].getTransferId());
+        Assertions.assertEquals(minorUnits(5), accounts.get(2L).getBalance());
+    }
+
+    @Test
+    void failedTransfersShouldReturnTheirStatusAndKeepBalances() {
+        //given
+        Account account1 = account(1L, minorUnits(5));
+        Account account2 = account(2L, Long.MAX_VALUE - 1);
+        //when
+        List<TransferStatus> statuses = Arrays.asList(
+                repository.makeTransfer(1L, 1L, minorUnits(1)),
+                repository.makeTransfer(1L, 2L, 0),
+                repository.makeTransfer(3L, 1L, minorUnits(1)),
+                repository.makeTransfer(1L, 3L, minorUnits(1)),
+                repository.makeTransfer(1L, 2L, minorUnits(6)),
+                repository.makeTransfer(1L, 2L, minorUnits(1)));
+        //then
+        Assertions.assertEquals(Arrays.asList(INVALID_RECIPIENT, INVALID_AMOUNT, INVALID_SENDER, INVALID_RECIPIENT, NO_FUNDS, INVALID_AMOUNT), statuses);
+        Assertions.assertEquals(minorUnits(5), account1.getBalance());
+        Assertions.assertEquals(Long.MAX_VALUE - 1, account2.getBalance());
+    }
+
+    @Test
+    void transfersShouldBeFoundByIncreasingIds() {
+        //given
+        account(1L, minorUnits(5));
+        account(2L, minorUnits(0));
+        //when
+        TransferReceipt first = repository.makeTransferWithReceipt(1L, 2L, minorUnits(2));
+        TransferReceipt failed = repository.makeTransferWithReceipt(1L, 2L, minorUnits(9));
+        TransferReceipt second = repository.makeTransferWithReceipt(2L, 1L, minorUnits(1));
+        //then
+        Assertions.assertEquals(TransferReceipt.NO_TRANSFER_ID, failed.getTransferId());
+        assertTrue(second.getTransferId() > first.getTransferId());
+        TransferRecord found = repository.findTransfer(second.getTransferId());
+        Assertions.assertEquals(second.getTransferId(), found.getTransferId());
+        Assertions.assertEquals(2L, found.getSenderId());
+        Assertions.assertEquals(1L, found.getRecipientId());
+        Assertions.assertEquals(minorUnits(1), found.getAmount());
+        Assertions.assertEquals(repository.getStatement(1L).get(1).getTimestamp().toEpochMilli(), found.getTimestamp());
+        Assertions.assertEquals(minorUnits(2), repository.findTransfer(first.getTransferId()).getAmount());
+        Assertions.assertNull(repository.findTransfer(second.getTransferId() + 1));
+        Assertions.assertNull(repository.findTransfer(-1));
+    }
+
+    @Test
+    void batchShouldBeAppliedInOrder() {
+        //given
+        Account account1 = account(1L, minorUnits(5));
+        Account account2 = account(2L, minorUnits(0));
+        //when
+        List<TransferStatus> statuses = repository.makeTransfers(Arrays.asList(
+                new TransferOrder(2L, 1L, minorUnits(1)),
+                new TransferOrder(1L, 2L, minorUnits(5)),
+                new TransferOrder(2L, 1L, minorUnits(2))));
+        //then
+        Assertions.assertEquals(Arrays.asList(NO_FUNDS, TRANSFERRED, TRANSFERRED), statuses);
+        Assertions.assertEquals(minorUnits(2), account1.getBalance());
+        Assertions.assertEquals(minorUnits(3), account2.getBalance());
+    }
+
+    @Test
+    void statementPagesShouldCoverWholeHistoryInBothOrders() {
+        //given
+        account(1L, minorUnits(100));
+        account(2L, minorUnits(0));
+        IntStream.rangeClosed(1, 5).forEach(i -> repository.makeTransfer(1L, 2L, i));
+        //when
+        StatementPage oldest = repository.getStatement(2L, -1, 3, StatementOrder.OLDEST_FIRST);
+        StatementPage rest = repository.getStatement(2L, oldest.getNextCursor(), 3, StatementOrder.OLDEST_FIRST);
+        StatementPage newest = repository.getStatement(2L, -1, 3, StatementOrder.NEWEST_FIRST);
+        StatementPage older = repository.getStatement(2L, newest.getNextCursor(), 3, StatementOrder.NEWEST_FIRST);
+        //then
+        Assertions.assertEquals(Arrays.asList(1L, 2L, 3L), balances(oldest));
+        Assertions.assertEquals(Arrays.asList(4L, 5L), balances(rest));
+        assertFalse(rest.hasNext());
+        Assertions.assertEquals(Arrays.asList(5L, 4L, 3L), balances(newest));
+        Assertions.assertEquals(Arrays.asList(2L, 1L), balances(older));
+        assertFalse(older.hasNext());
+    }
+
+    @Test
+    void concurrentReadsShouldSeeEitherBothSidesOfTransferOrNone() {
+        //given
+        account(1L, minorUnits(1000));
+        account(2L, minorUnits(1000));
+        account(3L, minorUnits(1000)).makeHot();
+        long[] ids = {1L, 2L, 3L};
+        List<Runnable> operations = IntStream.range(0, 4).boxed()
+                .map(i -> (Runnable) () -> {
+                    for (int j = 0; j < 2000; j++) {
+                        if (i == 0) {
+                            AccountsView view = repository.readAccounts(ids, -1, true);
+                            Assertions.assertEquals(minorUnits(3000), view.getAccounts().stream().mapToLong(AccountView::getBalance).sum());
+                            Assertions.assertEquals(0, view.getAccounts().stream().flatMap(account -> account.getStatement().stream()).mapToLong(Transfer::getBalance).sum());
+                        } else {
+                            repository.makeTransfer(ids[i - 1], ids[i % 3], j % 5 + 1);
+                        }
+                    }
+                })
+                .collect(Collectors.toList());
+        //when
+        runConcurrently(operations);
+        //then
+        Assertions.assertEquals(minorUnits(3000), repository.readAccounts(ids, -1, false).getAccounts().stream().mapToLong(AccountView::getBalance).sum());
+    }
+
+    @Test
+    void olderVersionShouldBeReadTheSameAfterLaterTransfers() {
+        //given
+        account(1L, minorUnits(10));
+        account(2L, minorUnits(0));
+        repository.makeTransfer(1L, 2L, minorUnits(3));
+        long version = repository.readAccounts(new long[0], -1, false).getVersion();
+        //when
+        repository.makeTransfer(1L, 2L, minorUnits(4));
+        AccountsView older = repository.readAccounts(new long[]{1L, 2L, 9L}, version, true);
+        AccountsView latest = repository.readAccounts(new long[]{1L, 2L}, -1, false);
+        //then
+        Assertions.assertEquals(minorUnits(7), older.getAccounts().get(0).getBalance());
+        Assertions.assertEquals(minorUnits(3), older.getAccounts().get(1).getBalance());
+        Assertions.assertEquals(1, older.getAccounts().get(1).getStatement().size());
+        assertFalse(older.getAccounts().get(2).isFound());
+        Assertions.assertEquals(minorUnits(3), latest.getAccounts().get(0).getBalance());
+        Assertions.assertEquals(minorUnits(7), latest.getAccounts().get(1).getBalance());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> repository.readAccounts(new long[0], latest.getVersion() + 1, false));
+    }
+
+    @Test
+    void statementPageShouldBeFoundForAccountWithoutTransfersOnly() {
+        //given
+        account(1L, minorUnits(1));
+        //when
+        StatementPage empty = repository.findStatementPage(1L, -1, 10, StatementOrder.OLDEST_FIRST);
+        StatementPage unknown = repository.findStatementPage(2L, -1, 10, StatementOrder.OLDEST_FIRST);
+        //then
+        assertTrue(empty.getTransfers().isEmpty());
+        Assertions.assertNull(unknown);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> repository.getStatement(2L, -1, 10, StatementOrder.OLDEST_FIRST));
+    }
+
+    private static List<Long> balances(StatementPage page) {
+        return page.getTransfers().stream().map(Transfer::getBalance).collect(Collectors.toList());
+    }
+
     private Map<TransferStatus, AtomicInteger> makeTransfersConcurrently(long account1, long account2, int numConcurrent, Function<Integer, BigDecimal> amountGenerator) {
         Map<TransferStatus, AtomicInteger> counters = new ConcurrentHashMap<>();
         List<Runnable> concurrentTransfers = IntStream.range(0, numConcurrent).boxed()
@@ -75,7 +368,7 @@ class TransferRepositoryTest {
                         senderId = account1;
                         recipientId = account2;
                     }
-                    TransferStatus transferStatus = repository.makeTransfer(senderId, recipientId, amount);
+                    TransferStatus transferStatus = repository.makeTransfer(senderId, recipientId, minorUnits(amount));
                     counters.computeIfAbsent(transferStatus, status -> new AtomicInteger()).incrementAndGet();
                 })
                 .collect(Collectors.toList());
@@ -90,7 +383,7 @@ class TransferRepositoryTest {
         };
     }
 
-    private Account account(long id, BigDecimal initialBalance) {
+    private Account account(long id, long initialBalance) {
         Account account = new Account(initialBalance);
         accounts.put(id, account);
         return account;
@@ -0,0 +1,70 @@
+package com.revolut.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.revolut.backend.utils.TestUtils.runConcurrently;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VersionClockTest {
+
+    @Test
+    void committedVersionShouldWaitForEarlierWrites() {
+        //given
+        VersionClock clock = new VersionClock();
+        long first = clock.begin();
+        long second = clock.begin();
+        long third = clock.begin();
+        //when
+        clock.complete(third);
+        long afterThird = clock.committed();
+        clock.complete(first);
+        long afterFirst = clock.committed();
+        clock.complete(second);
+        //then
+        assertEquals(0, afterThird);
+        assertEquals(first, afterFirst);
+        assertEquals(third, clock.committed());
+    }
+
+    @Test
+    void allConcurrentWritesShouldBeCommitted() {
+        //given
+        VersionClock clock = new VersionClock();
+        List<Runnable> writers = IntStream.range(0, 8).boxed()
+                .map(i -> (Runnable) () -> {
+                    for (int j = 0; j < 100_000; j++) {
+                        clock.complete(clock.begin());
+                    }
+                })
+                .collect(Collectors.toList());
+        //when
+        runConcurrently(writers);
+        //then
+        assertEquals(800_000, clock.committed());
+    }
+
+    @Test
+    void writerRingAheadOfUnfinishedVersionShouldWaitForIt() throws Exception {
+        //given
+        VersionClock clock = new VersionClock();
+        long unfinished = clock.begin();
+        for (int i = 1; i < 1 << 16; i++) {
+            clock.complete(clock.begin());
+        }
+        CompletableFuture<Long> waiting = CompletableFuture.supplyAsync(clock::begin);
+        //when
+        Thread.sleep(50);
+        boolean waited = !waiting.isDone();
+        clock.complete(unfinished);
+        //then
+        assertTrue(waited);
+        assertEquals(unfinished + (1 << 16), (long) waiting.get(1, TimeUnit.SECONDS));
+    }
+}
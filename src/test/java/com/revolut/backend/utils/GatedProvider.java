@@ -0,0 +1,45 @@
+package com.revolut.backend.utils;
+
+import com.revolut.backend.api.MoneyTransferService;
+import com.revolut.backend.persistence.PersistenceProvider;
+import com.revolut.backend.persistence.ServiceCommand;
+import com.revolut.backend.service.CoreService;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Holds every command until the test lets it through.
+ */
+public class GatedProvider implements PersistenceProvider {
+    private final CoreService service = new CoreService();
+    private final Semaphore entered = new Semaphore(0);
+    private final Semaphore permits = new Semaphore(0);
+
+    public void awaitEntered() throws InterruptedException {
+        assertTrue(entered.tryAcquire(10, TimeUnit.SECONDS));
+    }
+
+    public void release(int commands) {
+        permits.release(commands);
+    }
+
+    @Override
+    public <R> R executeAndQuery(ServiceCommand<R> command) {
+        entered.release();
+        permits.acquireUninterruptibly();
+        return command.apply(service);
+    }
+
+    @Override
+    public <R> R query(ServiceCommand<R> query) {
+        return query.apply(service);
+    }
+
+    @Override
+    public MoneyTransferService liveService() {
+        return service;
+    }
+}
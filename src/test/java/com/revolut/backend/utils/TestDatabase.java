@@ -20,11 +20,11 @@ class TestDatabase extends InMemoryPersistenceProvider {
     }
 
     void resetDatabase() {
-        persistenceController = createPersistenceController(lastUsedDbFolder);
+        usePersistenceController(createPersistenceController(lastUsedDbFolder));
     }
 
     void eraseDatabase() {
-        persistenceController = createPersistenceController(getNewTempDbFolder());
+        usePersistenceController(createPersistenceController(getNewTempDbFolder()));
     }
 
     private Path getNewTempDbFolder() {
@@ -0,0 +1,29 @@
+package com.revolut.backend.utils;
+
+import com.revolut.backend.api.MoneyTransferService;
+import com.revolut.backend.persistence.PersistenceProvider;
+import com.revolut.backend.persistence.ServiceCommand;
+import com.revolut.backend.service.CoreService;
+
+/**
+ * Executes commands right away, without journaling them.
+ */
+public class TestDirectProvider implements PersistenceProvider {
+
+    private final CoreService service = new CoreService();
+
+    @Override
+    public synchronized <R> R executeAndQuery(ServiceCommand<R> command) {
+        return command.apply(service);
+    }
+
+    @Override
+    public <R> R query(ServiceCommand<R> query) {
+        return query.apply(service);
+    }
+
+    @Override
+    public MoneyTransferService liveService() {
+        return service;
+    }
+}
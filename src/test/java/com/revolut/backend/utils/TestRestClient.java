@@ -3,12 +3,14 @@ package com.revolut.backend.utils;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.revolut.backend.api.MoneyTransferService;
-import com.revolut.backend.domain.Transfer;
 import com.revolut.backend.domain.TransferStatus;
+import com.revolut.backend.server.dto.AccountsSnapshot;
 import com.revolut.backend.server.dto.CreateAccount;
 import com.revolut.backend.server.dto.MakeTransfer;
+import com.revolut.backend.server.dto.PagedStatement;
 import com.revolut.backend.server.dto.StatementEntry;
+import com.revolut.backend.server.dto.TransferDetails;
+import com.revolut.backend.server.dto.TransferMade;
 import io.restassured.http.ContentType;
 import io.restassured.response.Response;
 import io.restassured.specification.RequestSpecification;
@@ -17,7 +19,8 @@ import org.apache.groovy.io.StringBuilderWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.math.BigDecimal;
-import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -25,7 +28,10 @@ import java.util.stream.Collectors;
 import static com.revolut.backend.ConfigurationProperties.configuration;
 import static io.restassured.RestAssured.given;
 
-public class TestRestClient implements MoneyTransferService {
+/**
+ * Talks to the web server the way API clients do, with decimal amounts.
+ */
+public class TestRestClient {
 
     private static final TestRestClient INSTANCE = new TestRestClient();
 
@@ -45,40 +51,97 @@ public class TestRestClient implements MoneyTransferService {
         return INSTANCE;
     }
 
-    @Override
+    public long createAccount() {
+        return createAccount(BigDecimal.ZERO);
+    }
+
     public long createAccount(BigDecimal initialBalance) {
         CreateAccount request = new CreateAccount(initialBalance);
         String resultString = postAndGetResponse(writeJson(request), "services/account/create");
         return Long.parseLong(resultString);
     }
 
-    @Override
     public BigDecimal checkBalance(long accountId) {
         return new BigDecimal(get("services/account/balance/" + accountId));
     }
 
-    @Override
+    public AccountsSnapshot readAccounts(boolean statements, Long version, long... accountIds) {
+        String ids = Arrays.stream(accountIds).mapToObj(String::valueOf).collect(Collectors.joining(","));
+        String query = "?ids=" + ids + "&statements=" + statements + (version == null ? "" : "&version=" + version);
+        return readJson(get("services/account/snapshot" + query), AccountsSnapshot.class);
+    }
+
+    public int checkBalanceStatusCode(long accountId) {
+        return checkBalanceStatusCode(String.valueOf(accountId));
+    }
+
+    public int checkBalanceStatusCode(String accountId) {
+        return given()
+                .baseUri(configuration().getWebServerPublicAddress().toString())
+                .port(configuration().getWebServerPort())
+                .get("services/account/balance/" + accountId)
+                .getStatusCode();
+    }
+
+    public String scrapeMetrics() {
+        return get("metrics");
+    }
+
     public TransferStatus makeTransfer(long senderId, long recipientId, BigDecimal amount) {
         MakeTransfer request = new MakeTransfer(senderId, recipientId, amount);
         String resultString = postAndGetResponse(writeJson(request), "services/transfer/make");
-        return TransferStatus.ofCode(Integer.parseInt(resultString));
+        return TransferStatus.ofCode(readJson(resultString, TransferMade.class).getStatus());
     }
 
-    @Override
-    public List<Transfer> getStatement(long accountId) {
-        String response = get("services/transfer/statement/" + accountId);
-        Collection<StatementEntry> outgoingTransfer = readJsonArray(response, StatementEntry.class);
-        return outgoingTransfer.stream()
-                .map(this::toTransfer)
+    /**
+     * @return path of the transfer made, from the Location header, or null if it wasn't made
+     */
+    public String makeTransferForLocation(long senderId, long recipientId, BigDecimal amount) {
+        return given()
+                .baseUri(configuration().getWebServerPublicAddress().toString())
+                .port(configuration().getWebServerPort())
+                .contentType(ContentType.JSON)
+                .body(writeJson(new MakeTransfer(senderId, recipientId, amount)))
+                .post("services/transfer/make")
+                .getHeader("Location");
+    }
+
+    public TransferDetails getTransfer(String location) {
+        return readJson(get(location.substring(1)), TransferDetails.class);
+    }
+
+    public TransferStatus makeTransfer(long senderId, long recipientId, BigDecimal amount, String idempotencyKey) {
+        MakeTransfer request = new MakeTransfer(senderId, recipientId, amount, idempotencyKey);
+        String resultString = postAndGetResponse(writeJson(request), "services/transfer/make");
+        return TransferStatus.ofCode(readJson(resultString, TransferMade.class).getStatus());
+    }
+
+    public List<TransferStatus> makeTransfers(List<MakeTransfer> transfers) {
+        MakeTransfer[] request = transfers.toArray(new MakeTransfer[0]);
+        String resultString = postAndGetResponse(writeJson(request), "services/transfer/batch");
+        return Arrays.stream(readJson(resultString, TransferMade[].class))
+                .map(made -> TransferStatus.ofCode(made.getStatus()))
                 .collect(Collectors.toList());
     }
 
-    private Transfer toTransfer(StatementEntry statementEntry) {
-        return Transfer.builder()
-                .timestamp(Instant.ofEpochMilli(statementEntry.getTimestamp()))
-                .party(statementEntry.getParty())
-                .balance(statementEntry.getBalance())
-                .build();
+    public List<StatementEntry> getStatement(long accountId) {
+        String response = get("services/transfer/statement/" + accountId + "?full=true");
+        return new ArrayList<>(readJsonArray(response, StatementEntry.class));
+    }
+
+    public List<StatementEntry> getStreamedStatement(long accountId, String format) {
+        String response = get("services/transfer/statement/" + accountId + "?stream=" + format);
+        if ("ndjson".equals(format)) {
+            return Arrays.stream(response.split("\n"))
+                    .map(line -> readJson(line, StatementEntry.class))
+                    .collect(Collectors.toList());
+        }
+        return new ArrayList<>(readJsonArray(response, StatementEntry.class));
+    }
+
+    public PagedStatement getStatementPage(long accountId, Integer cursor, int limit, String order) {
+        String query = "?limit=" + limit + "&order=" + order + (cursor == null ? "" : "&cursor=" + cursor);
+        return readJson(get("services/transfer/statement/" + accountId + query), PagedStatement.class);
     }
 
     private <RQ, RS> RS postJsonExpectJson(RQ request, Class<RS> responseClass, String path) {
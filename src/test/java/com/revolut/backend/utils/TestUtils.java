@@ -13,6 +13,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import static com.revolut.backend.ConfigurationProperties.configuration;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestUtils {
@@ -70,6 +71,17 @@ public class TestUtils {
         return roundToHundredths ? bd.setScale(2, RoundingMode.HALF_UP) : bd;
     }
 
+    /**
+     * @return amount in minor units of the configured {@code amounts.scale}, the way the engine keeps it
+     */
+    public static long minorUnits(double val) {
+        return minorUnits(amount(val));
+    }
+
+    public static long minorUnits(BigDecimal amount) {
+        return amount.movePointRight(configuration().getAmountScale()).longValueExact();
+    }
+
     public static void assertEquals(BigDecimal expected, BigDecimal actual) {
         Assertions.assertEquals(0, expected.compareTo(actual), String.format("Expected: %s\nActual: %s", expected.toString(), actual.toString()));
     }